@@ -17,10 +17,17 @@ import org.apache.commons.cli.help.HelpFormatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ch.supertomcat.imgcomp.comparator.ExternalHashComparatorTask;
+import ch.supertomcat.imgcomp.comparator.HammingIndex;
 import ch.supertomcat.imgcomp.comparator.HashComparatorTask;
+import ch.supertomcat.imgcomp.comparator.ResultFormat;
 import ch.supertomcat.imgcomp.comparator.SearchMode;
 import ch.supertomcat.imgcomp.gui.GuiMode;
 import ch.supertomcat.imgcomp.gui.MainWindow;
+import ch.supertomcat.imgcomp.hasher.HashAlgorithm;
+import ch.supertomcat.imgcomp.hasher.HashListFormat;
+import ch.supertomcat.imgcomp.hasher.HashMode;
+import ch.supertomcat.imgcomp.hasher.HashType;
 import ch.supertomcat.imgcomp.hasher.HashTask;
 import ch.supertomcat.imgcomp.hasher.ImageHashList;
 import ch.supertomcat.imgcomp.hasher.ImageHashUtil;
@@ -66,12 +73,147 @@ public class ImgComp {
 				boolean hashMode = cmd.hasOption("hash");
 				boolean recursive = cmd.hasOption("R");
 				String filter = cmd.getOptionValue("filter", (String)null);
+				String strThreads = cmd.getOptionValue("threads", "1");
+				int threads;
+				try {
+					threads = Integer.parseInt(strThreads);
+				} catch (NumberFormatException e) {
+					threads = 0;
+				}
+				if (threads < 1) {
+					logger.error("Invalid number of threads: {}", strThreads);
+					printHelp(options);
+					System.exit(1);
+					return;
+				}
+				String hashCacheFile = cmd.getOptionValue("cache", (String)null);
+				boolean contentPreHash = cmd.hasOption("preHash");
+				String strHashMode = cmd.getOptionValue("hashMode", HashMode.COMPATIBLE.getCommandLineName());
+				HashMode imageHashMode = HashMode.getByCommandLineName(strHashMode);
+				if (imageHashMode == null) {
+					logger.error("Invalid hash mode: {}", strHashMode);
+					printHelp(options);
+					System.exit(1);
+					return;
+				}
+				String strHashType = cmd.getOptionValue("hashType", HashType.EXACT.getCommandLineName());
+				HashType hashType = HashType.getByCommandLineName(strHashType);
+				if (hashType == null) {
+					logger.error("Invalid hash type: {}", strHashType);
+					printHelp(options);
+					System.exit(1);
+					return;
+				}
+				String strHashAlgorithm = cmd.getOptionValue("algorithm", HashAlgorithm.MD5.getCommandLineName());
+				HashAlgorithm hashAlgorithm = HashAlgorithm.getByCommandLineName(strHashAlgorithm);
+				if (hashAlgorithm == null) {
+					logger.error("Invalid hash algorithm: {}", strHashAlgorithm);
+					printHelp(options);
+					System.exit(1);
+					return;
+				}
+				String strMemoryLimit = cmd.getOptionValue("memoryLimit", (String)null);
+				long memoryLimit = -1;
+				if (strMemoryLimit != null) {
+					try {
+						memoryLimit = Long.parseLong(strMemoryLimit) * 1024 * 1024;
+					} catch (NumberFormatException e) {
+						memoryLimit = 0;
+					}
+					if (memoryLimit < 1) {
+						logger.error("Invalid memory limit: {}", strMemoryLimit);
+						printHelp(options);
+						System.exit(1);
+						return;
+					}
+				}
+
+				String strMaxPixels = cmd.getOptionValue("maxPixels", (String)null);
+				long maxPixels = -1;
+				if (strMaxPixels != null) {
+					try {
+						maxPixels = Long.parseLong(strMaxPixels) * 1000 * 1000;
+					} catch (NumberFormatException e) {
+						maxPixels = 0;
+					}
+					if (maxPixels < 1) {
+						logger.error("Invalid maximum pixels: {}", strMaxPixels);
+						printHelp(options);
+						System.exit(1);
+						return;
+					}
+				}
+				String strMaxImageMemory = cmd.getOptionValue("maxImageMemory", (String)null);
+				long maxImageMemory = -1;
+				if (strMaxImageMemory != null) {
+					try {
+						maxImageMemory = Long.parseLong(strMaxImageMemory) * 1024 * 1024;
+					} catch (NumberFormatException e) {
+						maxImageMemory = 0;
+					}
+					if (maxImageMemory < 1) {
+						logger.error("Invalid maximum image memory: {}", strMaxImageMemory);
+						printHelp(options);
+						System.exit(1);
+						return;
+					}
+				}
+				String strDecodeTimeout = cmd.getOptionValue("decodeTimeout", (String)null);
+				long decodeTimeout = -1;
+				if (strDecodeTimeout != null) {
+					try {
+						decodeTimeout = Long.parseLong(strDecodeTimeout) * 1000;
+					} catch (NumberFormatException e) {
+						decodeTimeout = -1;
+					}
+					if (decodeTimeout < 0) {
+						logger.error("Invalid decode timeout: {}", strDecodeTimeout);
+						printHelp(options);
+						System.exit(1);
+						return;
+					}
+				}
 
 				boolean compMode = cmd.hasOption("comp");
+				boolean convertMode = cmd.hasOption("convert");
+				String strHashListFormat = cmd.getOptionValue("listFormat", HashListFormat.TEXT.getCommandLineName());
+				HashListFormat hashListFormat = HashListFormat.getByCommandLineName(strHashListFormat);
+				if (hashListFormat == null) {
+					logger.error("Invalid hash list format: {}", strHashListFormat);
+					printHelp(options);
+					System.exit(1);
+					return;
+				}
+				boolean compressLists = cmd.hasOption("compressLists");
+				boolean resume = cmd.hasOption("resume");
 				boolean reverse = cmd.hasOption("reverse");
 				boolean noDuplicates = cmd.hasOption("noDups");
 				boolean filenames = cmd.hasOption("filenames");
 				boolean foldersOnly = cmd.hasOption("foldersOnly");
+				boolean external = cmd.hasOption("external");
+				String tempDirectory = cmd.getOptionValue("tempDir", (String)null);
+				String strMaxDistance = cmd.getOptionValue("maxDistance", "0");
+				int maxDistance;
+				try {
+					maxDistance = Integer.parseInt(strMaxDistance);
+				} catch (NumberFormatException e) {
+					maxDistance = -1;
+				}
+				if (maxDistance < 0 || maxDistance > HammingIndex.MAX_DISTANCE) {
+					logger.error("Invalid maximum distance: {}", strMaxDistance);
+					printHelp(options);
+					System.exit(1);
+					return;
+				}
+				String strResultFormat = cmd.getOptionValue("resultFormat", ResultFormat.TEXT.getCommandLineName());
+				ResultFormat resultFormat = ResultFormat.getByCommandLineName(strResultFormat);
+				if (resultFormat == null) {
+					logger.error("Invalid result format: {}", strResultFormat);
+					printHelp(options);
+					System.exit(1);
+					return;
+				}
+				String resultFile = cmd.getOptionValue("resultFile", (String)null);
 				String strSearchMode = cmd.getOptionValue("searchMode", SearchMode.NORMAL_SEARCH.getCommandLineName());
 				SearchMode searchMode = SearchMode.getByCommandLineName(strSearchMode);
 				if (searchMode == null) {
@@ -83,7 +225,8 @@ public class ImgComp {
 
 				List<String> remainingArguments = cmd.getArgList();
 
-				if (help || (hashMode && compMode) || (!hashMode && !compMode)) {
+				int modeCount = (hashMode ? 1 : 0) + (compMode ? 1 : 0) + (convertMode ? 1 : 0);
+				if (help || modeCount != 1 || (convertMode && remainingArguments.size() != 2)) {
 					printHelp(options);
 					System.exit(1);
 					return;
@@ -97,48 +240,103 @@ public class ImgComp {
 					mainWindow.setVisible(true);
 				}
 
-				if (hashMode) {
-					String filePattern = prepareFilePattern(filter);
-					if (filePattern.isEmpty()) {
-						filePattern = HashTask.DEFAULT_FILENAME_PATTERN;
-						logger.info("No FilePattern detected, using default: {}", filePattern);
-					} else {
-						logger.info("FilePattern detected: {}", filePattern);
-					}
+				try {
+					if (hashMode) {
+						String filePattern = prepareFilePattern(filter);
+						if (filePattern.isEmpty()) {
+							filePattern = HashTask.DEFAULT_FILENAME_PATTERN;
+							logger.info("No FilePattern detected, using default: {}", filePattern);
+						} else {
+							logger.info("FilePattern detected: {}", filePattern);
+						}
 
-					List<ImageHashList> imageHashLists = new ArrayList<>();
+						List<ImageHashList> imageHashLists = new ArrayList<>();
 
-					for (String inputFolder : remainingArguments) {
-						if (!inputFolder.endsWith("\\") && !inputFolder.endsWith("/")) {
-							inputFolder += FileUtil.FILE_SEPERATOR;
-						}
+						for (String inputFolder : remainingArguments) {
+							if (!inputFolder.endsWith("\\") && !inputFolder.endsWith("/")) {
+								inputFolder += FileUtil.FILE_SEPERATOR;
+							}
 
-						ImageHashList imageHashList = new ImageHashList(inputFolder, filePattern, recursive);
-						imageHashLists.add(imageHashList);
-						logger.info("Path detected: {}", imageHashList.getFolder());
+							ImageHashList imageHashList = new ImageHashList(inputFolder, filePattern, recursive, hashType, hashAlgorithm, imageHashMode);
+							imageHashLists.add(imageHashList);
+							logger.info("Path detected: {}", imageHashList.getFolder());
 
-						if (mainWindow != null) {
-							mainWindow.addInputFile(Paths.get(inputFolder));
+							if (mainWindow != null) {
+								mainWindow.addInputFile(Paths.get(inputFolder));
+							}
+						}
+
+						HashTask tashTask = new HashTask(imageHashLists, progress, threads);
+						if (memoryLimit > 0) {
+							tashTask.setMemoryLimit(memoryLimit);
+						}
+						if (hashCacheFile != null) {
+							tashTask.setHashCacheFile(Paths.get(hashCacheFile));
+						}
+						tashTask.setContentPreHash(contentPreHash);
+						tashTask.setHashListFormat(hashListFormat);
+						tashTask.setCompressHashLists(compressLists);
+						tashTask.setJournalFile(Paths.get(HashTask.DEFAULT_JOURNAL_FILE));
+						tashTask.setResume(resume);
+						if (maxPixels > 0) {
+							tashTask.setMaxPixels(maxPixels);
+						}
+						if (maxImageMemory > 0) {
+							tashTask.setMaxDecodedSize(maxImageMemory);
+						}
+						if (decodeTimeout >= 0) {
+							tashTask.setDecodeTimeout(decodeTimeout);
+						}
+						tashTask.setDecodeReportFile(Paths.get(HashTask.DEFAULT_DECODE_REPORT_FILE));
+						tashTask.start();
+					} else if (convertMode) {
+						ImageHashUtil.convertHashList(remainingArguments.get(0), remainingArguments.get(1), hashListFormat, compressLists);
+					} else if (compMode && external) {
+						for (String inputFile : remainingArguments) {
+							logger.info("HashList detected: {}", inputFile);
+
+							if (mainWindow != null) {
+								mainWindow.addInputFile(Paths.get(inputFile));
+							}
 						}
-					}
 
-					HashTask tashTask = new HashTask(imageHashLists, progress);
-					tashTask.start();
-				} else if (compMode) {
-					List<ImageHashList> imageHashLists = new ArrayList<>();
+						ExternalHashComparatorTask comp = new ExternalHashComparatorTask(remainingArguments, progress, searchMode, reverse, noDuplicates, filenames, foldersOnly);
+						comp.setMaxDistance(maxDistance);
+						comp.setResultFormat(resultFormat);
+						comp.setResultFile(resultFile);
+						if (memoryLimit > 0) {
+							comp.setMemoryLimit(memoryLimit);
+						}
+						if (tempDirectory != null) {
+							comp.setTempDirectory(Paths.get(tempDirectory));
+						}
+						comp.start();
+					} else if (compMode) {
+						List<ImageHashList> imageHashLists = ImageHashUtil.readHashLists(remainingArguments);
 
-					for (String inputFile : remainingArguments) {
-						ImageHashList imageHashList = ImageHashUtil.readHashList(inputFile);
-						imageHashLists.add(imageHashList);
-						logger.info("HashList detected: {}", imageHashList.getFolder());
+						for (int i = 0; i < remainingArguments.size(); i++) {
+							logger.info("HashList detected: {}", imageHashLists.get(i).getFolder());
 
-						if (mainWindow != null) {
-							mainWindow.addInputFile(Paths.get(inputFile));
+							if (mainWindow != null) {
+								mainWindow.addInputFile(Paths.get(remainingArguments.get(i)));
+							}
 						}
-					}
 
-					HashComparatorTask comp = new HashComparatorTask(imageHashLists, progress, searchMode, reverse, noDuplicates, filenames, foldersOnly);
-					comp.start();
+						HashComparatorTask comp = new HashComparatorTask(imageHashLists, progress, searchMode, reverse, noDuplicates, filenames, foldersOnly);
+						comp.setMaxDistance(maxDistance);
+						comp.setThreadCount(threads);
+						comp.setResultFormat(resultFormat);
+						comp.setResultFile(resultFile);
+						comp.start();
+					}
+				} catch (IllegalArgumentException e) {
+					// Hash lists, which are incomplete, corrupt or incompatible, are rejected
+					logger.error(e.getMessage(), e);
+					if (mainWindow != null) {
+						mainWindow.dispose();
+					}
+					System.exit(1);
+					return;
 				}
 
 				if (mainWindow != null) {
@@ -188,6 +386,73 @@ public class ImgComp {
 		Option filterOption = Option.builder("filter").argName("filter").hasArg().desc("Filter for filenames").get();
 		options.addOption(filterOption);
 
+		Option threadsOption = Option.builder("threads").argName("threads").hasArg().desc("Number of threads used for hashing or for grouping equal hashes when comparing (Default: 1)").get();
+		options.addOption(threadsOption);
+
+		Option memoryLimitOption = Option.builder("memoryLimit").argName("megabytes").hasArg()
+				.desc("Memory limit in MB for images, which are decoded in parallel (Default: Half of the maximum heap size, Only with -threads) or for hashes, which are sorted in memory (Default: A quarter of the maximum heap size, Only with -external)")
+				.get();
+		options.addOption(memoryLimitOption);
+
+		Option cacheOption = Option.builder("cache").argName("file").hasArg()
+				.desc("Cache file for incremental hashing. Hashes of unchanged files are taken from the cache and the cache is updated afterwards (Only with -hash)").get();
+		options.addOption(cacheOption);
+
+		Option resumeOption = new Option("resume", false, "Resumes an interrupted hashing run. Hashes of files, which were hashed before the interruption, are taken from the journal ("
+				+ HashTask.DEFAULT_JOURNAL_FILE + ") (Only with -hash)");
+		options.addOption(resumeOption);
+
+		Option maxPixelsOption = Option.builder("maxPixels").argName("megapixels").hasArg()
+				.desc("Maximum size of an image in megapixels. Larger images are not decoded and are listed in " + HashTask.DEFAULT_DECODE_REPORT_FILE + " (Default: "
+						+ HashTask.DEFAULT_MAX_PIXELS / 1000 / 1000 + ", Only with -hash)")
+				.get();
+		options.addOption(maxPixelsOption);
+
+		Option maxImageMemoryOption = Option.builder("maxImageMemory").argName("megabytes").hasArg()
+				.desc("Maximum estimated memory in MB for decoding a single image. Larger images are not decoded and are listed in " + HashTask.DEFAULT_DECODE_REPORT_FILE
+						+ " (Default: A quarter of the maximum heap size, Only with -hash)")
+				.get();
+		options.addOption(maxImageMemoryOption);
+
+		Option decodeTimeoutOption = Option.builder("decodeTimeout").argName("seconds").hasArg()
+				.desc("Timeout in seconds for decoding an image. Images, which take longer, are aborted and listed in " + HashTask.DEFAULT_DECODE_REPORT_FILE
+						+ " together with images, which could not be decoded or were slow (0: No timeout, Default: " + HashTask.DEFAULT_DECODE_TIMEOUT / 1000 + ", Only with -hash)")
+				.get();
+		options.addOption(decodeTimeoutOption);
+
+		Option preHashOption = new Option("preHash", false, "Hashes the content of files with the same size first and decodes byte-identical files only once (Only with -hash)");
+		options.addOption(preHashOption);
+
+		String hashModeCommandLineNames = Arrays.stream(HashMode.values()).map(x -> x.getCommandLineName()).collect(Collectors.joining(", "));
+		Option imageHashModeOption = Option.builder("hashMode").argName("hashMode").hasArg()
+				.desc("Hash Mode (Avaible modes: " + hashModeCommandLineNames + ", Default: compatible, Only with -hash)").get();
+		options.addOption(imageHashModeOption);
+
+		String hashTypeCommandLineNames = Arrays.stream(HashType.values()).map(x -> x.getCommandLineName()).collect(Collectors.joining(", "));
+		Option hashTypeOption = Option.builder("hashType").argName("hashType").hasArg()
+				.desc("Hash Type (Avaible types: " + hashTypeCommandLineNames + ", Default: exact, Only with -hash)").get();
+		options.addOption(hashTypeOption);
+
+		String hashAlgorithmCommandLineNames = Arrays.stream(HashAlgorithm.values()).map(x -> x.getCommandLineName()).collect(Collectors.joining(", "));
+		Option hashAlgorithmOption = Option.builder("algorithm").argName("algorithm").hasArg()
+				.desc("Hash Algorithm (Avaible algorithms: " + hashAlgorithmCommandLineNames + ", Default: md5, Only with -hash)").get();
+		options.addOption(hashAlgorithmOption);
+
+		String hashListFormatCommandLineNames = Arrays.stream(HashListFormat.values()).map(x -> x.getCommandLineName()).collect(Collectors.joining(", "));
+		Option hashListFormatOption = Option.builder("listFormat").argName("format").hasArg()
+				.desc("Format of the written Hash-Lists (Avaible formats: " + hashListFormatCommandLineNames + ", Default: text, Only with -hash or -convert)").get();
+		options.addOption(hashListFormatOption);
+
+		Option compressListsOption = new Option("compressLists", false,
+				"Compresses the written Hash-Lists in blocks, which are compressed and decompressed in parallel (Compressed Hash-Lists are detected automatically, Only with -hash or -convert)");
+		options.addOption(compressListsOption);
+
+		/*
+		 * Convert Mode
+		 */
+		Option convertModeOption = new Option("convert", false, "Converts the Hash-List given as first argument to the file given as second argument in the format of -listFormat");
+		options.addOption(convertModeOption);
+
 		/*
 		 * Compare Mode
 		 */
@@ -206,6 +471,29 @@ public class ImgComp {
 		Option foldersOnlyOption = new Option("foldersOnly", false, "Prints out only folders in which duplicates where found (Only with -comp)");
 		options.addOption(foldersOnlyOption);
 
+		Option externalOption = new Option("external", false, "Sorts the hashes in temporary files, for hash lists, which don't fit into memory. Duplicates are written in the order of the hashes (Only with -comp)");
+		options.addOption(externalOption);
+
+		Option tempDirOption = Option.builder("tempDir").argName("folder").hasArg().desc("Folder for temporary files (Default: Temporary folder of the system, Only with -external)")
+				.get();
+		options.addOption(tempDirOption);
+
+		Option maxDistanceOption = Option.builder("maxDistance").argName("bits").hasArg()
+				.desc("Finds similar images, whose perceptual hashes differ in at most this number of bits (0 - " + HammingIndex.MAX_DISTANCE
+						+ ", Default: 0, Only with -comp and hash lists created with a perceptual hash type). Each image is grouped with the later images within"
+						+ " this distance of it and the result contains the distance of each image to the first image of its group.")
+				.get();
+		options.addOption(maxDistanceOption);
+
+		String resultFormatCommandLineNames = Arrays.stream(ResultFormat.values()).map(x -> x.getCommandLineName()).collect(Collectors.joining(", "));
+		Option resultFormatOption = Option.builder("resultFormat").argName("format").hasArg()
+				.desc("Format of the result file (Avaible formats: " + resultFormatCommandLineNames + ", Default: text, Only with -comp)").get();
+		options.addOption(resultFormatOption);
+
+		Option resultFileOption = Option.builder("resultFile").argName("file").hasArg()
+				.desc("Result file (Default: Duplicates with the extension of the format in the working directory, Only with -comp)").get();
+		options.addOption(resultFileOption);
+
 		String searchModeCommandLineNames = Arrays.stream(SearchMode.values()).map(x -> x.getCommandLineName()).collect(Collectors.joining(", "));
 		Option searchModeOption = Option.builder("searchMode").argName("searchMode").hasArg().desc("Search Mode (Avaible modes: " + searchModeCommandLineNames + ")").get();
 		options.addOption(searchModeOption);
@@ -0,0 +1,81 @@
+package ch.supertomcat.imgcomp.comparator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Result Writer for CSV. Each file of a duplicate is written as one row with the hash of the duplicate, so rows with the same hash belong to the same
+ * duplicate. If only folders are written, there is one row per folder instead. Fields are quoted if needed as described in RFC 4180.
+ */
+public class CsvResultWriter extends ResultWriter {
+	/**
+	 * Constructor
+	 * 
+	 * @param file Result File
+	 * @param foldersOnly Writes only the folders of the duplicates
+	 * @param reverse Writes only the first file of the duplicates
+	 * @param distances Writes the distances of the files
+	 * @throws IOException
+	 */
+	public CsvResultWriter(Path file, boolean foldersOnly, boolean reverse, boolean distances) throws IOException {
+		super(file, foldersOnly, reverse, distances);
+		if (foldersOnly) {
+			writer.write("hash,folder\r\n");
+		} else if (distances && !reverse) {
+			writer.write("hash,file,distance\r\n");
+		} else {
+			writer.write("hash,file\r\n");
+		}
+	}
+
+	@Override
+	public void write(Duplicate duplicate) throws IOException {
+		String hash = duplicate.getHash().toHexString();
+		if (foldersOnly) {
+			for (String folder : duplicate.getFolders()) {
+				writeRow(hash, folder, null);
+			}
+		} else if (reverse) {
+			writeRow(hash, duplicate.getFiles().get(0), null);
+		} else {
+			for (int i = 0; i < duplicate.getFiles().size(); i++) {
+				writeRow(hash, duplicate.getFiles().get(i), distances ? duplicate.getDistances().get(i) : null);
+			}
+		}
+	}
+
+	/**
+	 * Writes a row
+	 * 
+	 * @param hash Hash
+	 * @param path File or Folder
+	 * @param distance Distance or null
+	 * @throws IOException
+	 */
+	private void writeRow(String hash, String path, Integer distance) throws IOException {
+		writer.write(hash);
+		writer.write(',');
+		writeField(path);
+		if (distance != null) {
+			writer.write(',');
+			writer.write(distance.toString());
+		}
+		writer.write("\r\n");
+	}
+
+	/**
+	 * Writes a field and quotes it if it contains a separator, a quote or a line break
+	 * 
+	 * @param value Value
+	 * @throws IOException
+	 */
+	private void writeField(String value) throws IOException {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+			writer.write(value);
+			return;
+		}
+		writer.write('"');
+		writer.write(value.replace("\"", "\"\""));
+		writer.write('"');
+	}
+}
@@ -1,56 +1,150 @@
 package ch.supertomcat.imgcomp.comparator;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
+import ch.supertomcat.imgcomp.hasher.Hash;
+import ch.supertomcat.imgcomp.hasher.HashValue;
 import ch.supertomcat.supertomcatutils.io.FileUtil;
 
 /**
  * Duplicate class which holds the hash and the files
+ * 
+ * The files are not stored as paths, but as indexes into a table of hashes, which is shared by all duplicates of a comparison. The paths are only resolved,
+ * when the files are returned by {@link #getFiles()}.
  */
 public class Duplicate {
+	/**
+	 * Initial capacity of the arrays of the files, because most duplicates have only a few files
+	 */
+	private static final int INITIAL_CAPACITY = 2;
+
+	/**
+	 * Maximum count of files, which are looked up without a set
+	 */
+	private static final int MAX_FILES_WITHOUT_SET = 8;
+
 	/**
 	 * hash
 	 */
-	private String hash = "";
+	private final HashValue hash;
+
+	/**
+	 * Shared table of hashes, to which the file indexes refer
+	 */
+	private final List<Hash> hashes;
+
+	/**
+	 * Indexes of the files in the table of hashes. Only the first {@link #fileCount} entries are used.
+	 */
+	private int[] fileIndexes = new int[INITIAL_CAPACITY];
+
+	/**
+	 * Distances of the hashes of the files to the hash of this duplicate in the same order as the files. For exact hashes the distances are always 0.
+	 */
+	private int[] distances = new int[INITIAL_CAPACITY];
 
 	/**
-	 * files
+	 * Count of files
 	 */
-	private List<String> files = new ArrayList<>();
+	private int fileCount = 0;
 
-	private List<String> folders = new ArrayList<>();
+	/**
+	 * Set of the paths of the files for fast lookup. Only created when there are more than {@link #MAX_FILES_WITHOUT_SET} files, because most duplicates have
+	 * only a few files.
+	 */
+	private Set<String> fileSet = null;
+
+	/**
+	 * Folders
+	 */
+	private Set<String> folders = new HashSet<>();
+
+	/**
+	 * Sorted folders or null if they have to be sorted again
+	 */
+	private List<String> sortedFolders = null;
 
 	/**
 	 * Constructor
 	 * 
 	 * @param hash Hash
-	 * @param file File
+	 * @param hashes Shared table of hashes, which must not be changed while this duplicate is used
+	 * @param fileIndex Index of the first file in the table of hashes
 	 */
-	public Duplicate(String hash, String file) {
+	public Duplicate(HashValue hash, List<Hash> hashes, int fileIndex) {
 		this.hash = hash;
-		this.files.add(file);
+		this.hashes = hashes;
+		this.fileIndexes[0] = fileIndex;
+		this.fileCount = 1;
+		this.folders.add(hashes.get(fileIndex).getFolder());
+	}
 
-		String folder = FileUtil.getDirectory(file);
-		folders.add(folder);
+	/**
+	 * Adds a file
+	 * 
+	 * @param fileIndex Index of the file in the table of hashes
+	 */
+	public void addFile(int fileIndex) {
+		addFile(fileIndex, 0);
 	}
 
 	/**
 	 * Adds a file
 	 * 
-	 * @param file File
+	 * @param fileIndex Index of the file in the table of hashes
+	 * @param distance Distance of the hash of the file to the hash of this duplicate
 	 */
-	public void addFile(String file) {
-		if (this.files.contains(file) == false) {
-			this.files.add(file);
+	public void addFile(int fileIndex, int distance) {
+		/*
+		 * Files are compared by path and not by index, because the same file can be in multiple hash lists, e.g. if the folder of one hash list is a subfolder
+		 * of the folder of another hash list.
+		 */
+		String file = hashes.get(fileIndex).getFile();
+		if (containsFile(file)) {
+			return;
+		}
+
+		if (fileCount == fileIndexes.length) {
+			fileIndexes = Arrays.copyOf(fileIndexes, fileCount * 2);
+			distances = Arrays.copyOf(distances, fileCount * 2);
+		}
+		fileIndexes[fileCount] = fileIndex;
+		distances[fileCount] = distance;
+		fileCount++;
+		if (fileSet != null) {
+			fileSet.add(file);
+		} else if (fileCount > MAX_FILES_WITHOUT_SET) {
+			fileSet = new HashSet<>(getFiles());
+		}
 
-			String folder = FileUtil.getDirectory(file);
-			if (folders.contains(folder) == false) {
-				folders.add(folder);
-				Collections.sort(folders);
+		if (folders.add(hashes.get(fileIndex).getFolder())) {
+			sortedFolders = null;
+		}
+	}
+
+	/**
+	 * Checks if the file was already added
+	 * 
+	 * @param file File
+	 * @return True if the file was already added, false otherwise
+	 */
+	private boolean containsFile(String file) {
+		if (fileSet != null) {
+			return fileSet.contains(file);
+		}
+		for (int i = 0; i < fileCount; i++) {
+			if (hashes.get(fileIndexes[i]).getFile().equals(file)) {
+				return true;
 			}
 		}
+		return false;
 	}
 
 	/**
@@ -58,23 +152,53 @@ public class Duplicate {
 	 * 
 	 * @return hash
 	 */
-	public String getHash() {
+	public HashValue getHash() {
 		return hash;
 	}
 
 	/**
-	 * Returns the files
+	 * Returns the files. The returned list is a view, which resolves the paths from the table of hashes, when they are accessed.
 	 * 
 	 * @return files
 	 */
 	public List<String> getFiles() {
-		return files;
+		return new AbstractList<>() {
+			@Override
+			public String get(int index) {
+				return hashes.get(fileIndexes[Objects.checkIndex(index, fileCount)]).getFile();
+			}
+
+			@Override
+			public int size() {
+				return fileCount;
+			}
+		};
+	}
+
+	/**
+	 * Returns the distances
+	 * 
+	 * @return Distances of the hashes of the files to the hash of this duplicate in the same order as the files
+	 */
+	public List<Integer> getDistances() {
+		return new AbstractList<>() {
+			@Override
+			public Integer get(int index) {
+				return distances[Objects.checkIndex(index, fileCount)];
+			}
+
+			@Override
+			public int size() {
+				return fileCount;
+			}
+		};
 	}
 
 	/**
 	 * @return isSameRelativeFolder
 	 */
 	public boolean isSameRelativeFolder() {
+		List<String> files = getFiles();
 		if (files.size() <= 0) {
 			return false;
 		}
@@ -105,6 +229,7 @@ public class Duplicate {
 	 * @return isSameFilename
 	 */
 	public boolean isSameFilename() {
+		List<String> files = getFiles();
 		if (files.size() <= 0) {
 			return false;
 		}
@@ -131,24 +256,27 @@ public class Duplicate {
 	 * @return True if equals folder duplicate, false otherwise
 	 */
 	public boolean equalsFolderDuplicate(Duplicate other) {
-		List<String> otherFolders = other.getFolders();
-		int foundCount = 0;
-		for (String otherFolder : otherFolders) {
-			for (String folder : folders) {
-				if (otherFolder.equals(folder)) {
-					foundCount++;
-					break;
-				}
-			}
-		}
+		return folders.containsAll(other.folders);
+	}
 
-		return foundCount == otherFolders.size() && folders.size() >= foundCount;
+	/**
+	 * Returns the count of folders
+	 * 
+	 * @return Count of folders
+	 */
+	public int getFolderCount() {
+		return folders.size();
 	}
 
 	/**
-	 * @return Folders
+	 * @return Sorted Folders
 	 */
 	public List<String> getFolders() {
-		return folders;
+		if (sortedFolders == null) {
+			List<String> list = new ArrayList<>(folders);
+			Collections.sort(list);
+			sortedFolders = Collections.unmodifiableList(list);
+		}
+		return sortedFolders;
 	}
 }
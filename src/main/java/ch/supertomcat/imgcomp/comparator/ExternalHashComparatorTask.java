@@ -0,0 +1,591 @@
+package ch.supertomcat.imgcomp.comparator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.supertomcat.imgcomp.hasher.Hash;
+import ch.supertomcat.imgcomp.hasher.HashValue;
+import ch.supertomcat.imgcomp.hasher.ImageHashUtil;
+import ch.supertomcat.supertomcatutils.gui.progress.ProgressObserver;
+
+/**
+ * Comparator for hash lists, which don't fit into memory.
+ * 
+ * The hash lists are read without keeping the hashes in memory. The paths are written to a temporary file and whenever the memory limit is reached, a sorted
+ * run of hash, position and offset of the path is written to another temporary file. The runs are merged and every group of equal hashes is grouped in the
+ * same way as {@link HashComparatorTask} does it and written to the result file immediately.
+ * 
+ * The duplicates are written in the order of the hashes and not in the order they were found. The duplicates are not kept in memory, so
+ * {@link #getDuplicates()} is empty, unless foldersOnly is set, because then duplicates with the same folders have to be removed before writing them. In this
+ * case the duplicates are sorted in the order they were found, so the result is the same as the result of {@link HashComparatorTask}.
+ * 
+ * Only the entries of one group of equal hashes are kept in memory at the same time, but such a group is kept in memory completely, including the paths of
+ * its files. So a single very large group, e.g. thousands of copies of the same image, needs memory for all its paths, regardless of the memory limit.
+ */
+public class ExternalHashComparatorTask extends HashComparatorTask {
+	/**
+	 * Logger
+	 */
+	private Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Estimated memory in bytes of an entry of a run, which is kept in memory until the run is written
+	 */
+	private static final int ESTIMATED_ENTRY_SIZE = 128;
+
+	/**
+	 * Maximum number of runs, which are merged at once. If there are more runs, they are merged to larger runs first.
+	 */
+	private static final int MAX_MERGED_RUNS = 256;
+
+	/**
+	 * Buffer size for reading and writing temporary files
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Hash List Files
+	 */
+	private final List<String> hashListFiles;
+
+	/**
+	 * Memory limit in bytes for entries, which are sorted in memory
+	 */
+	private long memoryLimit = Runtime.getRuntime().maxMemory() / 4;
+
+	/**
+	 * Folder for temporary files or null if the default folder for temporary files is used
+	 */
+	private Path tempDirectory = null;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param hashListFiles Hash List Files
+	 * @param progress Progress
+	 * @param searchMode Search Mode
+	 * @param reverse Prints out only one of the duplicates and all non-Duplicates
+	 * @param noDuplicates Prints out only non-Duplicates (Only used when reverse is true)
+	 * @param filenames Compares the filenames also, not only the hashes
+	 * @param foldersOnly Prints out only folders in which duplicates where found
+	 * @throws IllegalArgumentException if the hash lists were created with different hash types, hash algorithms or hash modes
+	 */
+	public ExternalHashComparatorTask(List<String> hashListFiles, ProgressObserver progress, SearchMode searchMode, boolean reverse, boolean noDuplicates, boolean filenames, boolean foldersOnly) {
+		super(hashListFiles.stream().map(ImageHashUtil::readHashListHeader).toList(), progress, searchMode, reverse, noDuplicates, filenames, foldersOnly);
+		this.hashListFiles = hashListFiles;
+	}
+
+	/**
+	 * Returns the memoryLimit
+	 * 
+	 * @return memoryLimit
+	 */
+	public long getMemoryLimit() {
+		return memoryLimit;
+	}
+
+	/**
+	 * Sets the memory limit
+	 * 
+	 * @param memoryLimit Memory limit in bytes for entries, which are sorted in memory
+	 * @throws IllegalArgumentException if memoryLimit is less than 1
+	 */
+	public void setMemoryLimit(long memoryLimit) {
+		if (memoryLimit < 1) {
+			throw new IllegalArgumentException("Memory limit must be greater than 0: " + memoryLimit);
+		}
+		this.memoryLimit = memoryLimit;
+	}
+
+	/**
+	 * Returns the tempDirectory
+	 * 
+	 * @return tempDirectory
+	 */
+	public Path getTempDirectory() {
+		return tempDirectory;
+	}
+
+	/**
+	 * Sets the tempDirectory
+	 * 
+	 * @param tempDirectory Folder for temporary files or null if the default folder for temporary files is used
+	 */
+	public void setTempDirectory(Path tempDirectory) {
+		this.tempDirectory = tempDirectory;
+	}
+
+	/**
+	 * Similar images can't be searched with external sorting, because they don't have equal hashes
+	 * 
+	 * @param maxDistance Maximum Distance, which must be 0
+	 * @throws IllegalArgumentException if maxDistance is not 0
+	 */
+	@Override
+	public void setMaxDistance(int maxDistance) {
+		if (maxDistance != 0) {
+			throw new IllegalArgumentException("Similar images can't be searched with external sorting");
+		}
+		super.setMaxDistance(maxDistance);
+	}
+
+	@Override
+	protected void startTask() {
+		progress.progressChanged("Searching for duplicates...");
+		progress.progressModeChanged(true);
+
+		Path workDirectory = null;
+		try {
+			workDirectory = tempDirectory != null ? Files.createTempDirectory(tempDirectory, "ImgComp") : Files.createTempDirectory("ImgComp");
+			if (!compareHashes(workDirectory)) {
+				return;
+			}
+			progress.progressCompleted();
+			progress.progressChanged("Done");
+		} catch (IOException | UncheckedIOException e) {
+			logger.error("Could not compare hash lists", e);
+		} finally {
+			deleteWorkDirectory(workDirectory);
+		}
+	}
+
+	/**
+	 * Compare Hashes
+	 * 
+	 * @param workDirectory Folder for temporary files
+	 * @return True if completed, false if stopped
+	 * @throws IOException
+	 */
+	private boolean compareHashes(Path workDirectory) throws IOException {
+		Path pathsFile = workDirectory.resolve("paths.bin");
+		List<Path> runFiles;
+		try (RunBuilder runBuilder = new RunBuilder(workDirectory, pathsFile)) {
+			for (int cl = 0; cl < hashListFiles.size(); cl++) {
+				if (stop) {
+					return false;
+				}
+				String hashListFile = hashListFiles.get(cl);
+				progress.progressChanged("Reading " + hashListFile);
+				int listIndex = cl;
+				try {
+					ImageHashUtil.readHashList(hashListFile, hash -> {
+						if (stop) {
+							throw new CancellationException();
+						}
+						try {
+							runBuilder.add(hash, listIndex);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+				} catch (IllegalArgumentException e) {
+					// The hash list is incomplete, corrupt or could not be read
+					throw new IOException("Hash List was rejected: '" + hashListFile + "'", e);
+				}
+			}
+			runFiles = runBuilder.finish();
+		} catch (CancellationException e) {
+			return false;
+		}
+
+		// Merge runs to larger runs, until they can be merged at once
+		int mergeCount = 0;
+		while (runFiles.size() > MAX_MERGED_RUNS) {
+			progress.progressChanged("Merging " + runFiles.size() + " runs...");
+			List<Path> mergedRunFiles = new ArrayList<>();
+			for (int i = 0; i < runFiles.size(); i += MAX_MERGED_RUNS) {
+				List<Path> batch = runFiles.subList(i, Math.min(i + MAX_MERGED_RUNS, runFiles.size()));
+				Path mergedRunFile = workDirectory.resolve("merged-" + mergeCount + ".bin");
+				mergeCount++;
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(mergedRunFile), BUFFER_SIZE))) {
+					if (!mergeRuns(batch, entry -> writeEntry(out, entry))) {
+						return false;
+					}
+					out.writeBoolean(false);
+				}
+				for (Path runFile : batch) {
+					Files.delete(runFile);
+				}
+				mergedRunFiles.add(mergedRunFile);
+			}
+			runFiles = mergedRunFiles;
+		}
+
+		progress.progressChanged("Merging " + runFiles.size() + " runs and writing duplicates...");
+		SortedMap<Long, Duplicate> folderDuplicates = new TreeMap<>();
+		try (RandomAccessFile paths = new RandomAccessFile(pathsFile.toFile(), "r"); ResultWriter resultWriter = createResultWriter()) {
+			logger.info("Writing result to file: {}", resultWriter.getFile());
+			List<Entry> group = new ArrayList<>();
+			boolean completed = mergeRuns(runFiles, entry -> {
+				if (!group.isEmpty() && !group.get(0).hash().equals(entry.hash())) {
+					writeGroup(group, paths, resultWriter, folderDuplicates);
+					group.clear();
+				}
+				group.add(entry);
+			});
+			if (!completed) {
+				return false;
+			}
+			writeGroup(group, paths, resultWriter, folderDuplicates);
+
+			if (isFoldersOnly()) {
+				List<Duplicate> duplicates = new ArrayList<>(folderDuplicates.values());
+				removeFolderDuplicates(duplicates);
+				for (Duplicate duplicate : duplicates) {
+					resultWriter.write(duplicate);
+				}
+				setDuplicates(duplicates);
+			}
+			resultWriter.commit();
+		}
+		return true;
+	}
+
+	/**
+	 * Group equal hashes and write the duplicates
+	 * 
+	 * @param group Entries with equal hashes in the order of the hash lists
+	 * @param paths Paths File
+	 * @param resultWriter Result Writer
+	 * @param folderDuplicates Map to which the duplicates are added by the position of their first file instead of writing them, if foldersOnly is set
+	 * @throws IOException
+	 */
+	private void writeGroup(List<Entry> group, RandomAccessFile paths, ResultWriter resultWriter, SortedMap<Long, Duplicate> folderDuplicates) throws IOException {
+		// A single image can only be written in reverse mode
+		if (group.isEmpty() || (group.size() < 2 && !isReverse())) {
+			return;
+		}
+
+		List<Hash> hashes = new ArrayList<>(group.size());
+		int[] listIndexes = new int[group.size()];
+		for (int i = 0; i < group.size(); i++) {
+			Entry entry = group.get(i);
+			hashes.add(new Hash(readPath(paths, entry.pathOffset()), entry.hash()));
+			listIndexes[i] = entry.listIndex();
+		}
+
+		List<Duplicate> groupDuplicates = new ArrayList<>();
+		int[] firstIndexes = new int[hashes.size()];
+		groupEqualHashes(hashes, listIndexes, groupDuplicates, firstIndexes, null, false);
+		if (isFoldersOnly()) {
+			for (int i = 0; i < groupDuplicates.size(); i++) {
+				folderDuplicates.put(group.get(firstIndexes[i]).sequence(), groupDuplicates.get(i));
+			}
+		} else {
+			for (Duplicate duplicate : groupDuplicates) {
+				resultWriter.write(duplicate);
+			}
+		}
+	}
+
+	/**
+	 * Merge sorted runs
+	 * 
+	 * @param runFiles Run Files
+	 * @param entryHandler Handler, which gets the entries in sorted order
+	 * @return True if completed, false if stopped
+	 * @throws IOException
+	 */
+	private boolean mergeRuns(List<Path> runFiles, EntryHandler entryHandler) throws IOException {
+		List<RunReader> runReaders = new ArrayList<>();
+		try {
+			PriorityQueue<RunReader> queue = new PriorityQueue<>(Comparator.comparing(RunReader::getCurrent));
+			for (Path runFile : runFiles) {
+				RunReader runReader = new RunReader(runFile);
+				runReaders.add(runReader);
+				if (runReader.next()) {
+					queue.add(runReader);
+				}
+			}
+
+			while (!queue.isEmpty()) {
+				if (stop) {
+					return false;
+				}
+				RunReader runReader = queue.poll();
+				entryHandler.handle(runReader.getCurrent());
+				if (runReader.next()) {
+					queue.add(runReader);
+				}
+			}
+			return true;
+		} finally {
+			for (RunReader runReader : runReaders) {
+				runReader.close();
+			}
+		}
+	}
+
+	/**
+	 * Read path from the paths file
+	 * 
+	 * @param paths Paths File
+	 * @param offset Offset of the path
+	 * @return Path
+	 * @throws IOException
+	 */
+	private static String readPath(RandomAccessFile paths, long offset) throws IOException {
+		paths.seek(offset);
+		byte[] path = new byte[paths.readInt()];
+		paths.readFully(path);
+		return new String(path, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Write entry to a run. Every entry is preceded by true and the run is terminated by false.
+	 * 
+	 * @param out Output
+	 * @param entry Entry
+	 * @throws IOException
+	 */
+	private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+		byte[] hash = entry.hash().toBytes();
+		out.writeBoolean(true);
+		out.writeShort(hash.length);
+		out.write(hash);
+		out.writeLong(entry.sequence());
+		out.writeInt(entry.listIndex());
+		out.writeLong(entry.pathOffset());
+	}
+
+	/**
+	 * Delete the folder for temporary files and all files in it
+	 * 
+	 * @param workDirectory Folder for temporary files or null
+	 */
+	private void deleteWorkDirectory(Path workDirectory) {
+		if (workDirectory == null) {
+			return;
+		}
+		try (Stream<Path> files = Files.list(workDirectory)) {
+			for (Path file : files.toList()) {
+				Files.deleteIfExists(file);
+			}
+			Files.deleteIfExists(workDirectory);
+		} catch (IOException e) {
+			logger.error("Could not delete temporary files: {}", workDirectory, e);
+		}
+	}
+
+	/**
+	 * Handler for entries
+	 */
+	@FunctionalInterface
+	private interface EntryHandler {
+		/**
+		 * Handle entry
+		 * 
+		 * @param entry Entry
+		 * @throws IOException
+		 */
+		public void handle(Entry entry) throws IOException;
+	}
+
+	/**
+	 * Entry of a run. Entries are sorted by hash and then by position in the hash lists.
+	 * 
+	 * @param hash Hash
+	 * @param sequence Position in all hash lists
+	 * @param listIndex Index of the hash list
+	 * @param pathOffset Offset of the path in the paths file
+	 */
+	private record Entry(HashValue hash, long sequence, int listIndex, long pathOffset) implements Comparable<Entry> {
+		@Override
+		public int compareTo(Entry other) {
+			int result = hash.compareTo(other.hash);
+			if (result != 0) {
+				return result;
+			}
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+
+	/**
+	 * Writes paths to the paths file and sorted runs to run files
+	 */
+	private class RunBuilder implements Closeable {
+		/**
+		 * Folder for temporary files
+		 */
+		private final Path workDirectory;
+
+		/**
+		 * Output for paths
+		 */
+		private final DataOutputStream pathsOut;
+
+		/**
+		 * Entries of the current run
+		 */
+		private final List<Entry> entries = new ArrayList<>();
+
+		/**
+		 * Maximum number of entries of a run
+		 */
+		private final long maxRunEntries = Math.max(1, memoryLimit / ESTIMATED_ENTRY_SIZE);
+
+		/**
+		 * Run Files
+		 */
+		private final List<Path> runFiles = new ArrayList<>();
+
+		/**
+		 * Position of the next hash in all hash lists
+		 */
+		private long sequence = 0;
+
+		/**
+		 * Offset of the next path in the paths file
+		 */
+		private long pathOffset = 0;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param workDirectory Folder for temporary files
+		 * @param pathsFile Paths File
+		 * @throws IOException
+		 */
+		public RunBuilder(Path workDirectory, Path pathsFile) throws IOException {
+			this.workDirectory = workDirectory;
+			this.pathsOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(pathsFile), BUFFER_SIZE));
+		}
+
+		/**
+		 * Add hash
+		 * 
+		 * @param hash Hash
+		 * @param listIndex Index of the hash list
+		 * @throws IOException
+		 */
+		public void add(Hash hash, int listIndex) throws IOException {
+			byte[] path = hash.getFile().getBytes(StandardCharsets.UTF_8);
+			pathsOut.writeInt(path.length);
+			pathsOut.write(path);
+
+			entries.add(new Entry(hash.getHash(), sequence, listIndex, pathOffset));
+			sequence++;
+			pathOffset += Integer.BYTES + path.length;
+
+			if (entries.size() >= maxRunEntries) {
+				writeRun();
+			}
+		}
+
+		/**
+		 * Write the remaining entries and the paths
+		 * 
+		 * @return Run Files
+		 * @throws IOException
+		 */
+		public List<Path> finish() throws IOException {
+			writeRun();
+			pathsOut.flush();
+			logger.info("Hashes: {}, Runs: {}", sequence, runFiles.size());
+			return runFiles;
+		}
+
+		/**
+		 * Sort the entries and write them to a new run file
+		 * 
+		 * @throws IOException
+		 */
+		private void writeRun() throws IOException {
+			if (entries.isEmpty()) {
+				return;
+			}
+			Collections.sort(entries);
+			Path runFile = workDirectory.resolve("run-" + runFiles.size() + ".bin");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFile), BUFFER_SIZE))) {
+				for (Entry entry : entries) {
+					writeEntry(out, entry);
+				}
+				out.writeBoolean(false);
+			}
+			runFiles.add(runFile);
+			entries.clear();
+		}
+
+		@Override
+		public void close() throws IOException {
+			pathsOut.close();
+		}
+	}
+
+	/**
+	 * Reads entries of a run
+	 */
+	private static class RunReader implements Closeable {
+		/**
+		 * Input
+		 */
+		private final DataInputStream in;
+
+		/**
+		 * Current Entry
+		 */
+		private Entry current = null;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param runFile Run File
+		 * @throws IOException
+		 */
+		public RunReader(Path runFile) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(runFile), BUFFER_SIZE));
+		}
+
+		/**
+		 * Read the next entry
+		 * 
+		 * @return True if an entry was read, false if the end of the run was reached
+		 * @throws IOException
+		 */
+		public boolean next() throws IOException {
+			if (!in.readBoolean()) {
+				current = null;
+				return false;
+			}
+			byte[] hash = new byte[in.readShort()];
+			in.readFully(hash);
+			current = new Entry(HashValue.fromBytes(hash), in.readLong(), in.readInt(), in.readLong());
+			return true;
+		}
+
+		/**
+		 * Returns the current entry
+		 * 
+		 * @return Current Entry
+		 */
+		public Entry getCurrent() {
+			return current;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
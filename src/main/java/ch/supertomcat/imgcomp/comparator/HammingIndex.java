@@ -0,0 +1,289 @@
+package ch.supertomcat.imgcomp.comparator;
+
+import java.util.Arrays;
+
+/**
+ * Index for finding 64 bit hashes within a maximum Hamming distance k (Multi-Index Hashing).
+ * 
+ * The hashes are split into m substrings of b = 64 / m bits. If two hashes differ in at most k bits, at least one of their substrings differs in at most
+ * r = k / m (rounded down) bits. So for every substring of a query, all values within distance r of the substring are enumerated and looked up in a table
+ * of the hashes by the value of the substring. Only the hashes found this way are compared with the query.
+ * 
+ * A lookup table has 2^b entries, so b is limited by the number of hashes. The number of substrings is chosen between 64 / b and k + 1 by an estimate of
+ * the cost of a query: For each substring sum(i = 0..r, C(b, i)) values are enumerated and looked up and for uniformly distributed hashes every value has
+ * n / 2^b hashes, which are compared sequentially.
+ * 
+ * Complexity for n hashes: Building the index needs O(m * (n + 2^b)) time and memory, which is O(m * n), because 2^b is at most 2n (or 2^8 for few
+ * hashes). A query needs O(m * sum(i = 0..r, C(b, i))) table lookups and compares the hashes in the looked up buckets, which are about n / 2^b per lookup
+ * for uniformly distributed hashes. With b close to log2(n) a query is sublinear in n. For example for a million hashes and k = 10, 4 substrings of 16 bits
+ * with r = 2 are used, so a query needs 548 lookups and compares about 8000 hashes instead of a million. Many hashes with equal substrings, like
+ * near-duplicates, increase the number of compared hashes up to O(n) per query in the worst case.
+ * 
+ * Instances are not thread-safe.
+ */
+public class HammingIndex {
+	/**
+	 * Maximum supported distance
+	 */
+	public static final int MAX_DISTANCE = 31;
+
+	/**
+	 * Minimum bit length of the substrings, which limits the number of substrings for few hashes
+	 */
+	private static final int MIN_SUBSTRING_BITS = 8;
+
+	/**
+	 * Maximum bit length of the substrings, which limits the memory of the lookup tables
+	 */
+	private static final int MAX_SUBSTRING_BITS = 24;
+
+	/**
+	 * Estimated cost of a table lookup relative to the cost of comparing a hash. A lookup accesses the tables at a random position, while the hashes of a
+	 * value are compared sequentially.
+	 */
+	private static final double LOOKUP_COST = 32;
+
+	/**
+	 * Hashes
+	 */
+	private final long[] hashes;
+
+	/**
+	 * Maximum Distance
+	 */
+	private final int maxDistance;
+
+	/**
+	 * Maximum distance of the substrings, which are enumerated
+	 */
+	private final int substringDistance;
+
+	/**
+	 * Bit offset of each substring
+	 */
+	private final int[] substringOffsets;
+
+	/**
+	 * Bit length of each substring
+	 */
+	private final int[] substringLengths;
+
+	/**
+	 * For each substring the start of the hashes with each value of the substring in {@link #tableHashes} and {@link #tableHashIndexes}. The hashes with
+	 * value v are stored from tableStarts[s][v] to tableStarts[s][v + 1].
+	 */
+	private final int[][] tableStarts;
+
+	/**
+	 * For each substring the hashes grouped by the value of the substring. The hashes are stored in the table, so that the hashes of a value are compared
+	 * sequentially and not looked up by their index.
+	 */
+	private final long[][] tableHashes;
+
+	/**
+	 * For each substring the indexes of the hashes in the same order as {@link #tableHashes}
+	 */
+	private final int[][] tableHashIndexes;
+
+	/**
+	 * For each hash the last query, in which the hash was found. Used to return every hash only once per query.
+	 */
+	private final int[] lastQuery;
+
+	/**
+	 * Number of queries
+	 */
+	private int queryCount = 0;
+
+	/**
+	 * Buffer for results
+	 */
+	private int[] resultBuffer = new int[16];
+
+	/**
+	 * Number of results in the buffer
+	 */
+	private int resultCount = 0;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param hashes Hashes
+	 * @param maxDistance Maximum Distance
+	 * @throws IllegalArgumentException if maxDistance is negative or greater than {@link #MAX_DISTANCE}
+	 */
+	public HammingIndex(long[] hashes, int maxDistance) {
+		if (maxDistance < 0 || maxDistance > MAX_DISTANCE) {
+			throw new IllegalArgumentException("Distance must be between 0 and " + MAX_DISTANCE + ": " + maxDistance);
+		}
+		this.hashes = hashes;
+		this.maxDistance = maxDistance;
+		this.lastQuery = new int[hashes.length];
+
+		int substringCount = getSubstringCount(hashes.length, maxDistance);
+		substringDistance = maxDistance / substringCount;
+		substringOffsets = new int[substringCount];
+		substringLengths = new int[substringCount];
+		tableStarts = new int[substringCount][];
+		tableHashes = new long[substringCount][];
+		tableHashIndexes = new int[substringCount][];
+		int offset = 0;
+		for (int s = 0; s < substringCount; s++) {
+			substringOffsets[s] = offset;
+			substringLengths[s] = getSubstringLength(substringCount, s);
+			offset += substringLengths[s];
+
+			int[] starts = new int[(1 << substringLengths[s]) + 1];
+			for (long hash : hashes) {
+				starts[getSubstring(hash, s) + 1]++;
+			}
+			for (int v = 1; v < starts.length; v++) {
+				starts[v] += starts[v - 1];
+			}
+			int[] insertPositions = Arrays.copyOf(starts, starts.length - 1);
+			long[] groupedHashes = new long[hashes.length];
+			int[] hashIndexes = new int[hashes.length];
+			for (int i = 0; i < hashes.length; i++) {
+				int position = insertPositions[getSubstring(hashes[i], s)]++;
+				groupedHashes[position] = hashes[i];
+				hashIndexes[position] = i;
+			}
+			tableStarts[s] = starts;
+			tableHashes[s] = groupedHashes;
+			tableHashIndexes[s] = hashIndexes;
+		}
+	}
+
+	/**
+	 * Returns the number of substrings with the lowest estimated cost of a query
+	 * 
+	 * @param hashCount Number of hashes
+	 * @param maxDistance Maximum Distance
+	 * @return Number of substrings
+	 */
+	private static int getSubstringCount(int hashCount, int maxDistance) {
+		// The lookup tables should not have more entries than twice the number of hashes
+		int maxBits = Math.min(Math.max(Integer.SIZE - Integer.numberOfLeadingZeros(hashCount), MIN_SUBSTRING_BITS), MAX_SUBSTRING_BITS);
+		int minCount = (Long.SIZE + maxBits - 1) / maxBits;
+		// With more than maxDistance + 1 substrings only equal substrings are enumerated, so more substrings only need more lookups
+		int maxCount = Math.max(minCount, maxDistance + 1);
+
+		int bestCount = minCount;
+		double bestCost = Double.MAX_VALUE;
+		for (int count = minCount; count <= maxCount; count++) {
+			int distance = maxDistance / count;
+			double cost = 0;
+			for (int s = 0; s < count; s++) {
+				int length = getSubstringLength(count, s);
+				cost += getEnumeratedCount(length, distance) * (LOOKUP_COST + (double)hashCount / (1L << length));
+			}
+			if (cost < bestCost) {
+				bestCost = cost;
+				bestCount = count;
+			}
+		}
+		return bestCount;
+	}
+
+	/**
+	 * Returns the bit length of a substring
+	 * 
+	 * @param substringCount Number of substrings
+	 * @param substring Index of the substring
+	 * @return Bit length
+	 */
+	private static int getSubstringLength(int substringCount, int substring) {
+		return Long.SIZE / substringCount + (substring < Long.SIZE % substringCount ? 1 : 0);
+	}
+
+	/**
+	 * Returns the number of values within a distance of a value
+	 * 
+	 * @param length Bit length of the values
+	 * @param distance Distance
+	 * @return Number of values
+	 */
+	private static double getEnumeratedCount(int length, int distance) {
+		double count = 0;
+		double binomial = 1;
+		for (int i = 0; i <= distance && i <= length; i++) {
+			count += binomial;
+			binomial = binomial * (length - i) / (i + 1);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the value of a substring
+	 * 
+	 * @param hash Hash
+	 * @param substring Index of the substring
+	 * @return Value
+	 */
+	private int getSubstring(long hash, int substring) {
+		return (int)((hash >>> substringOffsets[substring]) & ((1L << substringLengths[substring]) - 1));
+	}
+
+	/**
+	 * Returns the indexes of all hashes within the maximum distance of the hash, including the hash itself
+	 * 
+	 * @param index Index of the hash
+	 * @return Indexes in ascending order
+	 */
+	public int[] findWithinDistance(int index) {
+		queryCount++;
+		resultCount = 0;
+		long hash = hashes[index];
+		for (int s = 0; s < substringOffsets.length; s++) {
+			findCandidates(hash, s, getSubstring(hash, s), 0, substringDistance);
+		}
+		int[] result = Arrays.copyOf(resultBuffer, resultCount);
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * Looks up the hashes with a value of a substring and then enumerates the values, which differ in more bits
+	 * 
+	 * @param hash Hash of the query
+	 * @param substring Index of the substring
+	 * @param value Value of the substring
+	 * @param firstBit First bit, which may be flipped, so that every value is enumerated only once
+	 * @param remainingDistance Number of bits, which may still be flipped
+	 */
+	private void findCandidates(long hash, int substring, int value, int firstBit, int remainingDistance) {
+		int[] starts = tableStarts[substring];
+		long[] groupedHashes = tableHashes[substring];
+		for (int position = starts[value]; position < starts[value + 1]; position++) {
+			if (getDistance(hash, groupedHashes[position]) > maxDistance) {
+				continue;
+			}
+			// A hash can be found by more than one substring
+			int candidate = tableHashIndexes[substring][position];
+			if (lastQuery[candidate] != queryCount) {
+				lastQuery[candidate] = queryCount;
+				if (resultCount == resultBuffer.length) {
+					resultBuffer = Arrays.copyOf(resultBuffer, resultBuffer.length * 2);
+				}
+				resultBuffer[resultCount] = candidate;
+				resultCount++;
+			}
+		}
+		if (remainingDistance > 0) {
+			for (int bit = firstBit; bit < substringLengths[substring]; bit++) {
+				findCandidates(hash, substring, value ^ (1 << bit), bit + 1, remainingDistance - 1);
+			}
+		}
+	}
+
+	/**
+	 * Returns the Hamming distance between two hashes
+	 * 
+	 * @param hash1 Hash 1
+	 * @param hash2 Hash 2
+	 * @return Number of different bits
+	 */
+	public static int getDistance(long hash1, long hash2) {
+		return Long.bitCount(hash1 ^ hash2);
+	}
+}
@@ -1,17 +1,25 @@
 package ch.supertomcat.imgcomp.comparator;
 
-import java.io.BufferedWriter;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ch.supertomcat.imgcomp.hasher.Hash;
+import ch.supertomcat.imgcomp.hasher.HashValue;
 import ch.supertomcat.imgcomp.hasher.ImageHashList;
 import ch.supertomcat.imgcomp.task.ImgCompTaskBase;
 import ch.supertomcat.supertomcatutils.gui.progress.ProgressObserver;
@@ -20,6 +28,21 @@ import ch.supertomcat.supertomcatutils.gui.progress.ProgressObserver;
  * Comparater-Class which provides methods to find duplicates in a hash-list
  */
 public class HashComparatorTask extends ImgCompTaskBase {
+	/**
+	 * Number of buckets per thread, so that the threads are busy until the end, even if buckets take different time
+	 */
+	private static final int BUCKETS_PER_THREAD = 16;
+
+	/**
+	 * Maximum number of leading bits of the hash values used for buckets
+	 */
+	private static final int MAX_BUCKET_BITS = 16;
+
+	/**
+	 * Interval in milliseconds in which progress is updated while grouping in parallel
+	 */
+	private static final long PROGRESS_UPDATE_INTERVAL = 250;
+
 	/**
 	 * Logger
 	 */
@@ -55,6 +78,26 @@ public class HashComparatorTask extends ImgCompTaskBase {
 	 */
 	private final boolean foldersOnly;
 
+	/**
+	 * Maximum Hamming distance of perceptual hashes of similar images or 0 if only equal hashes are searched
+	 */
+	private int maxDistance = 0;
+
+	/**
+	 * Number of threads used to group equal hashes
+	 */
+	private int threadCount = 1;
+
+	/**
+	 * Format of the result file
+	 */
+	private ResultFormat resultFormat = ResultFormat.TEXT;
+
+	/**
+	 * Result file or null if the default file of the format is used
+	 */
+	private String resultFile = null;
+
 	/**
 	 * Duplicates
 	 */
@@ -70,9 +113,19 @@ public class HashComparatorTask extends ImgCompTaskBase {
 	 * @param noDuplicates Prints out only non-Duplicates (Only used when reverse is true)
 	 * @param filenames Compares the filenames also, not only the hashes
 	 * @param foldersOnly Prints out only folders in which duplicates where found
+	 * @throws IllegalArgumentException if the hash lists were created with different hash types, hash algorithms or hash modes
 	 */
 	public HashComparatorTask(List<ImageHashList> imageHashLists, ProgressObserver progress, SearchMode searchMode, boolean reverse, boolean noDuplicates, boolean filenames, boolean foldersOnly) {
 		super(progress);
+		for (ImageHashList imageHashList : imageHashLists) {
+			if (!imageHashList.isCompatible(imageHashLists.get(0))) {
+				throw new IllegalArgumentException("Hash Lists were created with different hash types, hash algorithms or hash modes: " + imageHashLists.get(0).getFolder()
+						+ " (" + imageHashLists.get(0).getHashType().getCommandLineName() + ", " + imageHashLists.get(0).getHashAlgorithm().getCommandLineName() + ", "
+						+ imageHashLists.get(0).getHashMode().getCommandLineName() + "), " + imageHashList.getFolder() + " ("
+						+ imageHashList.getHashType().getCommandLineName() + ", " + imageHashList.getHashAlgorithm().getCommandLineName() + ", "
+						+ imageHashList.getHashMode().getCommandLineName() + ")");
+			}
+		}
 		this.imageHashLists = imageHashLists;
 		this.searchMode = searchMode;
 		this.reverse = reverse;
@@ -158,174 +211,737 @@ public class HashComparatorTask extends ImgCompTaskBase {
 		return foldersOnly;
 	}
 
+	/**
+	 * Returns the maxDistance
+	 * 
+	 * @return maxDistance
+	 */
+	public int getMaxDistance() {
+		return maxDistance;
+	}
+
+	/**
+	 * Sets the maximum Hamming distance. If greater than 0, similar images are searched instead of equal hashes. All pairs of images, which have hashes
+	 * within the distance, are found by a {@link HammingIndex} and each image is grouped with the later images within the distance of it, see
+	 * {@link #compareSimilarHashes()}.
+	 * 
+	 * @param maxDistance Maximum number of different bits of perceptual hashes of similar images or 0 if only equal hashes are searched
+	 * @throws IllegalArgumentException if maxDistance is out of range or greater than 0 and the hash lists don't contain perceptual hashes
+	 */
+	public void setMaxDistance(int maxDistance) {
+		if (maxDistance < 0 || maxDistance > HammingIndex.MAX_DISTANCE) {
+			throw new IllegalArgumentException("Distance must be between 0 and " + HammingIndex.MAX_DISTANCE + ": " + maxDistance);
+		}
+		if (maxDistance > 0 && !imageHashLists.isEmpty() && !imageHashLists.get(0).getHashType().isPerceptual()) {
+			throw new IllegalArgumentException("Similar images can only be searched in hash lists with perceptual hashes: " + imageHashLists.get(0).getFolder());
+		}
+		this.maxDistance = maxDistance;
+	}
+
+	/**
+	 * Returns the threadCount
+	 * 
+	 * @return threadCount
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Sets the number of threads used to group equal hashes. If greater than 1, the hashes are partitioned into buckets by the leading bits of the hash
+	 * values, which are grouped in parallel. The result is the same as with one thread.
+	 * 
+	 * @param threadCount Number of threads
+	 * @throws IllegalArgumentException if threadCount is less than 1
+	 */
+	public void setThreadCount(int threadCount) {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("Thread count must be at least 1: " + threadCount);
+		}
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Returns the resultFormat
+	 * 
+	 * @return resultFormat
+	 */
+	public ResultFormat getResultFormat() {
+		return resultFormat;
+	}
+
+	/**
+	 * Sets the resultFormat
+	 * 
+	 * @param resultFormat resultFormat
+	 */
+	public void setResultFormat(ResultFormat resultFormat) {
+		this.resultFormat = resultFormat;
+	}
+
+	/**
+	 * Returns the resultFile
+	 * 
+	 * @return Result file or null if the default file of the format is used
+	 */
+	public String getResultFile() {
+		return resultFile;
+	}
+
+	/**
+	 * Sets the resultFile
+	 * 
+	 * @param resultFile Result file or null if the default file of the format is used
+	 */
+	public void setResultFile(String resultFile) {
+		this.resultFile = resultFile;
+	}
+
 	/**
 	 * Compare Hashes
+	 * 
+	 * Duplicates are written to the result file as soon as they are complete. Only if foldersOnly is set, all duplicates are written at the end, because
+	 * duplicates with the same folders have to be removed first.
 	 */
 	private void compareHashes() {
 		progress.progressChanged("Searching for duplicates...");
 		progress.progressModeChanged(false);
 
-		List<Hash> currentHashes;
-		for (int cl = 0; cl < imageHashLists.size(); cl++) {
-			currentHashes = imageHashLists.get(cl).getHashes();
-			progress.progressChanged(0, currentHashes.size() - 1, 0);
+		try (ResultWriter resultWriter = createResultWriter()) {
+			logger.info("Writing result to file: {}", resultWriter.getFile());
+			Consumer<Duplicate> completedDuplicateHandler = foldersOnly ? null : duplicate -> {
+				try {
+					resultWriter.write(duplicate);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			};
+
+			boolean completed = maxDistance > 0 ? compareSimilarHashes(completedDuplicateHandler) : compareEqualHashes(completedDuplicateHandler);
+			if (!completed) {
+				return;
+			}
 
-			for (int i = 0; i < currentHashes.size(); i++) {
-				if (stop) {
-					return;
+			if (foldersOnly) {
+				removeFolderDuplicates(duplicates);
+				for (Duplicate duplicate : duplicates) {
+					resultWriter.write(duplicate);
 				}
+			}
+			resultWriter.commit();
+		} catch (IOException | UncheckedIOException e) {
+			logger.error(e.getMessage(), e);
+		}
 
-				boolean bNotFound = true;
+		progress.progressCompleted();
+		progress.progressChanged("Done");
+	}
 
-				if (searchMode != SearchMode.LIST_EXCLUSIVE_SEARCH) {
-					for (int j = i + 1; j < currentHashes.size(); j++) {
-						if (stop) {
-							return;
-						}
+	/**
+	 * Compare hashes and find equal hashes.
+	 * 
+	 * The hashes are grouped by a key, which consists of the hash and if needed the filename and the partition. Partitions are the hash lists in list search
+	 * modes and the folders in inclusive and exclusive search. An image is a duplicate of the first image with the same key, which was found before it. In
+	 * exclusive search modes the partition is not part of the key, but an image is a duplicate of the first earlier image with the same key in another
+	 * partition. The duplicates are grouped by hash and the files are added in the order they were always found by comparing every hash with every later
+	 * hash, so the result is the same, but it only takes linear time.
+	 * 
+	 * @param completedDuplicateHandler Handler, which gets the duplicates in the order of the result as soon as they are complete, or null
+	 * @return True if completed, false if stopped
+	 */
+	private boolean compareEqualHashes(Consumer<Duplicate> completedDuplicateHandler) {
+		List<Hash> hashes = new ArrayList<>();
+		int[] listIndexes = collectHashes(hashes);
+		boolean completed;
+		if (threadCount > 1) {
+			completed = groupEqualHashesParallel(hashes, listIndexes, completedDuplicateHandler);
+		} else {
+			completed = groupEqualHashes(hashes, listIndexes, duplicates, null, completedDuplicateHandler, true);
+		}
+		if (completed) {
+			logger.info("Duplicates found: {}", duplicates.size());
+		}
+		return completed;
+	}
 
-						// Compare
-						boolean isDuplicate = compareHash(currentHashes.get(i), currentHashes.get(j), duplicates);
-						if (isDuplicate) {
-							bNotFound = false;
-						}
-					}
+	/**
+	 * Group equal hashes. See {@link #compareEqualHashes()}.
+	 * 
+	 * The hashes can also be a part of all hashes, as long as it contains all hashes with the same hash values and is in the same order.
+	 * 
+	 * @param hashes Hashes in the order of the hash lists
+	 * @param listIndexes Index of the hash list of each hash
+	 * @param duplicates List to which the duplicates are added
+	 * @param firstIndexes Array, which is filled with the index of the first image of each added duplicate in the order of the duplicates, or null. The
+	 *            length must be at least the count of hashes.
+	 * @param completedDuplicateHandler Handler, which gets the added duplicates in the order of the duplicates as soon as they and all duplicates before
+	 *            them are complete, or null
+	 * @param updateProgress True if the progress should be updated, false otherwise
+	 * @return True if completed, false if stopped
+	 */
+	protected boolean groupEqualHashes(List<Hash> hashes, int[] listIndexes, List<Duplicate> duplicates, int[] firstIndexes, Consumer<Duplicate> completedDuplicateHandler, boolean updateProgress) {
+		int count = hashes.size();
+
+		boolean samePartitionOnly = searchMode == SearchMode.INCLUSIVE_SEARCH || searchMode == SearchMode.LIST_INCLUSIVE_SEARCH;
+		boolean otherPartitionsOnly = searchMode == SearchMode.EXCLUSIVE_SEARCH || searchMode == SearchMode.LIST_EXCLUSIVE_SEARCH;
+		int[] partitions = getPartitions(hashes, listIndexes);
+
+		/*
+		 * The first image, which was compared with an image, is the source of it. Images are compared with all later images with the same key, in exclusive
+		 * search modes only with images in other partitions. So the source is the first image with the same key or in exclusive search modes the first image
+		 * in another partition than the image.
+		 */
+		GroupKey[] keys = new GroupKey[count];
+		int[] sourceIndexes = new int[count];
+		Map<GroupKey, Integer> firstIndexByKey = new HashMap<>();
+		Map<GroupKey, Integer> firstOtherPartitionIndexByKey = new HashMap<>();
+		if (updateProgress) {
+			progress.progressChanged(0, count - 1, 0);
+		}
+		for (int i = 0; i < count; i++) {
+			if (stop) {
+				return false;
+			}
+
+			Hash hash = hashes.get(i);
+			keys[i] = new GroupKey(hash.getHash(), filenames ? hash.getFilename() : null, samePartitionOnly ? partitions[i] : -1);
+			Integer firstIndex = firstIndexByKey.putIfAbsent(keys[i], i);
+			if (firstIndex == null) {
+				sourceIndexes[i] = -1;
+			} else if (!otherPartitionsOnly || partitions[firstIndex] != partitions[i]) {
+				sourceIndexes[i] = firstIndex;
+				if (otherPartitionsOnly) {
+					firstOtherPartitionIndexByKey.putIfAbsent(keys[i], i);
 				}
+			} else {
+				// The first image in another partition than the first image is the first image in another partition than this image
+				sourceIndexes[i] = firstOtherPartitionIndexByKey.getOrDefault(keys[i], -1);
+			}
+			if (updateProgress) {
+				progress.progressChanged(i);
+			}
+		}
 
-				if (searchMode != SearchMode.LIST_INCLUSIVE_SEARCH) {
-					ImageHashList otherList;
-					for (int ol = cl + 1; ol < imageHashLists.size(); ol++) {
-						if (stop) {
-							return;
-						}
-
-						otherList = imageHashLists.get(ol);
-						for (int x = 0; x < otherList.getHashes().size(); x++) {
-							// Compare
-							boolean isDuplicate = compareHash(currentHashes.get(i), otherList.getHashes().get(x), duplicates);
-							if (isDuplicate) {
-								bNotFound = false;
-								logger.info("Duplicate found: {}, {}", currentHashes.get(i).getFile(), otherList.getHashes().get(x).getFile());
-							}
-						}
-					}
+		// Same in reverse order to find out if an image was compared with a later image
+		boolean[] laterDuplicateFound = new boolean[count];
+		Map<GroupKey, Integer> lastIndexByKey = new HashMap<>();
+		Map<GroupKey, Integer> lastOtherPartitionIndexByKey = new HashMap<>();
+		for (int i = count - 1; i >= 0; i--) {
+			if (stop) {
+				return false;
+			}
+
+			Integer lastIndex = lastIndexByKey.putIfAbsent(keys[i], i);
+			if (lastIndex == null) {
+				laterDuplicateFound[i] = false;
+			} else if (!otherPartitionsOnly || partitions[lastIndex] != partitions[i]) {
+				laterDuplicateFound[i] = true;
+				if (otherPartitionsOnly) {
+					lastOtherPartitionIndexByKey.putIfAbsent(keys[i], i);
 				}
+			} else {
+				laterDuplicateFound[i] = lastOtherPartitionIndexByKey.containsKey(keys[i]);
+			}
+		}
 
-				if (reverse && noDuplicates && bNotFound) {
-					duplicates.add(new Duplicate(currentHashes.get(i).getHash(), currentHashes.get(i).getFile()));
-				} else if (reverse && (noDuplicates == false)) {
-					duplicates.add(new Duplicate(currentHashes.get(i).getHash(), currentHashes.get(i).getFile()));
+		int addedCount = 0;
+		if (reverse) {
+			for (int i = 0; i < count; i++) {
+				if (!noDuplicates || !laterDuplicateFound[i]) {
+					Duplicate duplicate = new Duplicate(hashes.get(i).getHash(), hashes, i);
+					duplicates.add(duplicate);
+					if (firstIndexes != null) {
+						firstIndexes[addedCount] = i;
+					}
+					addedCount++;
+					if (completedDuplicateHandler != null) {
+						completedDuplicateHandler.accept(duplicate);
+					}
 				}
-				progress.progressChanged(i);
 			}
+			return true;
 		}
 
-		if (foldersOnly) {
-			removeFolderDuplicates(duplicates);
+		// Linked lists of the images for each source image
+		int[] firstFoundIndexes = new int[count];
+		int[] lastFoundIndexes = new int[count];
+		int[] nextFoundIndexes = new int[count];
+		Arrays.fill(firstFoundIndexes, -1);
+		Arrays.fill(nextFoundIndexes, -1);
+		for (int i = 0; i < count; i++) {
+			int sourceIndex = sourceIndexes[i];
+			if (sourceIndex < 0) {
+				continue;
+			}
+			if (firstFoundIndexes[sourceIndex] < 0) {
+				firstFoundIndexes[sourceIndex] = i;
+			} else {
+				nextFoundIndexes[lastFoundIndexes[sourceIndex]] = i;
+			}
+			lastFoundIndexes[sourceIndex] = i;
 		}
 
-		writeResultToFile(duplicates, foldersOnly, reverse, "./Duplicates.txt");
-		progress.progressCompleted();
-		progress.progressChanged("Done");
+		/*
+		 * A duplicate gets the images of all images with its hash, which have a later duplicate, so it is complete after the last of them. In normal search
+		 * without filenames this is always the first image, so the duplicates can be handled almost immediately.
+		 */
+		Map<HashValue, Integer> lastIndexByHash = new HashMap<>();
+		if (completedDuplicateHandler != null) {
+			for (int i = 0; i < count; i++) {
+				if (laterDuplicateFound[i]) {
+					lastIndexByHash.put(hashes.get(i).getHash(), i);
+				}
+			}
+		}
+		int firstAddedIndex = duplicates.size();
+		boolean[] completedDuplicates = new boolean[completedDuplicateHandler != null ? count : 0];
+		int handledCount = 0;
+
+		// Duplicates are only grouped by hash, even if filenames or lists are part of the key
+		Map<HashValue, Integer> duplicateIndexesByHash = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			if (!laterDuplicateFound[i]) {
+				continue;
+			}
+			Hash hash = hashes.get(i);
+			Integer duplicateIndex = duplicateIndexesByHash.get(hash.getHash());
+			if (duplicateIndex == null) {
+				duplicateIndex = addedCount;
+				duplicateIndexesByHash.put(hash.getHash(), duplicateIndex);
+				duplicates.add(new Duplicate(hash.getHash(), hashes, i));
+				if (firstIndexes != null) {
+					firstIndexes[addedCount] = i;
+				}
+				addedCount++;
+			}
+			Duplicate duplicate = duplicates.get(firstAddedIndex + duplicateIndex);
+			for (int foundIndex = firstFoundIndexes[i]; foundIndex >= 0; foundIndex = nextFoundIndexes[foundIndex]) {
+				duplicate.addFile(foundIndex);
+			}
+
+			if (completedDuplicateHandler != null && lastIndexByHash.get(hash.getHash()) == i) {
+				completedDuplicates[duplicateIndex] = true;
+				while (handledCount < addedCount && completedDuplicates[handledCount]) {
+					completedDuplicateHandler.accept(duplicates.get(firstAddedIndex + handledCount));
+					handledCount++;
+				}
+			}
+		}
+		return true;
 	}
 
-	private boolean compareHash(Hash hash1, Hash hash2, List<Duplicate> duplicates) {
-		boolean result = false;
+	/**
+	 * Group equal hashes in parallel. See {@link #compareEqualHashes()}.
+	 * 
+	 * Equal hashes always have the same leading bits, so the hashes are partitioned into buckets by the leading bits of the hash values. The buckets keep the
+	 * order of the hashes and are grouped independently on a {@link ForkJoinPool}. The duplicates of all buckets are then merged in the order of the index
+	 * of their first image, which is the order in which they are found by {@link #groupEqualHashes(List, int[], List, int[], Consumer, boolean)} for all
+	 * hashes.
+	 * 
+	 * The duplicates are only complete, when all buckets are grouped, so they are passed to the completed duplicate handler after merging.
+	 * 
+	 * @param hashes Hashes in the order of the hash lists
+	 * @param listIndexes Index of the hash list of each hash
+	 * @param completedDuplicateHandler Handler, which gets the duplicates in the order of the result as soon as they are complete, or null
+	 * @return True if completed, false if stopped
+	 */
+	private boolean groupEqualHashesParallel(List<Hash> hashes, int[] listIndexes, Consumer<Duplicate> completedDuplicateHandler) {
+		int count = hashes.size();
+		int bucketBits = Math.min(MAX_BUCKET_BITS, 32 - Integer.numberOfLeadingZeros(threadCount * BUCKETS_PER_THREAD - 1));
+		int bucketCount = 1 << bucketBits;
+
+		int[] bucketSizes = new int[bucketCount];
+		int[] bucketIndexes = new int[count];
+		for (int i = 0; i < count; i++) {
+			int bucketIndex = (int)(hashes.get(i).getHash().getHigh() >>> (Long.SIZE - bucketBits));
+			bucketIndexes[i] = bucketIndex;
+			bucketSizes[bucketIndex]++;
+		}
 
-		if (hash1.getHash().equals(hash2.getHash())) {
-			if (filenames) {
-				if (hash1.getFilename().equals(hash2.getFilename()) == false) {
-					return result;
+		List<Bucket> buckets = new ArrayList<>(bucketCount);
+		for (int bucketIndex = 0; bucketIndex < bucketCount; bucketIndex++) {
+			buckets.add(new Bucket(new ArrayList<>(bucketSizes[bucketIndex]), new int[bucketSizes[bucketIndex]], new int[bucketSizes[bucketIndex]]));
+		}
+		for (int i = 0; i < count; i++) {
+			Bucket bucket = buckets.get(bucketIndexes[i]);
+			int bucketPosition = bucket.hashes().size();
+			bucket.hashes().add(hashes.get(i));
+			bucket.listIndexes()[bucketPosition] = listIndexes[i];
+			bucket.hashIndexes()[bucketPosition] = i;
+		}
+
+		progress.progressChanged(0, count, 0);
+		AtomicInteger groupedCount = new AtomicInteger();
+		Duplicate[] duplicatesByFirstIndex = new Duplicate[count];
+		ForkJoinPool pool = new ForkJoinPool(threadCount);
+		try {
+			ForkJoinTask<Boolean> task = pool.submit(new RecursiveTask<Boolean>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Boolean compute() {
+					List<RecursiveTask<Boolean>> tasks = new ArrayList<>();
+					for (Bucket bucket : buckets) {
+						tasks.add(new RecursiveTask<Boolean>() {
+							private static final long serialVersionUID = 1L;
+
+							@Override
+							protected Boolean compute() {
+								return groupBucket(bucket, duplicatesByFirstIndex, groupedCount);
+							}
+						});
+					}
+					boolean bucketsCompleted = true;
+					for (RecursiveTask<Boolean> task : invokeAll(tasks)) {
+						bucketsCompleted &= task.join();
+					}
+					return bucketsCompleted;
 				}
+			});
+			pool.shutdown();
+
+			// Progress is only updated from this thread
+			while (!pool.awaitTermination(PROGRESS_UPDATE_INTERVAL, TimeUnit.MILLISECONDS)) {
+				progress.progressChanged(groupedCount.get());
 			}
-			result = true;
-			if (!reverse) {
-				Duplicate duplicate = getDuplicateForHash(duplicates, hash1.getHash());
-				if (duplicate == null) {
-					duplicate = new Duplicate(hash1.getHash(), hash1.getFile());
-					duplicates.add(duplicate);
+			progress.progressChanged(groupedCount.get());
+			if (!task.join()) {
+				return false;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			stop = true;
+			logger.error("Interrupted while waiting for grouping threads", e);
+			return false;
+		} finally {
+			pool.shutdownNow();
+		}
+
+		for (Duplicate duplicate : duplicatesByFirstIndex) {
+			if (duplicate != null) {
+				duplicates.add(duplicate);
+				if (completedDuplicateHandler != null) {
+					completedDuplicateHandler.accept(duplicate);
 				}
-				duplicate.addFile(hash2.getFile());
 			}
 		}
+		return true;
+	}
+
+	/**
+	 * Group equal hashes of a bucket
+	 * 
+	 * @param bucket Bucket
+	 * @param duplicatesByFirstIndex Array in which the duplicates are stored at the index of their first image
+	 * @param groupedCount Count of grouped hashes of all buckets
+	 * @return True if completed, false if stopped
+	 */
+	private boolean groupBucket(Bucket bucket, Duplicate[] duplicatesByFirstIndex, AtomicInteger groupedCount) {
+		List<Duplicate> bucketDuplicates = new ArrayList<>();
+		int[] firstIndexes = new int[bucket.hashes().size()];
+		if (!groupEqualHashes(bucket.hashes(), bucket.listIndexes(), bucketDuplicates, firstIndexes, null, false)) {
+			return false;
+		}
+		for (int i = 0; i < bucketDuplicates.size(); i++) {
+			duplicatesByFirstIndex[bucket.hashIndexes()[firstIndexes[i]]] = bucketDuplicates.get(i);
+		}
+		groupedCount.addAndGet(bucket.hashes().size());
+		return true;
+	}
+
+	/**
+	 * Returns the partition of each hash for the search mode. Folders are interned to IDs, so that partitions can be compared fast.
+	 * 
+	 * @param hashes Hashes
+	 * @param listIndexes Index of the hash list of each hash
+	 * @return Folder ID of each hash in inclusive and exclusive search, index of the hash list in list search modes or 0 in normal search
+	 */
+	private int[] getPartitions(List<Hash> hashes, int[] listIndexes) {
+		switch (searchMode) {
+			case INCLUSIVE_SEARCH:
+			case EXCLUSIVE_SEARCH:
+				int[] folderIds = new int[hashes.size()];
+				Map<String, Integer> folderIdsByFolder = new HashMap<>();
+				for (int i = 0; i < folderIds.length; i++) {
+					Integer folderId = folderIdsByFolder.putIfAbsent(hashes.get(i).getFolder(), folderIdsByFolder.size());
+					folderIds[i] = folderId != null ? folderId : folderIdsByFolder.size() - 1;
+				}
+				return folderIds;
+			case LIST_INCLUSIVE_SEARCH:
+			case LIST_EXCLUSIVE_SEARCH:
+				return listIndexes;
+			case NORMAL_SEARCH:
+			default:
+				return new int[hashes.size()];
+		}
+	}
 
-		return result;
+	/**
+	 * Collect the hashes of all hash lists
+	 * 
+	 * @param hashes List to which the hashes are added
+	 * @return Index of the hash list of each hash
+	 */
+	private int[] collectHashes(List<Hash> hashes) {
+		int[] listIndexes = new int[imageHashLists.stream().mapToInt(x -> x.getHashes().size()).sum()];
+		for (int cl = 0; cl < imageHashLists.size(); cl++) {
+			for (Hash hash : imageHashLists.get(cl).getHashes()) {
+				listIndexes[hashes.size()] = cl;
+				hashes.add(hash);
+			}
+		}
+		return listIndexes;
 	}
 
 	/**
-	 * @param duplicates
+	 * Compare perceptual hashes and find similar images. Pairs of images within the maximum distance are found with a {@link HammingIndex}.
+	 * 
+	 * Similarity is not transitive, so images are not grouped by chains of pairs. The images are processed in order and each image, which is not yet part of
+	 * a duplicate, becomes the first image of a duplicate with all later images within the maximum distance of it, which are not yet part of a duplicate
+	 * either. The hash of the duplicate is the hash of the first image and the distance of each image is the distance to this hash, so it is never greater
+	 * than the maximum distance. Each image is part of at most one duplicate. A duplicate is complete as soon as its first image was processed.
+	 * 
+	 * The pairs are restricted by the search mode and the filenames flag in the same way as equal hashes are.
+	 * 
+	 * @param completedDuplicateHandler Handler, which gets the duplicates in the order of the result as soon as they are complete, or null
+	 * @return True if completed, false if stopped
 	 */
-	private void removeFolderDuplicates(List<Duplicate> duplicates) {
-		for (int i = 0; i < duplicates.size(); i++) {
-			for (int x = 0; x < duplicates.size(); x++) {
-				if (i == x) {
+	private boolean compareSimilarHashes(Consumer<Duplicate> completedDuplicateHandler) {
+		List<Hash> hashes = new ArrayList<>();
+		int[] listIndexes = collectHashes(hashes);
+
+		long[] values = new long[hashes.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = hashes.get(i).getHash().getHigh();
+		}
+		HammingIndex hammingIndex = new HammingIndex(values, maxDistance);
+
+		boolean[] grouped = new boolean[hashes.size()];
+		boolean[] laterDuplicateFound = new boolean[hashes.size()];
+		long pairCount = 0;
+
+		progress.progressChanged(0, hashes.size() - 1, 0);
+		for (int i = 0; i < hashes.size(); i++) {
+			if (stop) {
+				return false;
+			}
+
+			// Only an image, which is not part of an earlier duplicate, can be the first image of a duplicate
+			boolean first = !reverse && !grouped[i];
+			Duplicate duplicate = null;
+			for (int j : hammingIndex.findWithinDistance(i)) {
+				if (j <= i || !isComparedPair(hashes.get(i), listIndexes[i], hashes.get(j), listIndexes[j])) {
 					continue;
 				}
-				if (duplicates.get(i).equalsFolderDuplicate(duplicates.get(x))) {
-					duplicates.remove(x);
-					x--;
+				laterDuplicateFound[i] = true;
+				pairCount++;
+				if (!first || grouped[j]) {
+					continue;
+				}
+				if (duplicate == null) {
+					duplicate = new Duplicate(hashes.get(i).getHash(), hashes, i);
+					duplicates.add(duplicate);
+					grouped[i] = true;
+				}
+				duplicate.addFile(j, HammingIndex.getDistance(values[i], values[j]));
+				grouped[j] = true;
+			}
+			if (duplicate != null && completedDuplicateHandler != null) {
+				completedDuplicateHandler.accept(duplicate);
+			}
+			progress.progressChanged(i);
+		}
+		logger.info("Similar image pairs found: {}", pairCount);
+
+		if (reverse) {
+			for (int i = 0; i < hashes.size(); i++) {
+				if (!noDuplicates || !laterDuplicateFound[i]) {
+					Duplicate duplicate = new Duplicate(hashes.get(i).getHash(), hashes, i);
+					duplicates.add(duplicate);
+					if (completedDuplicateHandler != null) {
+						completedDuplicateHandler.accept(duplicate);
+					}
 				}
 			}
 		}
+		return true;
 	}
 
 	/**
-	 * Returns the duplicate for the hash or null if not found
+	 * Check if the search mode and the filenames flag allow a pair of images
 	 * 
-	 * @param duplicates Duplicates
-	 * @param hash Hash
-	 * @return the duplicate for the hash or null if not found
+	 * @param hash1 Hash 1
+	 * @param list1 Index of the hash list of hash 1
+	 * @param hash2 Hash 2
+	 * @param list2 Index of the hash list of hash 2
+	 * @return True if the images are compared, false otherwise
 	 */
-	private Duplicate getDuplicateForHash(List<Duplicate> duplicates, String hash) {
-		for (int i = 0; i < duplicates.size(); i++) {
-			if (duplicates.get(i).getHash().equals(hash)) {
-				return duplicates.get(i);
-			}
+	private boolean isComparedPair(Hash hash1, int list1, Hash hash2, int list2) {
+		if (filenames && !hash1.getFilename().equals(hash2.getFilename())) {
+			return false;
+		}
+		switch (searchMode) {
+			case INCLUSIVE_SEARCH:
+				return hash1.getFolder().equals(hash2.getFolder());
+			case EXCLUSIVE_SEARCH:
+				return !hash1.getFolder().equals(hash2.getFolder());
+			case LIST_INCLUSIVE_SEARCH:
+				return list1 == list2;
+			case LIST_EXCLUSIVE_SEARCH:
+				return list1 != list2;
+			case NORMAL_SEARCH:
+			default:
+				return true;
 		}
-		return null;
 	}
 
 	/**
-	 * Writes Duplicates to File
+	 * Removes duplicates, which contain only folders, which are also contained in another duplicate. Of duplicates with exactly the same folders, only the
+	 * first one is kept.
+	 * 
+	 * The folders are replaced by indexes, so that each duplicate has a sorted signature of folder indexes. Duplicates with equal signatures are collapsed
+	 * with a hash map and for each remaining signature only the signatures, which contain its least used folder, have to be checked.
 	 * 
 	 * @param duplicates Duplicates
-	 * @param bFoldersOnly Folders Only
-	 * @param bReverse Reverse
-	 * @param file File
-	 */
-	private void writeResultToFile(List<Duplicate> duplicates, boolean bFoldersOnly, boolean bReverse, String file) {
-		logger.info("Writing result to file: {}", file);
-		try (FileOutputStream out = new FileOutputStream(file); BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
-			for (int i = 0; i < duplicates.size(); i++) {
-				if (stop) {
-					break;
+	 */
+	protected void removeFolderDuplicates(List<Duplicate> duplicates) {
+		Map<String, Integer> folderIndexes = new HashMap<>();
+		Map<FolderSignature, Integer> signatureIndexes = new HashMap<>();
+		List<FolderSignature> signatures = new ArrayList<>();
+		List<Duplicate> signatureDuplicates = new ArrayList<>();
+		for (Duplicate duplicate : duplicates) {
+			int[] folders = new int[duplicate.getFolderCount()];
+			int i = 0;
+			for (String folder : duplicate.getFolders()) {
+				Integer folderIndex = folderIndexes.get(folder);
+				if (folderIndex == null) {
+					folderIndex = folderIndexes.size();
+					folderIndexes.put(folder, folderIndex);
 				}
-				Duplicate duplicate = duplicates.get(i);
-				if (!bReverse) {
-					bw.write("Duplicates Found (" + duplicate.getHash() + "):");
-					if (duplicate.isSameRelativeFolder() == false) {
-						bw.write(" RelativeFolderDifference!");
-					}
-					if (duplicate.isSameFilename() == false) {
-						bw.write(" FilenameDifference!");
-					}
-					bw.write("\n");
+				folders[i] = folderIndex;
+				i++;
+			}
+			Arrays.sort(folders);
+
+			FolderSignature signature = new FolderSignature(folders);
+			if (signatureIndexes.putIfAbsent(signature, signatures.size()) == null) {
+				signatures.add(signature);
+				signatureDuplicates.add(duplicate);
+			}
+		}
+
+		// Indexes of the signatures, which contain a folder, by folder index
+		int[] signatureCounts = new int[folderIndexes.size() + 1];
+		for (FolderSignature signature : signatures) {
+			for (int folder : signature.folders()) {
+				signatureCounts[folder + 1]++;
+			}
+		}
+		for (int i = 1; i < signatureCounts.length; i++) {
+			signatureCounts[i] += signatureCounts[i - 1];
+		}
+		int[] signaturesByFolder = new int[signatureCounts[signatureCounts.length - 1]];
+		int[] insertPositions = Arrays.copyOf(signatureCounts, folderIndexes.size());
+		for (int i = 0; i < signatures.size(); i++) {
+			for (int folder : signatures.get(i).folders()) {
+				signaturesByFolder[insertPositions[folder]] = i;
+				insertPositions[folder]++;
+			}
+		}
+
+		List<Duplicate> result = new ArrayList<>();
+		for (int i = 0; i < signatures.size(); i++) {
+			int[] folders = signatures.get(i).folders();
+			int leastUsedFolder = folders[0];
+			for (int folder : folders) {
+				if (signatureCounts[folder + 1] - signatureCounts[folder] < signatureCounts[leastUsedFolder + 1] - signatureCounts[leastUsedFolder]) {
+					leastUsedFolder = folder;
 				}
+			}
 
-				if (bFoldersOnly) {
-					for (int c = 0; c < duplicate.getFolders().size(); c++) {
-						bw.write("\t" + duplicate.getFolders().get(c) + "\n");
-					}
-				} else if (bReverse) {
-					bw.write(duplicate.getHash() + "\t" + duplicate.getFiles().get(0) + "\n");
-				} else {
-					for (int c = 0; c < duplicate.getFiles().size(); c++) {
-						bw.write("\t\"" + duplicate.getFiles().get(c) + "\"\n");
-					}
+			boolean contained = false;
+			for (int x = signatureCounts[leastUsedFolder]; x < signatureCounts[leastUsedFolder + 1]; x++) {
+				int[] otherFolders = signatures.get(signaturesByFolder[x]).folders();
+				if (otherFolders.length > folders.length && containsAll(otherFolders, folders)) {
+					contained = true;
+					break;
 				}
-				bw.flush();
 			}
-		} catch (IOException e) {
-			logger.error(e.getMessage(), e);
+			if (!contained) {
+				result.add(signatureDuplicates.get(i));
+			}
+		}
+
+		duplicates.clear();
+		duplicates.addAll(result);
+	}
+
+	/**
+	 * Checks if all values of an array are contained in another array
+	 * 
+	 * @param values Sorted values
+	 * @param containedValues Sorted values, which have to be contained
+	 * @return True if all values are contained, false otherwise
+	 */
+	private static boolean containsAll(int[] values, int[] containedValues) {
+		int i = 0;
+		for (int containedValue : containedValues) {
+			while (i < values.length && values[i] < containedValue) {
+				i++;
+			}
+			if (i >= values.length || values[i] != containedValue) {
+				return false;
+			}
+			i++;
+		}
+		return true;
+	}
+
+	/**
+	 * Create a writer for the result file
+	 * 
+	 * @return Result Writer
+	 * @throws IOException
+	 */
+	protected ResultWriter createResultWriter() throws IOException {
+		String file = resultFile != null ? resultFile : resultFormat.getDefaultFile();
+		return ResultWriter.create(resultFormat, Paths.get(file), foldersOnly, reverse, maxDistance > 0);
+	}
+
+	/**
+	 * Key of images, which are compared with each other
+	 * 
+	 * @param hash Hash
+	 * @param filename Filename or null if filenames are not compared
+	 * @param partition Partition or -1 if images of all partitions are compared
+	 */
+	private record GroupKey(HashValue hash, String filename, int partition) {
+	}
+
+	/**
+	 * Hashes with the same leading bits of the hash values
+	 * 
+	 * @param hashes Hashes in the order of the hash lists
+	 * @param listIndexes Index of the hash list of each hash
+	 * @param hashIndexes Index of each hash in all hashes
+	 */
+	private record Bucket(List<Hash> hashes, int[] listIndexes, int[] hashIndexes) {
+	}
+
+	/**
+	 * Sorted folder indexes of a duplicate
+	 * 
+	 * @param folders Sorted folder indexes
+	 */
+	private record FolderSignature(int[] folders) {
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof FolderSignature other && Arrays.equals(folders, other.folders);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(folders);
 		}
 	}
 }
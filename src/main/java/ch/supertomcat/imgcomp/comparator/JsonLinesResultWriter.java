@@ -0,0 +1,106 @@
+package ch.supertomcat.imgcomp.comparator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Result Writer for JSON Lines. Each duplicate is written as one JSON object in one line:
+ * 
+ * <pre>
+ * {"hash":"...","relativeFolderDifference":true,"filenameDifference":false,"files":[{"path":"...","distance":0}]}
+ * </pre>
+ * 
+ * If only folders are written, the object contains "folders" instead of "files" and in reverse mode the object only contains "hash" and "file".
+ */
+public class JsonLinesResultWriter extends ResultWriter {
+	/**
+	 * Constructor
+	 * 
+	 * @param file Result File
+	 * @param foldersOnly Writes only the folders of the duplicates
+	 * @param reverse Writes only the first file of the duplicates
+	 * @param distances Writes the distances of the files
+	 * @throws IOException
+	 */
+	public JsonLinesResultWriter(Path file, boolean foldersOnly, boolean reverse, boolean distances) throws IOException {
+		super(file, foldersOnly, reverse, distances);
+	}
+
+	@Override
+	public void write(Duplicate duplicate) throws IOException {
+		writer.write("{\"hash\":\"");
+		writer.write(duplicate.getHash().toHexString());
+		writer.write('"');
+		if (foldersOnly) {
+			writer.write(",\"folders\":[");
+			List<String> folders = duplicate.getFolders();
+			for (int i = 0; i < folders.size(); i++) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				writeString(folders.get(i));
+			}
+			writer.write(']');
+		} else if (reverse) {
+			writer.write(",\"file\":");
+			writeString(duplicate.getFiles().get(0));
+		} else {
+			writer.write(",\"relativeFolderDifference\":" + !duplicate.isSameRelativeFolder());
+			writer.write(",\"filenameDifference\":" + !duplicate.isSameFilename());
+			writer.write(",\"files\":[");
+			List<String> files = duplicate.getFiles();
+			for (int i = 0; i < files.size(); i++) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				writer.write("{\"path\":");
+				writeString(files.get(i));
+				if (distances) {
+					writer.write(",\"distance\":" + duplicate.getDistances().get(i));
+				}
+				writer.write('}');
+			}
+			writer.write(']');
+		}
+		writer.write("}\n");
+	}
+
+	/**
+	 * Writes a JSON String
+	 * 
+	 * @param value Value
+	 * @throws IOException
+	 */
+	private void writeString(String value) throws IOException {
+		writer.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':
+					writer.write("\\\"");
+					break;
+				case '\\':
+					writer.write("\\\\");
+					break;
+				case '\n':
+					writer.write("\\n");
+					break;
+				case '\r':
+					writer.write("\\r");
+					break;
+				case '\t':
+					writer.write("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						writer.write(String.format("\\u%04x", (int)c));
+					} else {
+						writer.write(c);
+					}
+					break;
+			}
+		}
+		writer.write('"');
+	}
+}
@@ -0,0 +1,87 @@
+package ch.supertomcat.imgcomp.comparator;
+
+/**
+ * Format of the file to which duplicates are written
+ */
+public enum ResultFormat {
+	/**
+	 * Text <BR>
+	 * Legacy format with a header line for each duplicate and a line for each file
+	 */
+	TEXT("text", "txt"),
+
+	/**
+	 * JSON Lines <BR>
+	 * One JSON object per duplicate
+	 */
+	JSON_LINES("jsonl", "jsonl"),
+
+	/**
+	 * CSV <BR>
+	 * One row per file with the hash of the duplicate
+	 */
+	CSV("csv", "csv");
+
+	/**
+	 * Command Line Name
+	 */
+	private final String commandLineName;
+
+	/**
+	 * File Extension
+	 */
+	private final String fileExtension;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param commandLineName Command Line Name
+	 * @param fileExtension File Extension
+	 */
+	private ResultFormat(String commandLineName, String fileExtension) {
+		this.commandLineName = commandLineName;
+		this.fileExtension = fileExtension;
+	}
+
+	/**
+	 * Returns the commandLineName
+	 * 
+	 * @return commandLineName
+	 */
+	public String getCommandLineName() {
+		return commandLineName;
+	}
+
+	/**
+	 * Returns the fileExtension
+	 * 
+	 * @return fileExtension
+	 */
+	public String getFileExtension() {
+		return fileExtension;
+	}
+
+	/**
+	 * Returns the default result file for this format
+	 * 
+	 * @return Default result file
+	 */
+	public String getDefaultFile() {
+		return "./Duplicates." + fileExtension;
+	}
+
+	/**
+	 * Get Result Format by Command Line Name
+	 * 
+	 * @param name Command Line Name
+	 * @return Result Format or null
+	 */
+	public static ResultFormat getByCommandLineName(String name) {
+		for (ResultFormat resultFormat : ResultFormat.values()) {
+			if (resultFormat.getCommandLineName().equals(name)) {
+				return resultFormat;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,145 @@
+package ch.supertomcat.imgcomp.comparator;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writer, which writes duplicates to a result file as soon as they are found. The duplicates are written to a temporary file in the same folder, which
+ * replaces the result file when {@link #commit()} is called. If the writer is closed without commit, the temporary file is deleted and an existing result
+ * file is left unchanged.
+ * 
+ * When similar images are searched, the distance of each file is written. It is the Hamming distance of the hash of the file to the hash of the duplicate,
+ * which is the hash of its first file, so it is 0 for the first file and never greater than the maximum distance of the search.
+ */
+public abstract class ResultWriter implements Closeable {
+	/**
+	 * Size of the write buffer in characters
+	 */
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * Result File
+	 */
+	private final Path file;
+
+	/**
+	 * Temporary File
+	 */
+	private final Path temporaryFile;
+
+	/**
+	 * Writer
+	 */
+	protected final BufferedWriter writer;
+
+	/**
+	 * Folders only Flag
+	 */
+	protected final boolean foldersOnly;
+
+	/**
+	 * Reverse Flag
+	 */
+	protected final boolean reverse;
+
+	/**
+	 * True if the distances of the files are written
+	 */
+	protected final boolean distances;
+
+	/**
+	 * True if the temporary file was moved to the result file
+	 */
+	private boolean committed = false;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param file Result File
+	 * @param foldersOnly Writes only the folders of the duplicates
+	 * @param reverse Writes only the first file of the duplicates
+	 * @param distances Writes the distances of the files
+	 * @throws IOException
+	 */
+	protected ResultWriter(Path file, boolean foldersOnly, boolean reverse, boolean distances) throws IOException {
+		this.file = file.toAbsolutePath();
+		this.foldersOnly = foldersOnly;
+		this.reverse = reverse;
+		this.distances = distances;
+		this.temporaryFile = Files.createTempFile(this.file.getParent(), this.file.getFileName().toString() + ".", ".tmp");
+		this.writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temporaryFile), StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+
+	/**
+	 * Create a writer for a result format
+	 * 
+	 * @param format Result Format
+	 * @param file Result File
+	 * @param foldersOnly Writes only the folders of the duplicates
+	 * @param reverse Writes only the first file of the duplicates
+	 * @param distances Writes the distances of the files
+	 * @return Result Writer
+	 * @throws IOException
+	 */
+	public static ResultWriter create(ResultFormat format, Path file, boolean foldersOnly, boolean reverse, boolean distances) throws IOException {
+		switch (format) {
+			case JSON_LINES:
+				return new JsonLinesResultWriter(file, foldersOnly, reverse, distances);
+			case CSV:
+				return new CsvResultWriter(file, foldersOnly, reverse, distances);
+			case TEXT:
+			default:
+				return new TextResultWriter(file, foldersOnly, reverse, distances);
+		}
+	}
+
+	/**
+	 * Returns the file
+	 * 
+	 * @return file
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Writes a duplicate
+	 * 
+	 * @param duplicate Duplicate
+	 * @throws IOException
+	 */
+	public abstract void write(Duplicate duplicate) throws IOException;
+
+	/**
+	 * Closes the temporary file and moves it to the result file
+	 * 
+	 * @throws IOException
+	 */
+	public void commit() throws IOException {
+		writer.close();
+		try {
+			Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+		committed = true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!committed) {
+			try {
+				writer.close();
+			} finally {
+				Files.deleteIfExists(temporaryFile);
+			}
+		}
+	}
+}
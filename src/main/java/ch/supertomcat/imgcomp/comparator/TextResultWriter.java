@@ -0,0 +1,52 @@
+package ch.supertomcat.imgcomp.comparator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Result Writer for the legacy text format
+ */
+public class TextResultWriter extends ResultWriter {
+	/**
+	 * Constructor
+	 * 
+	 * @param file Result File
+	 * @param foldersOnly Writes only the folders of the duplicates
+	 * @param reverse Writes only the first file of the duplicates
+	 * @param distances Writes the distances of the files
+	 * @throws IOException
+	 */
+	public TextResultWriter(Path file, boolean foldersOnly, boolean reverse, boolean distances) throws IOException {
+		super(file, foldersOnly, reverse, distances);
+	}
+
+	@Override
+	public void write(Duplicate duplicate) throws IOException {
+		if (!reverse) {
+			writer.write("Duplicates Found (" + duplicate.getHash().toHexString() + "):");
+			if (duplicate.isSameRelativeFolder() == false) {
+				writer.write(" RelativeFolderDifference!");
+			}
+			if (duplicate.isSameFilename() == false) {
+				writer.write(" FilenameDifference!");
+			}
+			writer.write("\n");
+		}
+
+		if (foldersOnly) {
+			for (String folder : duplicate.getFolders()) {
+				writer.write("\t" + folder + "\n");
+			}
+		} else if (reverse) {
+			writer.write(duplicate.getHash().toHexString() + "\t" + duplicate.getFiles().get(0) + "\n");
+		} else if (distances) {
+			for (int c = 0; c < duplicate.getFiles().size(); c++) {
+				writer.write("\t\"" + duplicate.getFiles().get(c) + "\"\t" + duplicate.getDistances().get(c) + "\n");
+			}
+		} else {
+			for (String file : duplicate.getFiles()) {
+				writer.write("\t\"" + file + "\"\n");
+			}
+		}
+	}
+}
@@ -43,11 +43,17 @@ public class CompModePanel extends ModePanelBase {
 	protected void run() {
 		final ProgressObserver progress = new ProgressObserver();
 
-		final List<ImageHashList> imageHashLists = new ArrayList<>();
+		final List<String> imageHashListFiles = new ArrayList<>();
 		for (int i = 0; i < listModel.size(); i++) {
-			String imageHashListFile = listModel.get(i).toAbsolutePath().toString();
-			ImageHashList imageHashList = ImageHashUtil.readHashList(imageHashListFile);
-			imageHashLists.add(imageHashList);
+			imageHashListFiles.add(listModel.get(i).toAbsolutePath().toString());
+		}
+		final List<ImageHashList> imageHashLists;
+		try {
+			imageHashLists = ImageHashUtil.readHashLists(imageHashListFiles);
+		} catch (IllegalArgumentException e) {
+			logger.error(e.getMessage(), e);
+			displayError(e.getMessage());
+			return;
 		}
 
 		final SearchMode searchMode = pnlSearchMode.getSelectedSearchMode();
@@ -59,7 +65,14 @@ public class CompModePanel extends ModePanelBase {
 					progress.addProgressListener(CompModePanel.this);
 
 					// Compare
-					HashComparatorTask compareTask = new HashComparatorTask(imageHashLists, progress, searchMode, false, true, false, false);
+					HashComparatorTask compareTask;
+					try {
+						compareTask = new HashComparatorTask(imageHashLists, progress, searchMode, false, true, false, false);
+					} catch (IllegalArgumentException e) {
+						logger.error(e.getMessage(), e);
+						EventQueue.invokeLater(() -> displayError(e.getMessage()));
+						return;
+					}
 					synchronized (runnungTaskSyncObject) {
 						runningTask = compareTask;
 						if (stop) {
@@ -20,6 +20,7 @@ import javax.swing.BorderFactory;
 import javax.swing.DefaultListModel;
 import javax.swing.JButton;
 import javax.swing.JList;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
@@ -259,7 +260,7 @@ public abstract class ModePanelBase extends JPanel implements IProgressObserver
 		StringBuilder sb = new StringBuilder();
 
 		for (Duplicate duplicate : duplicates) {
-			sb.append("Duplicates Found (" + duplicate.getHash() + "):\n");
+			sb.append("Duplicates Found (" + duplicate.getHash().toHexString() + "):\n");
 			for (int c = 0; c < duplicate.getFiles().size(); c++) {
 				sb.append("\t" + duplicate.getFiles().get(c) + "\n");
 			}
@@ -268,6 +269,15 @@ public abstract class ModePanelBase extends JPanel implements IProgressObserver
 		txtOutput.setText(sb.toString());
 	}
 
+	/**
+	 * Display Error
+	 * 
+	 * @param message Message
+	 */
+	protected void displayError(String message) {
+		JOptionPane.showMessageDialog(this, message, "Error", JOptionPane.ERROR_MESSAGE);
+	}
+
 	/**
 	 * Clear Result
 	 */
@@ -0,0 +1,367 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reader and Writer for binary hash lists (Version 2).
+ * 
+ * <pre>
+ * Magic (8 bytes), Version (int)
+ * Folder, Filename Pattern (strings), Recursive (boolean), Hash Type, Hash Algorithm, Hash Mode (command line names as strings)
+ * Count (int), Hash Length (int)
+ * Hashes: Count * Hash Length bytes
+ * Folder Count (int), Folders: Length of the prefix shared with the previous folder (varint), Remaining characters (string)
+ * Paths: Folder Index + 1 (varint), Filename (string) or 0 (varint), Full Path (string) if the path is not folder and filename
+ * CRC32 of all previous bytes (int)
+ * </pre>
+ * 
+ * Strings are stored as length (varint) and UTF-8 bytes. Because folders and filenames are stored separately, the folder and filename of the hashes don't
+ * have to be extracted from the paths again when reading and all hashes of a folder share the folder String of the {@link FolderTable} of the returned
+ * hash list.
+ * 
+ * Lengths and counts are validated before they are used. Buffers are not allocated from lengths read from the file, but grow while the bytes are read, so
+ * that a corrupt length can't allocate more memory than the file actually contains, before the checksum at the end is reached.
+ */
+final class BinaryHashList {
+	/**
+	 * Magic bytes at the start of binary hash lists. The first byte is not valid in UTF-8 text, so text hash lists can't start with it.
+	 */
+	private static final byte[] MAGIC = { (byte)0x89, 'I', 'C', 'H', 'L', '\r', '\n', 0x1A };
+
+	/**
+	 * Version
+	 */
+	private static final int VERSION = 2;
+
+	/**
+	 * Buffer size in bytes
+	 */
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * Maximum size of a byte array
+	 */
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Maximum number of bytes of a variable length int
+	 */
+	private static final int MAX_VAR_INT_BYTES = 5;
+
+	/**
+	 * Constructor
+	 */
+	private BinaryHashList() {
+	}
+
+	/**
+	 * Checks if a file is a binary hash list
+	 * 
+	 * @param file File
+	 * @return True if the file starts with the magic bytes, false otherwise
+	 * @throws IOException
+	 */
+	public static boolean isBinaryHashList(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+		}
+	}
+
+	/**
+	 * Checks if a stream starts with a binary hash list. The position of the stream is not changed.
+	 * 
+	 * @param in Input, which must support mark and reset
+	 * @return True if the stream starts with the magic bytes, false otherwise
+	 * @throws IOException
+	 */
+	public static boolean isBinaryHashList(InputStream in) throws IOException {
+		in.mark(MAGIC.length);
+		try {
+			return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+		} finally {
+			in.reset();
+		}
+	}
+
+	/**
+	 * Read Hash List from a stream, e.g. from a decompressed hash list. The stream is not closed.
+	 * 
+	 * @param input Input, which should be buffered
+	 * @param file File for error messages
+	 * @param hashConsumer Consumer, which gets each hash in the order of the file
+	 * @param headerOnly True if reading should stop after the header, false otherwise
+	 * @return Hashlist without hashes
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the input is not a valid binary hash list
+	 */
+	public static ImageHashList read(InputStream input, String file, Consumer<Hash> hashConsumer, boolean headerOnly) throws IOException {
+		CRC32 checksum = new CRC32();
+		try {
+			DataInputStream in = new DataInputStream(new CheckedInputStream(input, checksum));
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new IllegalArgumentException("Not a binary Hash List: '" + file + "'");
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IllegalArgumentException("Unsupported binary Hash List version in '" + file + "': " + version);
+			}
+
+			String folder = readString(in);
+			String filenamePattern = readString(in);
+			boolean recursive = in.readBoolean();
+			String strHashType = readString(in);
+			HashType hashType = HashType.getByCommandLineName(strHashType);
+			if (hashType == null) {
+				throw new IllegalArgumentException("Unsupported hash type in '" + file + "': " + strHashType);
+			}
+			String strHashAlgorithm = readString(in);
+			HashAlgorithm hashAlgorithm = HashAlgorithm.getByCommandLineName(strHashAlgorithm);
+			if (hashAlgorithm == null) {
+				throw new IllegalArgumentException("Unsupported hash algorithm in '" + file + "': " + strHashAlgorithm);
+			}
+			String strHashMode = readString(in);
+			HashMode hashMode = HashMode.getByCommandLineName(strHashMode);
+			if (hashMode == null) {
+				throw new IllegalArgumentException("Unsupported hash mode in '" + file + "': " + strHashMode);
+			}
+			ImageHashList header = new ImageHashList(new ArrayList<>(), folder, filenamePattern, recursive, hashType, hashAlgorithm, hashMode);
+			if (headerOnly) {
+				return header;
+			}
+
+			int count = in.readInt();
+			int hashLength = in.readInt();
+			if (count < 0 || hashLength < 0 || (count > 0 && hashLength == 0)) {
+				throw new IllegalArgumentException("Hash List is corrupt, invalid count or hash length: '" + file + "'");
+			}
+			long hashBytesLength = (long)count * hashLength;
+			if (hashBytesLength > MAX_ARRAY_SIZE) {
+				throw new IllegalArgumentException("Hash List is corrupt, hashes are too large: '" + file + "'");
+			}
+			byte[] hashBytes = readBytes(in, (int)hashBytesLength);
+
+			int folderCount = in.readInt();
+			if (folderCount < 0 || folderCount > count) {
+				throw new IllegalArgumentException("Hash List is corrupt, invalid folder count: '" + file + "'");
+			}
+			// Every folder is used by at least one hash, so the folder count is bounded by the count, which was confirmed by reading the hashes
+			String[] folders = new String[folderCount];
+			String previousFolder = "";
+			for (int i = 0; i < folders.length; i++) {
+				int prefixLength = readVarInt(in);
+				if (prefixLength > previousFolder.length()) {
+					throw new IllegalArgumentException("Hash List is corrupt, invalid folder prefix length: '" + file + "'");
+				}
+				folders[i] = header.getFolderTable().intern(previousFolder.substring(0, prefixLength) + readString(in));
+				previousFolder = folders[i];
+			}
+
+			for (int i = 0; i < count; i++) {
+				HashValue hash = HashValue.fromBytes(hashBytes, i * hashLength, hashLength);
+				int folderIndex = readVarInt(in) - 1;
+				if (folderIndex < 0) {
+					hashConsumer.accept(header.getFolderTable().createHash(readString(in), hash));
+				} else if (folderIndex < folders.length) {
+					String filename = readString(in);
+					hashConsumer.accept(new Hash(folders[folderIndex], filename, hash));
+				} else {
+					throw new IllegalArgumentException("Hash List is corrupt, invalid folder index: '" + file + "'");
+				}
+			}
+
+			long actualChecksum = checksum.getValue();
+			long expectedChecksum = in.readInt() & 0xFFFFFFFFL;
+			if (expectedChecksum != actualChecksum) {
+				throw new IllegalArgumentException("Hash List is corrupt, checksum does not match: '" + file + "'");
+			}
+			return header;
+		} catch (EOFException e) {
+			throw new IllegalArgumentException("Hash List is incomplete or corrupt: '" + file + "'", e);
+		}
+	}
+
+	/**
+	 * Write Hash List
+	 * 
+	 * @param imageHashList Image Hash List
+	 * @param out OutputStream
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the hashes have different lengths
+	 */
+	public static void write(ImageHashList imageHashList, OutputStream out) throws IOException {
+		CRC32 checksum = new CRC32();
+		DataOutputStream dataOut = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(out, BUFFER_SIZE), checksum));
+		dataOut.write(MAGIC);
+		dataOut.writeInt(VERSION);
+		writeString(dataOut, imageHashList.getFolder());
+		writeString(dataOut, imageHashList.getFilenamePattern());
+		dataOut.writeBoolean(imageHashList.isRecursive());
+		writeString(dataOut, imageHashList.getHashType().getCommandLineName());
+		writeString(dataOut, imageHashList.getHashAlgorithm().getCommandLineName());
+		writeString(dataOut, imageHashList.getHashMode().getCommandLineName());
+
+		List<Hash> hashes = imageHashList.getHashes();
+		int hashLength = hashes.isEmpty() ? 0 : hashes.get(0).getHash().getLength();
+		dataOut.writeInt(hashes.size());
+		dataOut.writeInt(hashLength);
+		for (Hash hash : hashes) {
+			if (hash.getHash().getLength() != hashLength) {
+				throw new IllegalArgumentException("Hashes have different lengths: " + hash.getFile());
+			}
+			dataOut.write(hash.getHash().toBytes());
+		}
+
+		// Folders in the order they first appear
+		Map<String, Integer> folderIndexes = new HashMap<>();
+		List<String> folders = new ArrayList<>();
+		for (Hash hash : hashes) {
+			if (folderIndexes.putIfAbsent(hash.getFolder(), folders.size()) == null) {
+				folders.add(hash.getFolder());
+			}
+		}
+		dataOut.writeInt(folders.size());
+		String previousFolder = "";
+		for (String folder : folders) {
+			int prefixLength = getSharedPrefixLength(previousFolder, folder);
+			writeVarInt(dataOut, prefixLength);
+			writeString(dataOut, folder.substring(prefixLength));
+			previousFolder = folder;
+		}
+
+		for (Hash hash : hashes) {
+			String folder = hash.getFolder();
+			String filename = hash.getFilename();
+			if (hash.getFile().length() == folder.length() + filename.length() && hash.getFile().startsWith(folder) && hash.getFile().endsWith(filename)) {
+				writeVarInt(dataOut, folderIndexes.get(folder) + 1);
+				writeString(dataOut, filename);
+			} else {
+				writeVarInt(dataOut, 0);
+				writeString(dataOut, hash.getFile());
+			}
+		}
+
+		dataOut.flush();
+		// The checksum is not part of itself, so it is written to the stream below the checked stream
+		DataOutputStream checksumOut = new DataOutputStream(out);
+		checksumOut.writeInt((int)checksum.getValue());
+		checksumOut.flush();
+	}
+
+	/**
+	 * Returns the length of the prefix, which two Strings share, without splitting surrogate pairs
+	 * 
+	 * @param a String
+	 * @param b String
+	 * @return Length of the shared prefix
+	 */
+	private static int getSharedPrefixLength(String a, String b) {
+		int length = 0;
+		int maxLength = Math.min(a.length(), b.length());
+		while (length < maxLength && a.charAt(length) == b.charAt(length)) {
+			length++;
+		}
+		if (length > 0 && Character.isHighSurrogate(a.charAt(length - 1))) {
+			length--;
+		}
+		return length;
+	}
+
+	/**
+	 * Write a String as length and UTF-8 bytes
+	 * 
+	 * @param out Output
+	 * @param value Value
+	 * @throws IOException
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Read a String written by {@link #writeString(DataOutputStream, String)}
+	 * 
+	 * @param in Input
+	 * @return Value
+	 * @throws IOException
+	 */
+	private static String readString(DataInputStream in) throws IOException {
+		return new String(readBytes(in, readVarInt(in)), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Read bytes. The buffer grows while the bytes are read, so a corrupt length does not allocate more memory than the input contains.
+	 * 
+	 * @param in Input
+	 * @param length Length (not negative)
+	 * @return Bytes
+	 * @throws IOException
+	 * @throws EOFException if the input ends before all bytes were read
+	 */
+	private static byte[] readBytes(DataInputStream in, int length) throws IOException {
+		byte[] bytes = in.readNBytes(length);
+		if (bytes.length != length) {
+			throw new EOFException();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Write an int with 7 bits per byte, so that small values need only one byte
+	 * 
+	 * @param out Output
+	 * @param value Value (not negative)
+	 * @throws IOException
+	 */
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Read an int written by {@link #writeVarInt(DataOutputStream, int)}
+	 * 
+	 * @param in Input
+	 * @return Value (not negative)
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the value has more than 5 bytes or is negative
+	 */
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int i = 0; i < MAX_VAR_INT_BYTES; i++) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << (i * 7);
+			if ((b & 0x80) == 0) {
+				if (value < 0) {
+					break;
+				}
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Invalid variable length int");
+	}
+}
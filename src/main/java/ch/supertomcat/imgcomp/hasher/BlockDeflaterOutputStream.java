@@ -0,0 +1,179 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * OutputStream, which writes a compressed hash list container (See {@link CompressedHashList}). Full blocks are compressed in parallel by the common
+ * {@link java.util.concurrent.ForkJoinPool} and written in their order.
+ */
+class BlockDeflaterOutputStream extends OutputStream {
+	/**
+	 * Output
+	 */
+	private final DataOutputStream out;
+
+	/**
+	 * Blocks, which are compressed, but not written yet, in their order
+	 */
+	private final Deque<CompletableFuture<CompressedBlock>> pendingBlocks = new ArrayDeque<>();
+
+	/**
+	 * Current block
+	 */
+	private byte[] block = new byte[CompressedHashList.BLOCK_SIZE];
+
+	/**
+	 * Count of bytes in the current block
+	 */
+	private int blockLength = 0;
+
+	/**
+	 * True if the end of the container was written
+	 */
+	private boolean finished = false;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param out Output
+	 * @throws IOException
+	 */
+	public BlockDeflaterOutputStream(OutputStream out) throws IOException {
+		this.out = new DataOutputStream(out);
+		this.out.write(CompressedHashList.MAGIC);
+		this.out.writeInt(CompressedHashList.VERSION);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (blockLength == block.length) {
+			submitBlock();
+		}
+		block[blockLength] = (byte)b;
+		blockLength++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (blockLength == block.length) {
+				submitBlock();
+			}
+			int length = Math.min(len, block.length - blockLength);
+			System.arraycopy(b, off, block, blockLength, length);
+			blockLength += length;
+			off += length;
+			len -= length;
+		}
+	}
+
+	/**
+	 * Compresses the remaining bytes and writes all blocks and the end of the container. The underlying stream is flushed, but not closed.
+	 * 
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		if (blockLength > 0) {
+			submitBlock();
+		}
+		while (!pendingBlocks.isEmpty()) {
+			writeBlock(pendingBlocks.poll());
+		}
+		out.writeInt(0);
+		out.flush();
+		finished = true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Submit the current block for compression. If too many blocks are pending, the oldest block is written first.
+	 * 
+	 * @throws IOException
+	 */
+	private void submitBlock() throws IOException {
+		while (pendingBlocks.size() >= CompressedHashList.MAX_PENDING_BLOCKS) {
+			writeBlock(pendingBlocks.poll());
+		}
+		byte[] uncompressed = block;
+		int length = blockLength;
+		pendingBlocks.add(CompletableFuture.supplyAsync(() -> compress(uncompressed, length)));
+		block = new byte[CompressedHashList.BLOCK_SIZE];
+		blockLength = 0;
+	}
+
+	/**
+	 * Wait until a block is compressed and write it
+	 * 
+	 * @param future Future of the compressed block
+	 * @throws IOException
+	 */
+	private void writeBlock(CompletableFuture<CompressedBlock> future) throws IOException {
+		CompressedBlock compressedBlock;
+		try {
+			compressedBlock = future.join();
+		} catch (CompletionException e) {
+			throw new IOException("Could not compress block", e.getCause());
+		}
+		out.writeInt(compressedBlock.uncompressedLength());
+		out.writeInt(compressedBlock.compressed().length);
+		out.writeInt(compressedBlock.checksum());
+		out.write(compressedBlock.compressed());
+	}
+
+	/**
+	 * Compress a block
+	 * 
+	 * @param uncompressed Uncompressed bytes
+	 * @param length Count of bytes
+	 * @return Compressed Block
+	 */
+	private static CompressedBlock compress(byte[] uncompressed, int length) {
+		CRC32 checksum = new CRC32();
+		checksum.update(uncompressed, 0, length);
+
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		try {
+			deflater.setInput(uncompressed, 0, length);
+			deflater.finish();
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4);
+			byte[] buffer = new byte[64 * 1024];
+			while (!deflater.finished()) {
+				int compressedLength = deflater.deflate(buffer);
+				compressed.write(buffer, 0, compressedLength);
+			}
+			return new CompressedBlock(length, (int)checksum.getValue(), compressed.toByteArray());
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Compressed Block
+	 * 
+	 * @param uncompressedLength Uncompressed Length
+	 * @param checksum CRC32 of the uncompressed bytes
+	 * @param compressed Compressed bytes
+	 */
+	private record CompressedBlock(int uncompressedLength, int checksum, byte[] compressed) {
+	}
+}
@@ -0,0 +1,180 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * InputStream, which reads a compressed hash list container (See {@link CompressedHashList}). The blocks are read ahead and decompressed in parallel by
+ * the common {@link java.util.concurrent.ForkJoinPool}.
+ */
+class BlockInflaterInputStream extends InputStream {
+	/**
+	 * Input
+	 */
+	private final DataInputStream in;
+
+	/**
+	 * Blocks, which are decompressed, but not read yet, in their order
+	 */
+	private final Deque<CompletableFuture<byte[]>> pendingBlocks = new ArrayDeque<>();
+
+	/**
+	 * True if the end of the container was read
+	 */
+	private boolean endOfBlocks = false;
+
+	/**
+	 * Current block
+	 */
+	private byte[] block = new byte[0];
+
+	/**
+	 * Position in the current block
+	 */
+	private int blockPosition = 0;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param in Input
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the input is not a compressed hash list
+	 */
+	public BlockInflaterInputStream(InputStream in) throws IOException {
+		this.in = new DataInputStream(in);
+		byte[] magic = new byte[CompressedHashList.MAGIC.length];
+		this.in.readFully(magic);
+		if (!Arrays.equals(magic, CompressedHashList.MAGIC)) {
+			throw new IllegalArgumentException("Not a compressed Hash List");
+		}
+		int version = this.in.readInt();
+		if (version != CompressedHashList.VERSION) {
+			throw new IllegalArgumentException("Unsupported compressed Hash List version: " + version);
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!nextBlock()) {
+			return -1;
+		}
+		int b = block[blockPosition] & 0xFF;
+		blockPosition++;
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!nextBlock()) {
+			return -1;
+		}
+		int length = Math.min(len, block.length - blockPosition);
+		System.arraycopy(block, blockPosition, b, off, length);
+		blockPosition += length;
+		return length;
+	}
+
+	@Override
+	public void close() throws IOException {
+		pendingBlocks.clear();
+		in.close();
+	}
+
+	/**
+	 * Make sure the current block has remaining bytes
+	 * 
+	 * @return True if there are remaining bytes, false if the end was reached
+	 * @throws IOException
+	 */
+	private boolean nextBlock() throws IOException {
+		while (blockPosition >= block.length) {
+			readAhead();
+			if (pendingBlocks.isEmpty()) {
+				return false;
+			}
+			try {
+				block = pendingBlocks.poll().join();
+			} catch (CompletionException e) {
+				throw new IOException("Compressed Hash List is corrupt", e.getCause());
+			}
+			blockPosition = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * Read compressed blocks and submit them for decompression until enough blocks are pending
+	 * 
+	 * @throws IOException
+	 */
+	private void readAhead() throws IOException {
+		try {
+			while (!endOfBlocks && pendingBlocks.size() < CompressedHashList.MAX_PENDING_BLOCKS) {
+				int uncompressedLength = in.readInt();
+				if (uncompressedLength == 0) {
+					endOfBlocks = true;
+					break;
+				}
+				int compressedLength = in.readInt();
+				int checksum = in.readInt();
+				if (uncompressedLength < 0 || uncompressedLength > CompressedHashList.BLOCK_SIZE || compressedLength < 0
+						|| compressedLength > CompressedHashList.BLOCK_SIZE * 2) {
+					throw new IOException("Compressed Hash List is corrupt, invalid block length");
+				}
+				byte[] compressed = new byte[compressedLength];
+				in.readFully(compressed);
+				pendingBlocks.add(CompletableFuture.supplyAsync(() -> decompress(compressed, uncompressedLength, checksum)));
+			}
+		} catch (EOFException e) {
+			throw new IOException("Compressed Hash List is incomplete", e);
+		}
+	}
+
+	/**
+	 * Decompress a block
+	 * 
+	 * @param compressed Compressed bytes
+	 * @param uncompressedLength Uncompressed Length
+	 * @param checksum CRC32 of the uncompressed bytes
+	 * @return Uncompressed bytes
+	 * @throws IllegalStateException if the block is corrupt
+	 */
+	private static byte[] decompress(byte[] compressed, int uncompressedLength, int checksum) {
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(compressed);
+			byte[] uncompressed = new byte[uncompressedLength];
+			int length = 0;
+			while (length < uncompressedLength && !inflater.finished()) {
+				int inflated = inflater.inflate(uncompressed, length, uncompressedLength - length);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				length += inflated;
+			}
+			CRC32 crc = new CRC32();
+			crc.update(uncompressed, 0, length);
+			if (length != uncompressedLength || (int)crc.getValue() != checksum) {
+				throw new IllegalStateException("Block is corrupt, checksum does not match");
+			}
+			return uncompressed;
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("Block is corrupt", e);
+		} finally {
+			inflater.end();
+		}
+	}
+}
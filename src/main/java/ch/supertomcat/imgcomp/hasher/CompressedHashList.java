@@ -0,0 +1,79 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Container format for compressed hash lists. The container holds a text or binary hash list, which is split into blocks, which are compressed
+ * independently with Deflate, so that they can be compressed and decompressed in parallel.
+ * 
+ * <pre>
+ * Magic (8 bytes), Version (int)
+ * Blocks: Uncompressed Length (int), Compressed Length (int), CRC32 of the uncompressed bytes (int), Compressed bytes
+ * End: Uncompressed Length 0 (int)
+ * </pre>
+ */
+final class CompressedHashList {
+	/**
+	 * Magic bytes at the start of compressed hash lists. The first byte is not valid in UTF-8 text, so text hash lists can't start with it.
+	 */
+	static final byte[] MAGIC = { (byte)0x89, 'I', 'C', 'H', 'Z', '\r', '\n', 0x1A };
+
+	/**
+	 * Version
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * Uncompressed size of the blocks in bytes
+	 */
+	static final int BLOCK_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * Maximum number of blocks, which are compressed or decompressed at the same time
+	 */
+	static final int MAX_PENDING_BLOCKS = Runtime.getRuntime().availableProcessors() * 2;
+
+	/**
+	 * File extension, which is appended to the file extension of the hash list format
+	 */
+	public static final String FILE_EXTENSION = "deflate";
+
+	/**
+	 * Constructor
+	 */
+	private CompressedHashList() {
+	}
+
+	/**
+	 * Checks if a file is a compressed hash list
+	 * 
+	 * @param file File
+	 * @return True if the file starts with the magic bytes, false otherwise
+	 * @throws IOException
+	 */
+	public static boolean isCompressedHashList(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+		}
+	}
+
+	/**
+	 * Checks if a stream starts with a compressed hash list. The position of the stream is not changed.
+	 * 
+	 * @param in Input, which must support mark and reset
+	 * @return True if the stream starts with the magic bytes, false otherwise
+	 * @throws IOException
+	 */
+	public static boolean isCompressedHashList(InputStream in) throws IOException {
+		in.mark(MAGIC.length);
+		try {
+			return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+		} finally {
+			in.reset();
+		}
+	}
+}
@@ -0,0 +1,278 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Walks root folders and their subfolders concurrently and streams the matching files, while the walk is still running. Every folder is listed in its own
+ * virtual thread, so that the blocking calls for listing folders and reading attributes of one folder don't delay the other folders. All root folders share
+ * the same threads and the same stream of found files.
+ * 
+ * Like {@link Files#walk(Path, java.nio.file.FileVisitOption...)}, symbolic links to folders are not followed. The files are found in no particular order.
+ * Folders, which can't be listed, are logged and skipped.
+ */
+final class ConcurrentFileWalker implements Closeable {
+	/**
+	 * Logger for this class
+	 */
+	private static Logger logger = LoggerFactory.getLogger(ConcurrentFileWalker.class);
+
+	/**
+	 * Maximum number of folders, which are listed at the same time, to limit the number of open file handles
+	 */
+	private static final int MAX_OPEN_FOLDERS = 64;
+
+	/**
+	 * Maximum number of found files, which are waiting to be taken
+	 */
+	private static final int MAX_QUEUED_FILES = 64 * 1024;
+
+	/**
+	 * Interval in milliseconds in which the walk is checked for completion while waiting for the next file
+	 */
+	private static final long POLL_INTERVAL = 100;
+
+	/**
+	 * Root Folders
+	 */
+	private final List<Root> roots = new ArrayList<>();
+
+	/**
+	 * Executor with a virtual thread per folder
+	 */
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	/**
+	 * Semaphore for the folders, which are listed at the same time
+	 */
+	private final Semaphore openFolders = new Semaphore(MAX_OPEN_FOLDERS);
+
+	/**
+	 * Found files
+	 */
+	private final BlockingQueue<FoundFile> foundFiles = new LinkedBlockingQueue<>(MAX_QUEUED_FILES);
+
+	/**
+	 * Number of folders, which are submitted, but not completely listed yet
+	 */
+	private final AtomicInteger pendingFolderCount = new AtomicInteger();
+
+	/**
+	 * Number of found files
+	 */
+	private final AtomicInteger foundFileCount = new AtomicInteger();
+
+	/**
+	 * True if all folders are listed
+	 */
+	private volatile boolean finished = false;
+
+	/**
+	 * True if the walker was closed
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * Add a root folder. Root folders must be added before the walk is started.
+	 * 
+	 * @param rootFolder Root Folder
+	 * @param fileFilter File Filter
+	 * @param recursive True if subfolders should be walked, false otherwise
+	 * @return Index of the root folder
+	 */
+	public int addRoot(Path rootFolder, Predicate<Path> fileFilter, boolean recursive) {
+		roots.add(new Root(roots.size(), rootFolder, fileFilter, recursive));
+		return roots.size() - 1;
+	}
+
+	/**
+	 * Start the walk
+	 */
+	public void start() {
+		// Prevents that the walk is finished before all root folders are submitted
+		pendingFolderCount.incrementAndGet();
+		for (Root root : roots) {
+			submitFolder(root, root.folder());
+		}
+		completeFolder();
+	}
+
+	/**
+	 * Returns the next found file. Waits until a file is found or the walk is finished.
+	 * 
+	 * @return Found File or null if all files were returned, the walker was closed or the current thread was interrupted
+	 */
+	public FoundFile next() {
+		try {
+			while (!closed) {
+				// The flag is read before polling, because it is set after the last file was added
+				boolean walkFinished = finished;
+				FoundFile foundFile = foundFiles.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				if (foundFile != null) {
+					return foundFile;
+				}
+				if (walkFinished) {
+					return null;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of files found so far
+	 * 
+	 * @return Number of found files
+	 */
+	public int getFoundFileCount() {
+		return foundFileCount.get();
+	}
+
+	/**
+	 * Returns if the walk is finished
+	 * 
+	 * @return True if all folders are listed, false otherwise
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Stops the walk
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Submit a folder to be listed
+	 * 
+	 * @param root Root Folder
+	 * @param folder Folder
+	 */
+	private void submitFolder(Root root, Path folder) {
+		pendingFolderCount.incrementAndGet();
+		try {
+			executor.execute(() -> {
+				try {
+					listFolder(root, folder);
+				} finally {
+					completeFolder();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// Walker was closed
+			completeFolder();
+		}
+	}
+
+	/**
+	 * Mark a submitted folder as listed
+	 */
+	private void completeFolder() {
+		if (pendingFolderCount.decrementAndGet() == 0) {
+			finished = true;
+		}
+	}
+
+	/**
+	 * List a folder. Matching files are added to the found files and subfolders are submitted, if the root folder is walked recursively.
+	 * 
+	 * @param root Root Folder
+	 * @param folder Folder
+	 */
+	private void listFolder(Root root, Path folder) {
+		try {
+			openFolders.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+			for (Path path : stream) {
+				if (closed) {
+					return;
+				}
+				BasicFileAttributes attributes;
+				try {
+					attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+				} catch (IOException e) {
+					logger.error("Could not read attributes of file: {}", path, e);
+					continue;
+				}
+				if (attributes.isDirectory()) {
+					if (root.recursive()) {
+						submitFolder(root, path);
+					}
+					continue;
+				}
+				if (!root.fileFilter().test(path)) {
+					continue;
+				}
+				if (attributes.isSymbolicLink()) {
+					try {
+						attributes = Files.readAttributes(path, BasicFileAttributes.class);
+					} catch (IOException e) {
+						// Broken link
+						continue;
+					}
+				}
+				if (attributes.isRegularFile()) {
+					foundFiles.put(new FoundFile(root.index(), path, attributes));
+					foundFileCount.incrementAndGet();
+				}
+			}
+		} catch (IOException | DirectoryIteratorException e) {
+			logger.error("Could not list files: {}", folder, e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			openFolders.release();
+		}
+	}
+
+	/**
+	 * Root Folder
+	 * 
+	 * @param index Index
+	 * @param folder Folder
+	 * @param fileFilter File Filter, which gets the found files
+	 * @param recursive True if subfolders are walked, false otherwise
+	 */
+	private record Root(int index, Path folder, Predicate<Path> fileFilter, boolean recursive) {
+	}
+
+	/**
+	 * Found File
+	 * 
+	 * @param rootIndex Index of the root folder, in which the file was found
+	 * @param file File
+	 * @param attributes Attributes of the file
+	 */
+	public record FoundFile(int rootIndex, Path file, BasicFileAttributes attributes) {
+	}
+}
@@ -0,0 +1,128 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Report of files, which could not be hashed or were slow to decode. Entries can be added from multiple threads.
+ * 
+ * The report is written as text file with one line per file. The columns are separated by tabs: Problem, duration of the decode in milliseconds, detail and
+ * file.
+ */
+public class DecodeReport {
+	/**
+	 * Entries
+	 */
+	private final Queue<Entry> entries = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Constructor
+	 */
+	public DecodeReport() {
+	}
+
+	/**
+	 * Add an entry
+	 * 
+	 * @param file File
+	 * @param problem Problem
+	 * @param duration Duration of the decode in milliseconds or 0 if the file was not decoded
+	 * @param detail Detail or an empty String
+	 */
+	public void add(Path file, Problem problem, long duration, String detail) {
+		entries.add(new Entry(file, problem, duration, detail));
+	}
+
+	/**
+	 * Returns the entries sorted by file
+	 * 
+	 * @return Entries
+	 */
+	public List<Entry> getEntries() {
+		List<Entry> sortedEntries = new ArrayList<>(entries);
+		sortedEntries.sort(Comparator.comparing(Entry::file));
+		return sortedEntries;
+	}
+
+	/**
+	 * Returns the number of entries
+	 * 
+	 * @return Number of entries
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of entries with the given problem
+	 * 
+	 * @param problem Problem
+	 * @return Number of entries
+	 */
+	public int count(Problem problem) {
+		return (int)entries.stream().filter(x -> x.problem() == problem).count();
+	}
+
+	/**
+	 * Write report to file
+	 * 
+	 * @param reportFile Report File
+	 * @throws IOException
+	 */
+	public void write(Path reportFile) throws IOException {
+		try (BufferedWriter bw = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+			for (Entry entry : getEntries()) {
+				bw.write(entry.problem().name() + "\t" + entry.duration() + "\t" + entry.detail() + "\t" + entry.file().toAbsolutePath() + "\n");
+			}
+		}
+	}
+
+	/**
+	 * Problem of a file
+	 */
+	public enum Problem {
+		/**
+		 * File could not be read or decoded
+		 */
+		FAILED,
+
+		/**
+		 * Image has more pixels or needs more memory than allowed and was not decoded
+		 */
+		TOO_LARGE,
+
+		/**
+		 * Decoding ran out of memory
+		 */
+		OUT_OF_MEMORY,
+
+		/**
+		 * Decoding took longer than the timeout and was aborted or abandoned
+		 */
+		TIMEOUT,
+
+		/**
+		 * Decoding was successful, but slow
+		 */
+		SLOW;
+	}
+
+	/**
+	 * Report Entry
+	 * 
+	 * @param file File
+	 * @param problem Problem
+	 * @param duration Duration of the decode in milliseconds or 0 if the file was not decoded
+	 * @param detail Detail or an empty String
+	 */
+	public record Entry(Path file, Problem problem, long duration, String detail) {
+	}
+}
@@ -0,0 +1,231 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watchdog, which limits the time for decoding a file. Malformed images can make an image reader spin for minutes.
+ * 
+ * If decoding of a file takes longer than the timeout, the {@link ImageHasher} is asked to abort decoding. Image readers, which check for abort requests,
+ * return soon after that. Threads can't be killed, so if decoding still did not return after twice the timeout, the decode is abandoned: The abandon handler
+ * of the decode is called, which can replace the stuck thread, and the result of the decode is ignored, if it ever returns.
+ */
+final class DecodeWatchdog implements Closeable {
+	/**
+	 * Logger for this class
+	 */
+	private static Logger logger = LoggerFactory.getLogger(DecodeWatchdog.class);
+
+	/**
+	 * Interval in milliseconds in which running decodes are checked
+	 */
+	private static final long CHECK_INTERVAL = 250;
+
+	/**
+	 * Timeout in nanoseconds or 0 if there is no timeout
+	 */
+	private final long timeoutNanos;
+
+	/**
+	 * Running decodes
+	 */
+	private final Set<Decode> runningDecodes = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Scheduler, which checks the running decodes, or null if there is no timeout
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param timeout Timeout in milliseconds or 0 if decodes should only be measured
+	 */
+	public DecodeWatchdog(long timeout) {
+		if (timeout < 0) {
+			throw new IllegalArgumentException("timeout must not be negative: " + timeout);
+		}
+		this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+		if (timeout > 0) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r);
+				thread.setName("Decode-Watchdog");
+				thread.setDaemon(true);
+				return thread;
+			});
+			scheduler.scheduleWithFixedDelay(this::checkDecodes, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+		} else {
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * Start watching the decode of a file. {@link #finish(Decode)} must be called when decoding returns.
+	 * 
+	 * @param file File
+	 * @param imageHasher Image Hasher, which decodes the file
+	 * @param abandonHandler Handler, which is called from the watchdog thread if the decode is abandoned, or null if the decode should not be abandoned
+	 * @return Decode
+	 */
+	public Decode start(Path file, ImageHasher imageHasher, Consumer<Decode> abandonHandler) {
+		imageHasher.clearAbort();
+		Decode decode = new Decode(file, imageHasher, abandonHandler);
+		runningDecodes.add(decode);
+		return decode;
+	}
+
+	/**
+	 * Finish watching the decode of a file. If the decode was abandoned, the abandon handler was already called, when this method returns.
+	 * 
+	 * @param decode Decode
+	 * @return Duration of the decode in milliseconds
+	 */
+	public long finish(Decode decode) {
+		runningDecodes.remove(decode);
+		synchronized (decode) {
+			decode.finished = true;
+		}
+		return decode.getDuration();
+	}
+
+	/**
+	 * Stops the watchdog
+	 */
+	@Override
+	public void close() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	/**
+	 * Abort decodes, which exceed the timeout, and abandon decodes, which exceed twice the timeout
+	 */
+	private void checkDecodes() {
+		long now = System.nanoTime();
+		for (Decode decode : runningDecodes) {
+			long elapsed = now - decode.startTime;
+			/*
+			 * The decode is locked, so that the image hasher is not aborted after the decode was finished and the next decode was started. The abandon handler
+			 * is also called while the decode is locked, so that the thread, which decodes, sees the effects of the handler as soon as decoding returns.
+			 */
+			synchronized (decode) {
+				if (decode.finished) {
+					continue;
+				}
+				if (!decode.aborted && elapsed > timeoutNanos) {
+					decode.aborted = true;
+					logger.warn("Decoding takes longer than {} ms, aborting: {}", TimeUnit.NANOSECONDS.toMillis(timeoutNanos), decode.file);
+					decode.imageHasher.abort();
+				} else if (decode.aborted && !decode.abandoned && decode.abandonHandler != null && elapsed > 2 * timeoutNanos) {
+					decode.abandoned = true;
+					runningDecodes.remove(decode);
+					logger.error("Decoding did not stop after abort, abandoning: {}", decode.file);
+					try {
+						decode.abandonHandler.accept(decode);
+					} catch (RuntimeException e) {
+						logger.error("Abandon handler failed: {}", decode.file, e);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decode of a file, which is watched
+	 */
+	public static final class Decode {
+		/**
+		 * File
+		 */
+		private final Path file;
+
+		/**
+		 * Image Hasher, which decodes the file
+		 */
+		private final ImageHasher imageHasher;
+
+		/**
+		 * Abandon Handler or null
+		 */
+		private final Consumer<Decode> abandonHandler;
+
+		/**
+		 * Start time in nanoseconds
+		 */
+		private final long startTime = System.nanoTime();
+
+		/**
+		 * True if decoding returned
+		 */
+		private boolean finished = false;
+
+		/**
+		 * True if the timeout was exceeded and decoding was aborted
+		 */
+		private boolean aborted = false;
+
+		/**
+		 * True if decoding did not return after abort and was abandoned
+		 */
+		private boolean abandoned = false;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param file File
+		 * @param imageHasher Image Hasher
+		 * @param abandonHandler Abandon Handler or null
+		 */
+		private Decode(Path file, ImageHasher imageHasher, Consumer<Decode> abandonHandler) {
+			this.file = file;
+			this.imageHasher = imageHasher;
+			this.abandonHandler = abandonHandler;
+		}
+
+		/**
+		 * Returns the file
+		 * 
+		 * @return file
+		 */
+		public Path getFile() {
+			return file;
+		}
+
+		/**
+		 * Returns the duration since the decode was started
+		 * 
+		 * @return Duration in milliseconds
+		 */
+		public long getDuration() {
+			return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+		}
+
+		/**
+		 * Returns if the timeout was exceeded and decoding was aborted
+		 * 
+		 * @return True if decoding was aborted, false otherwise
+		 */
+		public synchronized boolean isAborted() {
+			return aborted;
+		}
+
+		/**
+		 * Returns if decoding was abandoned. The result of an abandoned decode must be ignored.
+		 * 
+		 * @return True if decoding was abandoned, false otherwise
+		 */
+		public synchronized boolean isAbandoned() {
+			return abandoned;
+		}
+	}
+}
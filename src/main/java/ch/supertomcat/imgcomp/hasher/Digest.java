@@ -0,0 +1,27 @@
+package ch.supertomcat.imgcomp.hasher;
+
+/**
+ * Digest, which calculates a hash over data, which is passed in one or more parts
+ */
+public interface Digest {
+	/**
+	 * Update the digest with data
+	 * 
+	 * @param data Data
+	 * @param offset Offset
+	 * @param length Length
+	 */
+	public void update(byte[] data, int offset, int length);
+
+	/**
+	 * Completes the calculation and returns the hash. The digest is reset afterwards.
+	 * 
+	 * @return Hash
+	 */
+	public byte[] digest();
+
+	/**
+	 * Reset the digest
+	 */
+	public void reset();
+}
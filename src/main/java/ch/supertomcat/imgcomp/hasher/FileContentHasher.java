@@ -0,0 +1,58 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Calculates hashes of the raw file content, which are used to find byte-identical files. The file is read through memory-mapped chunks, so it is not copied
+ * into the heap.
+ * 
+ * SHA-256 is used, so that different files don't end up with the same image hash by accident. Instances are not thread-safe, every thread has to use its own
+ * instance.
+ */
+public class FileContentHasher {
+	/**
+	 * Size of a memory-mapped chunk in bytes
+	 */
+	private static final long CHUNK_SIZE = 64L * 1024 * 1024;
+
+	/**
+	 * Message Digest
+	 */
+	private final MessageDigest messageDigest;
+
+	/**
+	 * Constructor
+	 */
+	public FileContentHasher() {
+		try {
+			this.messageDigest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	/**
+	 * Calculates the hash of the file content
+	 * 
+	 * @param f File
+	 * @return Hash
+	 * @throws IOException
+	 */
+	public HashValue getContentHash(Path f) throws IOException {
+		messageDigest.reset();
+		try (FileChannel channel = FileChannel.open(f, StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long position = 0; position < size; position += CHUNK_SIZE) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK_SIZE, size - position));
+				messageDigest.update(buffer);
+			}
+		}
+		return HashValue.fromBytes(messageDigest.digest());
+	}
+}
@@ -0,0 +1,48 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ch.supertomcat.supertomcatutils.io.FileUtil;
+
+/**
+ * Dictionary of the folders of a hash list. Each folder is only stored once and all hashes of a folder reference the same folder String, so the hashes
+ * only need to store their filename in addition. The dictionary is thread-safe, so hashes can be created in parallel.
+ */
+public class FolderTable {
+	/**
+	 * Folders
+	 */
+	private final Map<String, String> folders = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the shared instance of a folder
+	 * 
+	 * @param folder Folder
+	 * @return Shared instance of the folder
+	 */
+	public String intern(String folder) {
+		String sharedFolder = folders.putIfAbsent(folder, folder);
+		return sharedFolder != null ? sharedFolder : folder;
+	}
+
+	/**
+	 * Create a hash, which references the shared instance of its folder
+	 * 
+	 * @param file File
+	 * @param hash Hash
+	 * @return Hash
+	 */
+	public Hash createHash(String file, HashValue hash) {
+		return new Hash(file, intern(FileUtil.getDirectory(file)), FileUtil.getFilename(file), hash);
+	}
+
+	/**
+	 * Returns the count of folders
+	 * 
+	 * @return Count of folders
+	 */
+	public int size() {
+		return folders.size();
+	}
+}
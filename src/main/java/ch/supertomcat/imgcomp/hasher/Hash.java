@@ -4,10 +4,13 @@ import ch.supertomcat.supertomcatutils.io.FileUtil;
 
 /**
  * Hash class which holds a hash and the corresponding file
+ * 
+ * The file is not stored, but joined from the folder and the filename when needed, so that hashes of the same folder can share the folder String (See
+ * {@link FolderTable}). Only files, which are not exactly the folder followed by the filename, are stored.
  */
 public class Hash {
 	/**
-	 * File Path
+	 * File Path or null if the file is the folder followed by the filename
 	 */
 	private final String file;
 
@@ -24,7 +27,7 @@ public class Hash {
 	/**
 	 * Hash
 	 */
-	private final String hash;
+	private final HashValue hash;
 
 	/**
 	 * Constructor
@@ -32,24 +35,54 @@ public class Hash {
 	 * @param file
 	 * @param hash
 	 */
-	public Hash(String file, String hash) {
-		this.file = file;
+	public Hash(String file, HashValue hash) {
+		this(file, FileUtil.getDirectory(file), FileUtil.getFilename(file), hash);
+	}
+
+	/**
+	 * Constructor for hashes of files, which are the folder followed by the filename
+	 * 
+	 * @param folder Folder of the file
+	 * @param filename Filename of the file
+	 * @param hash Hash
+	 */
+	public Hash(String folder, String filename, HashValue hash) {
+		this.file = null;
+		this.hash = hash;
+		this.folder = folder;
+		this.filename = filename;
+	}
+
+	/**
+	 * Constructor for hashes, whose folder and filename are already known, e.g. when reading hash lists, which store them separately
+	 * 
+	 * @param file File
+	 * @param folder Folder of the file
+	 * @param filename Filename of the file
+	 * @param hash Hash
+	 */
+	public Hash(String file, String folder, String filename, HashValue hash) {
+		boolean joined = file.length() == folder.length() + filename.length() && file.startsWith(folder) && file.endsWith(filename);
+		this.file = joined ? null : file;
 		this.hash = hash;
-		this.folder = FileUtil.getDirectory(this.file);
-		this.filename = FileUtil.getFilename(this.file);
+		this.folder = folder;
+		this.filename = filename;
 	}
 
 	/**
 	 * @return the file
 	 */
 	public String getFile() {
-		return file;
+		if (file != null) {
+			return file;
+		}
+		return folder.concat(filename);
 	}
 
 	/**
 	 * @return the hash
 	 */
-	public String getHash() {
+	public HashValue getHash() {
 		return hash;
 	}
 
@@ -0,0 +1,78 @@
+package ch.supertomcat.imgcomp.hasher;
+
+/**
+ * Hash Algorithm
+ */
+public enum HashAlgorithm {
+	/**
+	 * MD5 <BR>
+	 * The algorithm, which was always used. Hash lists without an algorithm use this algorithm.
+	 */
+	MD5("md5"),
+
+	/**
+	 * SHA-256
+	 */
+	SHA_256("sha256"),
+
+	/**
+	 * MurmurHash3 (128 Bit) <BR>
+	 * Fast non-cryptographic hash
+	 */
+	MURMUR3_128("murmur3");
+
+	/**
+	 * Command Line Name
+	 */
+	private final String commandLineName;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param commandLineName Command Line Name
+	 */
+	private HashAlgorithm(String commandLineName) {
+		this.commandLineName = commandLineName;
+	}
+
+	/**
+	 * Returns the commandLineName
+	 * 
+	 * @return commandLineName
+	 */
+	public String getCommandLineName() {
+		return commandLineName;
+	}
+
+	/**
+	 * Create a new digest for this algorithm
+	 * 
+	 * @return Digest
+	 */
+	public Digest createDigest() {
+		switch (this) {
+			case SHA_256:
+				return new MessageDigestDigest("SHA-256");
+			case MURMUR3_128:
+				return new Murmur3Digest();
+			case MD5:
+			default:
+				return new MessageDigestDigest("MD5");
+		}
+	}
+
+	/**
+	 * Get Hash Algorithm by Command Line Name
+	 * 
+	 * @param name Command Line Name
+	 * @return Hash Algorithm or null
+	 */
+	public static HashAlgorithm getByCommandLineName(String name) {
+		for (HashAlgorithm hashAlgorithm : HashAlgorithm.values()) {
+			if (hashAlgorithm.getCommandLineName().equals(name)) {
+				return hashAlgorithm;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,266 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of hashes from a previous run. A cached hash is only reused if path, size, modification time and file key of the file are unchanged and the hash was
+ * calculated with the same hash type, hash algorithm and hash mode.
+ */
+public class HashCache {
+	/**
+	 * Logger for this class
+	 */
+	private static Logger logger = LoggerFactory.getLogger(HashCache.class);
+
+	/**
+	 * Pattern for splitting lines
+	 */
+	private static final Pattern LINE_SPLIT_PATTERN = Pattern.compile("\t");
+
+	/**
+	 * Number of columns in a line
+	 */
+	private static final int COLUMN_COUNT = 8;
+
+	/**
+	 * Number of columns in a line of caches, which were written before hash types were added. These caches only contain exact hashes.
+	 */
+	private static final int LEGACY_COLUMN_COUNT = 7;
+
+	/**
+	 * Entries by absolute file path
+	 */
+	private final Map<String, Entry> entries = new HashMap<>();
+
+	/**
+	 * Constructor
+	 */
+	public HashCache() {
+	}
+
+	/**
+	 * Returns the cached hash of the file if the file is unchanged
+	 * 
+	 * @param file Absolute file path
+	 * @param attributes Current attributes of the file
+	 * @param hashType Hash Type
+	 * @param hashAlgorithm Hash Algorithm
+	 * @param hashMode Hash Mode
+	 * @return Hash or null if the file is not in the cache, was changed or was hashed with another type, algorithm or mode
+	 */
+	public HashValue getHash(String file, BasicFileAttributes attributes, HashType hashType, HashAlgorithm hashAlgorithm, HashMode hashMode) {
+		Entry entry = entries.get(file);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.hashType() != hashType || entry.hashAlgorithm() != hashAlgorithm || entry.hashMode() != hashMode) {
+			return null;
+		}
+		if (entry.size() != attributes.size() || entry.lastModified() != attributes.lastModifiedTime().toMillis()
+				|| !entry.fileKey().equals(getFileKey(attributes))) {
+			return null;
+		}
+		return entry.hash();
+	}
+
+	/**
+	 * Add or replace the hash of a file
+	 * 
+	 * @param file Absolute file path
+	 * @param attributes Attributes of the file at the time it was hashed
+	 * @param hashType Hash Type
+	 * @param hashAlgorithm Hash Algorithm
+	 * @param hashMode Hash Mode
+	 * @param hash Hash
+	 */
+	public void put(String file, BasicFileAttributes attributes, HashType hashType, HashAlgorithm hashAlgorithm, HashMode hashMode, HashValue hash) {
+		entries.put(file, new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), getFileKey(attributes), hashType, hashAlgorithm, hashMode, hash));
+	}
+
+	/**
+	 * Copy entries of another cache, which are not in one of the given folders and not already in this cache. This is used to keep entries of folders, which
+	 * were not hashed in the current run.
+	 * 
+	 * @param other Other Cache
+	 * @param folders Folders
+	 */
+	public void putAllOutsideFolders(HashCache other, List<String> folders) {
+		for (Map.Entry<String, Entry> otherEntry : other.entries.entrySet()) {
+			String file = otherEntry.getKey();
+			if (entries.containsKey(file) || folders.stream().anyMatch(file::startsWith)) {
+				continue;
+			}
+			entries.put(file, otherEntry.getValue());
+		}
+	}
+
+	/**
+	 * Returns the number of entries
+	 * 
+	 * @return Number of entries
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Read cache from file. If the file does not exist, an empty cache is returned.
+	 * 
+	 * Every line of a cache file ends with a line break. A last line without line break was only written partially, e.g. when a {@link HashJournal} was
+	 * interrupted, and is skipped, because the last column, which is the path, could be incomplete.
+	 * 
+	 * @param cacheFile Cache File
+	 * @return Cache
+	 */
+	public static HashCache read(Path cacheFile) {
+		HashCache hashCache = new HashCache();
+		if (!Files.exists(cacheFile)) {
+			return hashCache;
+		}
+
+		try (BufferedReader br = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+			boolean lastLineComplete = endsWithLineBreak(cacheFile);
+			String line;
+			String nextLine = br.readLine();
+			int lineNumber = 0;
+			while ((line = nextLine) != null) {
+				lineNumber++;
+				nextLine = br.readLine();
+				if (nextLine == null && !lastLineComplete) {
+					logger.warn("Skipping incomplete last line in '{}': {} -> {}", cacheFile, lineNumber, line);
+					break;
+				}
+				String[] parts = LINE_SPLIT_PATTERN.split(line, COLUMN_COUNT);
+				if (parts.length == LEGACY_COLUMN_COUNT) {
+					String[] legacyParts = parts;
+					parts = new String[COLUMN_COUNT];
+					parts[0] = legacyParts[0];
+					parts[1] = HashType.EXACT.getCommandLineName();
+					System.arraycopy(legacyParts, 1, parts, 2, LEGACY_COLUMN_COUNT - 1);
+				} else if (parts.length != COLUMN_COUNT) {
+					logger.error("Incorrect Line in '{}': {} -> {}", cacheFile, lineNumber, line);
+					continue;
+				}
+				HashType hashType = HashType.getByCommandLineName(parts[1]);
+				HashAlgorithm hashAlgorithm = HashAlgorithm.getByCommandLineName(parts[2]);
+				HashMode hashMode = HashMode.getByCommandLineName(parts[3]);
+				if (hashType == null || hashAlgorithm == null || hashMode == null) {
+					logger.error("Incorrect Line in '{}': {} -> {}", cacheFile, lineNumber, line);
+					continue;
+				}
+				try {
+					HashValue hash = HashValue.fromHexString(parts[0]);
+					hashCache.entries.put(parts[7], new Entry(Long.parseLong(parts[4]), Long.parseLong(parts[5]), parts[6], hashType, hashAlgorithm, hashMode, hash));
+				} catch (IllegalArgumentException e) {
+					logger.error("Incorrect Line in '{}': {} -> {}", cacheFile, lineNumber, line);
+				}
+			}
+		} catch (IOException e) {
+			logger.error("Could not read hash cache: {}", cacheFile, e);
+		}
+		return hashCache;
+	}
+
+	/**
+	 * Checks if a file is empty or ends with a line break
+	 * 
+	 * @param file File
+	 * @return True if the file is empty or ends with a line break, false otherwise
+	 * @throws IOException
+	 */
+	private static boolean endsWithLineBreak(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size == 0) {
+				return true;
+			}
+			ByteBuffer buffer = ByteBuffer.allocate(1);
+			return channel.read(buffer, size - 1) == 1 && buffer.get(0) == '\n';
+		}
+	}
+
+	/**
+	 * Write cache to file. The cache is written to a temporary file first, which then replaces the file.
+	 * 
+	 * @param cacheFile Cache File
+	 * @throws IOException
+	 */
+	public void write(Path cacheFile) throws IOException {
+		Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+		try (BufferedWriter bw = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+			for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+				bw.write(formatLine(entry.getKey(), entry.getValue()));
+			}
+		}
+		Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Format a line of a cache file. Cache files and hash journals use the same format, so that a journal can be read as cache.
+	 * 
+	 * @param file Absolute file path
+	 * @param attributes Attributes of the file at the time it was hashed
+	 * @param hashType Hash Type
+	 * @param hashAlgorithm Hash Algorithm
+	 * @param hashMode Hash Mode
+	 * @param hash Hash
+	 * @return Line including the line break
+	 */
+	static String formatLine(String file, BasicFileAttributes attributes, HashType hashType, HashAlgorithm hashAlgorithm, HashMode hashMode, HashValue hash) {
+		return formatLine(file, new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), getFileKey(attributes), hashType, hashAlgorithm, hashMode, hash));
+	}
+
+	/**
+	 * Format a line of a cache file
+	 * 
+	 * @param file Absolute file path
+	 * @param entry Entry
+	 * @return Line including the line break
+	 */
+	private static String formatLine(String file, Entry entry) {
+		return entry.hash().toHexString() + "\t" + entry.hashType().getCommandLineName() + "\t" + entry.hashAlgorithm().getCommandLineName() + "\t" + entry.hashMode()
+				.getCommandLineName() + "\t" + entry.size() + "\t" + entry.lastModified() + "\t" + entry.fileKey() + "\t" + file + "\n";
+	}
+
+	/**
+	 * Returns the file key as String
+	 * 
+	 * @param attributes Attributes
+	 * @return File Key or an empty String if the file system does not provide file keys
+	 */
+	private static String getFileKey(BasicFileAttributes attributes) {
+		Object fileKey = attributes.fileKey();
+		return fileKey != null ? fileKey.toString() : "";
+	}
+
+	/**
+	 * Cache Entry
+	 * 
+	 * @param size Size
+	 * @param lastModified Last Modified Time in milliseconds
+	 * @param fileKey File Key
+	 * @param hashType Hash Type
+	 * @param hashAlgorithm Hash Algorithm
+	 * @param hashMode Hash Mode
+	 * @param hash Hash
+	 */
+	private record Entry(long size, long lastModified, String fileKey, HashType hashType, HashAlgorithm hashAlgorithm, HashMode hashMode, HashValue hash) {
+	}
+}
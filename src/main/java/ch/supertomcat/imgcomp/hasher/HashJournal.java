@@ -0,0 +1,156 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of the hashes, which were calculated during a hashing run. If the run is interrupted, the journal can be replayed with
+ * {@link #replay(Path)}, so that the files, which were already hashed, are not hashed again.
+ * 
+ * The journal uses the line format of the {@link HashCache}. A line, which was only written partially when the run was interrupted, has no line break. It
+ * is skipped when the journal is replayed and removed before new records are appended to the journal.
+ */
+public class HashJournal implements Closeable {
+	/**
+	 * Logger for this class
+	 */
+	private static Logger logger = LoggerFactory.getLogger(HashJournal.class);
+
+	/**
+	 * Interval in milliseconds in which the journal is flushed
+	 */
+	private static final long FLUSH_INTERVAL = 1000;
+
+	/**
+	 * Size of the blocks in bytes, in which the end of the journal is searched for the last line break
+	 */
+	private static final int TRUNCATE_BUFFER_SIZE = 8192;
+
+	/**
+	 * Journal File
+	 */
+	private final Path journalFile;
+
+	/**
+	 * Writer
+	 */
+	private final BufferedWriter writer;
+
+	/**
+	 * Time of the last flush
+	 */
+	private long lastFlush = System.currentTimeMillis();
+
+	/**
+	 * True if writing failed, so that the error is only logged once
+	 */
+	private boolean failed = false;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param journalFile Journal File
+	 * @param append True if records should be appended to an existing journal, false if an existing journal should be replaced
+	 * @throws IOException
+	 */
+	public HashJournal(Path journalFile, boolean append) throws IOException {
+		this.journalFile = journalFile;
+		if (append && Files.exists(journalFile)) {
+			truncateIncompleteLine(journalFile);
+		}
+		this.writer = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	/**
+	 * Append the hash of a file. The journal is flushed at most once per flush interval, so an interruption loses at most the records of this interval.
+	 * 
+	 * @param file Absolute file path
+	 * @param attributes Attributes of the file at the time it was hashed
+	 * @param hashType Hash Type
+	 * @param hashAlgorithm Hash Algorithm
+	 * @param hashMode Hash Mode
+	 * @param hash Hash
+	 */
+	public synchronized void append(String file, BasicFileAttributes attributes, HashType hashType, HashAlgorithm hashAlgorithm, HashMode hashMode, HashValue hash) {
+		if (failed) {
+			return;
+		}
+		try {
+			writer.write(HashCache.formatLine(file, attributes, hashType, hashAlgorithm, hashMode, hash));
+			long now = System.currentTimeMillis();
+			if (now - lastFlush >= FLUSH_INTERVAL) {
+				writer.flush();
+				lastFlush = now;
+			}
+		} catch (IOException e) {
+			failed = true;
+			logger.error("Could not write hash journal: {}", journalFile, e);
+		}
+	}
+
+	/**
+	 * Remove a line at the end of the journal, which was only written partially, so that the next record starts on a new line
+	 * 
+	 * @param journalFile Journal File
+	 * @throws IOException
+	 */
+	private static void truncateIncompleteLine(Path journalFile) throws IOException {
+		try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(TRUNCATE_BUFFER_SIZE);
+			long end = channel.size();
+			long size = end;
+			while (end > 0) {
+				long start = Math.max(0, end - TRUNCATE_BUFFER_SIZE);
+				buffer.clear().limit((int)(end - start));
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer, start + buffer.position()) < 0) {
+						throw new EOFException("Journal was truncated while it was read: " + journalFile);
+					}
+				}
+				for (int i = buffer.limit() - 1; i >= 0; i--) {
+					if (buffer.get(i) == '\n') {
+						if (start + i + 1 < size) {
+							logger.warn("Removing incomplete line at the end of the journal: {}", journalFile);
+							channel.truncate(start + i + 1);
+						}
+						return;
+					}
+				}
+				end = start;
+			}
+			if (size > 0) {
+				logger.warn("Removing incomplete line at the end of the journal: {}", journalFile);
+				channel.truncate(0);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		writer.close();
+	}
+
+	/**
+	 * Replay a journal. If the journal does not exist, an empty cache is returned. A line at the end of the journal, which was only written partially, is
+	 * skipped.
+	 * 
+	 * @param journalFile Journal File
+	 * @return Cache containing the hashes of the journal
+	 */
+	public static HashCache replay(Path journalFile) {
+		return HashCache.read(journalFile);
+	}
+}
@@ -0,0 +1,72 @@
+package ch.supertomcat.imgcomp.hasher;
+
+/**
+ * Format of hash list files. The format is detected automatically when a hash list is read.
+ */
+public enum HashListFormat {
+	/**
+	 * Text <BR>
+	 * One line per hash with the hex hash and the file separated by a tab
+	 */
+	TEXT("text", "txt"),
+
+	/**
+	 * Binary <BR>
+	 * Binary format with a column of hashes and a table of paths, which is smaller and faster to read
+	 */
+	BINARY("binary", "bin");
+
+	/**
+	 * Command Line Name
+	 */
+	private final String commandLineName;
+
+	/**
+	 * File Extension
+	 */
+	private final String fileExtension;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param commandLineName Command Line Name
+	 * @param fileExtension File Extension
+	 */
+	private HashListFormat(String commandLineName, String fileExtension) {
+		this.commandLineName = commandLineName;
+		this.fileExtension = fileExtension;
+	}
+
+	/**
+	 * Returns the commandLineName
+	 * 
+	 * @return commandLineName
+	 */
+	public String getCommandLineName() {
+		return commandLineName;
+	}
+
+	/**
+	 * Returns the fileExtension
+	 * 
+	 * @return fileExtension
+	 */
+	public String getFileExtension() {
+		return fileExtension;
+	}
+
+	/**
+	 * Get Hash List Format by Command Line Name
+	 * 
+	 * @param name Command Line Name
+	 * @return Hash List Format or null
+	 */
+	public static HashListFormat getByCommandLineName(String name) {
+		for (HashListFormat hashListFormat : HashListFormat.values()) {
+			if (hashListFormat.getCommandLineName().equals(name)) {
+				return hashListFormat;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,60 @@
+package ch.supertomcat.imgcomp.hasher;
+
+/**
+ * Hash Mode, which defines which image data is hashed
+ */
+public enum HashMode {
+	/**
+	 * Compatible <BR>
+	 * Hashes a copy of the raster of the decoded and color converted image. This is the mode, which was always used, so hashes are compatible with existing
+	 * hash lists.
+	 */
+	COMPATIBLE("compatible"),
+
+	/**
+	 * Raw <BR>
+	 * Hashes the decoded samples directly, without copying the raster. If the image reader supports reading rasters, the raster is read without color
+	 * conversion. Hashes of PNG, GIF and BMP images are identical to {@link #COMPATIBLE}, because these readers can't read rasters and the raster of the
+	 * image has the same layout as the copy. Hashes of JPEG images are different, because the samples are not color converted (e.g. YCbCr instead of RGB and
+	 * no ICC profile conversion).
+	 */
+	RAW("raw");
+
+	/**
+	 * Command Line Name
+	 */
+	private final String commandLineName;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param commandLineName Command Line Name
+	 */
+	private HashMode(String commandLineName) {
+		this.commandLineName = commandLineName;
+	}
+
+	/**
+	 * Returns the commandLineName
+	 * 
+	 * @return commandLineName
+	 */
+	public String getCommandLineName() {
+		return commandLineName;
+	}
+
+	/**
+	 * Get Hash Mode by Command Line Name
+	 * 
+	 * @param name Command Line Name
+	 * @return Hash Mode or null
+	 */
+	public static HashMode getByCommandLineName(String name) {
+		for (HashMode hashMode : HashMode.values()) {
+			if (hashMode.getCommandLineName().equals(name)) {
+				return hashMode;
+			}
+		}
+		return null;
+	}
+}
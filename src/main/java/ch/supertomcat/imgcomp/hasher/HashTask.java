@@ -1,17 +1,41 @@
 package ch.supertomcat.imgcomp.hasher;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
-import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ch.supertomcat.imgcomp.hasher.ConcurrentFileWalker.FoundFile;
+import ch.supertomcat.imgcomp.hasher.DecodeReport.Problem;
+import ch.supertomcat.imgcomp.hasher.DecodeWatchdog.Decode;
+import ch.supertomcat.imgcomp.hasher.ImageHasher.ImageHeader;
 import ch.supertomcat.imgcomp.task.ImgCompTaskBase;
 import ch.supertomcat.supertomcatutils.gui.progress.ProgressObserver;
 
@@ -24,6 +48,36 @@ public class HashTask extends ImgCompTaskBase {
 	 */
 	public static final String DEFAULT_FILENAME_PATTERN = "(?i).*\\.(?:jpg|jpeg|gif|png|bak|bak1|bak2|bak3)$";
 
+	/**
+	 * Default journal file
+	 */
+	public static final String DEFAULT_JOURNAL_FILE = "ImageHashes.journal";
+
+	/**
+	 * Default report file for files, which could not be hashed or were slow to decode
+	 */
+	public static final String DEFAULT_DECODE_REPORT_FILE = "ImageHashes-problems.txt";
+
+	/**
+	 * Default maximum number of pixels of an image
+	 */
+	public static final long DEFAULT_MAX_PIXELS = 250_000_000L;
+
+	/**
+	 * Default timeout in milliseconds for decoding a file
+	 */
+	public static final long DEFAULT_DECODE_TIMEOUT = 60_000;
+
+	/**
+	 * Default duration in milliseconds from which on decoding of a file is reported as slow
+	 */
+	public static final long DEFAULT_SLOW_DECODE_THRESHOLD = 10_000;
+
+	/**
+	 * Interval in milliseconds in which progress is updated while hashing in parallel
+	 */
+	private static final long PROGRESS_UPDATE_INTERVAL = 250;
+
 	/**
 	 * Logger
 	 */
@@ -34,6 +88,121 @@ public class HashTask extends ImgCompTaskBase {
 	 */
 	private List<ImageHashList> imageHashLists;
 
+	/**
+	 * Number of threads used for hashing
+	 */
+	private final int threadCount;
+
+	/**
+	 * Memory limit in bytes for images, which are loaded and decoded in parallel
+	 */
+	private long memoryLimit = Runtime.getRuntime().maxMemory() / 2;
+
+	/**
+	 * Cache file for incremental hashing or null
+	 */
+	private Path hashCacheFile = null;
+
+	/**
+	 * Hash Cache of the previous run or null
+	 */
+	private HashCache previousHashCache = null;
+
+	/**
+	 * Hash Cache, which is written after this run, or null
+	 */
+	private HashCache updatedHashCache = null;
+
+	/**
+	 * Journal file or null if no journal is written
+	 */
+	private Path journalFile = null;
+
+	/**
+	 * True if hashes from the journal of an interrupted run should be reused
+	 */
+	private boolean resume = false;
+
+	/**
+	 * Journal, to which calculated hashes are appended, or null
+	 */
+	private HashJournal journal = null;
+
+	/**
+	 * Hashes from the journal of an interrupted run or null
+	 */
+	private HashCache journalHashCache = null;
+
+	/**
+	 * Number of hashes, which were taken from the cache
+	 */
+	private int reusedHashCount = 0;
+
+	/**
+	 * Number of hashes, which were taken from the journal of an interrupted run. These are included in the reused hashes.
+	 */
+	private int resumedHashCount = 0;
+
+	/**
+	 * Number of files, which were decoded and hashed. This is updated by the hashing threads.
+	 */
+	private final AtomicInteger calculatedHashCount = new AtomicInteger();
+
+	/**
+	 * Maximum number of pixels of an image. Images with more pixels are not decoded.
+	 */
+	private long maxPixels = DEFAULT_MAX_PIXELS;
+
+	/**
+	 * Maximum estimated memory in bytes needed to decode a single image. Images, which need more memory, are not decoded.
+	 */
+	private long maxDecodedSize = Runtime.getRuntime().maxMemory() / 4;
+
+	/**
+	 * Timeout in milliseconds for decoding a file or 0 if there is no timeout
+	 */
+	private long decodeTimeout = DEFAULT_DECODE_TIMEOUT;
+
+	/**
+	 * Duration in milliseconds from which on decoding of a file is reported as slow or 0 if slow files are not reported
+	 */
+	private long slowDecodeThreshold = DEFAULT_SLOW_DECODE_THRESHOLD;
+
+	/**
+	 * Report file for files, which could not be hashed or were slow to decode, or null if no report is written
+	 */
+	private Path decodeReportFile = null;
+
+	/**
+	 * Report of files, which could not be hashed or were slow to decode
+	 */
+	private final DecodeReport decodeReport = new DecodeReport();
+
+	/**
+	 * Content Pre-Hash Flag
+	 */
+	private boolean contentPreHash = false;
+
+	/**
+	 * Number of files, which got the hash of a byte-identical file
+	 */
+	private int identicalFileCount = 0;
+
+	/**
+	 * Number of files, which were found more than once, e.g. in overlapping folders or as hard links, and only hashed once
+	 */
+	private int sharedFileCount = 0;
+
+	/**
+	 * Format of the written hash lists
+	 */
+	private HashListFormat hashListFormat = HashListFormat.TEXT;
+
+	/**
+	 * True if the written hash lists should be compressed
+	 */
+	private boolean compressHashLists = false;
+
 	/**
 	 * Constructor
 	 * 
@@ -41,78 +210,1371 @@ public class HashTask extends ImgCompTaskBase {
 	 * @param progress Progress Observer
 	 */
 	public HashTask(List<ImageHashList> imageHashLists, ProgressObserver progress) {
+		this(imageHashLists, progress, 1);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param imageHashLists Lists of Image Hashes
+	 * @param progress Progress Observer
+	 * @param threadCount Number of threads used for hashing
+	 */
+	public HashTask(List<ImageHashList> imageHashLists, ProgressObserver progress, int threadCount) {
 		super(progress);
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("threadCount must be at least 1: " + threadCount);
+		}
 		this.imageHashLists = imageHashLists;
+		this.threadCount = threadCount;
 	}
 
-	@Override
-	protected void startTask() {
-		int i = 0;
-		for (ImageHashList imageHashList : imageHashLists) {
-			if (stop) {
-				break;
-			}
-			generateHashes(imageHashList);
-			// TODO Output Filename should be configurable in ImageHashList
-			ImageHashUtil.writeHashList(imageHashList, "ImageHashes-" + i + ".txt");
-			i++;
+	/**
+	 * Returns the threadCount
+	 * 
+	 * @return threadCount
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Returns the memoryLimit
+	 * 
+	 * @return memoryLimit
+	 */
+	public long getMemoryLimit() {
+		return memoryLimit;
+	}
+
+	/**
+	 * Sets the memory limit in bytes for images, which are loaded and decoded in parallel. This is only used if more than one thread is used.
+	 * 
+	 * @param memoryLimit Memory Limit in bytes
+	 */
+	public void setMemoryLimit(long memoryLimit) {
+		if (memoryLimit < 1) {
+			throw new IllegalArgumentException("memoryLimit must be at least 1: " + memoryLimit);
 		}
-		progress.progressCompleted();
+		this.memoryLimit = memoryLimit;
 	}
 
 	/**
-	 * Generate Image Hashes
+	 * Returns the hashListFormat
 	 * 
-	 * @param imageHashList Image Hash List
+	 * @return hashListFormat
 	 */
-	public void generateHashes(ImageHashList imageHashList) {
-		String rootPath = imageHashList.getFolder();
-		Path rootFolder = Paths.get(rootPath);
+	public HashListFormat getHashListFormat() {
+		return hashListFormat;
+	}
 
-		if (!Files.exists(rootFolder)) {
-			logger.error("Folder does not exist: {}", rootPath);
-			return;
+	/**
+	 * Sets the hashListFormat
+	 * 
+	 * @param hashListFormat Format of the written hash lists
+	 */
+	public void setHashListFormat(HashListFormat hashListFormat) {
+		this.hashListFormat = hashListFormat;
+	}
+
+	/**
+	 * Returns the compressHashLists
+	 * 
+	 * @return compressHashLists
+	 */
+	public boolean isCompressHashLists() {
+		return compressHashLists;
+	}
+
+	/**
+	 * Sets the compressHashLists
+	 * 
+	 * @param compressHashLists True if the written hash lists should be compressed, false otherwise
+	 */
+	public void setCompressHashLists(boolean compressHashLists) {
+		this.compressHashLists = compressHashLists;
+	}
+
+	/**
+	 * Returns the hashCacheFile
+	 * 
+	 * @return hashCacheFile or null
+	 */
+	public Path getHashCacheFile() {
+		return hashCacheFile;
+	}
+
+	/**
+	 * Sets the cache file for incremental hashing. Hashes of files, which are unchanged since the cache was written, are taken from the cache instead of
+	 * decoding the file again. After hashing, the cache file is updated.
+	 * 
+	 * @param hashCacheFile Cache File or null to hash all files
+	 */
+	public void setHashCacheFile(Path hashCacheFile) {
+		this.hashCacheFile = hashCacheFile;
+	}
+
+	/**
+	 * Returns the number of hashes, which were taken from the cache
+	 * 
+	 * @return Number of reused hashes
+	 */
+	public int getReusedHashCount() {
+		return reusedHashCount;
+	}
+
+	/**
+	 * Returns the number of hashes, which were taken from the journal of an interrupted run. These are included in the reused hashes.
+	 * 
+	 * @return Number of resumed hashes
+	 */
+	public int getResumedHashCount() {
+		return resumedHashCount;
+	}
+
+	/**
+	 * Returns the number of files, which were decoded and hashed
+	 * 
+	 * @return Number of calculated hashes
+	 */
+	public int getCalculatedHashCount() {
+		return calculatedHashCount.get();
+	}
+
+	/**
+	 * Returns the contentPreHash
+	 * 
+	 * @return contentPreHash
+	 */
+	public boolean isContentPreHash() {
+		return contentPreHash;
+	}
+
+	/**
+	 * Sets the content pre-hash flag. If set, the raw content of files with the same size is hashed before decoding. Of byte-identical files only one file is
+	 * decoded and the other files get the same hash.
+	 * 
+	 * @param contentPreHash True if byte-identical files should only be decoded once, false otherwise
+	 */
+	public void setContentPreHash(boolean contentPreHash) {
+		this.contentPreHash = contentPreHash;
+	}
+
+	/**
+	 * Returns the journalFile
+	 * 
+	 * @return journalFile or null
+	 */
+	public Path getJournalFile() {
+		return journalFile;
+	}
+
+	/**
+	 * Sets the journal file. The hashes are appended to the journal while hashing, so that an interrupted run can be resumed. The journal is only deleted
+	 * after all hash lists were written successfully.
+	 * 
+	 * @param journalFile Journal File or null if no journal should be written
+	 */
+	public void setJournalFile(Path journalFile) {
+		this.journalFile = journalFile;
+	}
+
+	/**
+	 * Returns the resume flag
+	 * 
+	 * @return True if hashes from the journal are reused, false otherwise
+	 */
+	public boolean isResume() {
+		return resume;
+	}
+
+	/**
+	 * Sets the resume flag. If set, the journal of an interrupted run is replayed and files, which were hashed before the interruption, are not hashed again.
+	 * New hashes are appended to the journal. Only used if a journal file is set.
+	 * 
+	 * @param resume True if hashes from the journal should be reused, false otherwise
+	 */
+	public void setResume(boolean resume) {
+		this.resume = resume;
+	}
+
+	/**
+	 * Returns the maxPixels
+	 * 
+	 * @return maxPixels
+	 */
+	public long getMaxPixels() {
+		return maxPixels;
+	}
+
+	/**
+	 * Sets the maximum number of pixels of an image. The size of the image is read from the header of the file, so images with more pixels are rejected
+	 * before they are decoded and reported as too large.
+	 * 
+	 * @param maxPixels Maximum number of pixels
+	 */
+	public void setMaxPixels(long maxPixels) {
+		if (maxPixels < 1) {
+			throw new IllegalArgumentException("maxPixels must be at least 1: " + maxPixels);
 		}
+		this.maxPixels = maxPixels;
+	}
 
-		// TODO CASE_INSENSITIVE flag really necessary?, could also be configured in pattern
-		final Pattern filePattern = Pattern.compile(imageHashList.getFilenamePattern(), Pattern.CASE_INSENSITIVE);
-		Predicate<Path> fileFilter = x -> filePattern.matcher(x.getFileName().toString()).matches();
+	/**
+	 * Returns the maxDecodedSize
+	 * 
+	 * @return maxDecodedSize
+	 */
+	public long getMaxDecodedSize() {
+		return maxDecodedSize;
+	}
 
-		generateImageHashes(rootFolder, fileFilter, imageHashList.isRecursive(), imageHashList.getHashes());
+	/**
+	 * Sets the maximum memory needed to decode a single image. The memory is estimated from the header of the file, so images, which need more memory, are
+	 * rejected before they are decoded and reported as too large. Images, which run out of memory while decoding, are reported as well.
+	 * 
+	 * @param maxDecodedSize Maximum memory in bytes
+	 */
+	public void setMaxDecodedSize(long maxDecodedSize) {
+		if (maxDecodedSize < 1) {
+			throw new IllegalArgumentException("maxDecodedSize must be at least 1: " + maxDecodedSize);
+		}
+		this.maxDecodedSize = maxDecodedSize;
 	}
 
 	/**
-	 * Generate Image Hashes
+	 * Returns the decodeTimeout
 	 * 
-	 * @param folder Folder
-	 * @param fileFilter File Filter
-	 * @param recursive True if recursive, false otherwise
-	 * @param hashes List of Hashes
+	 * @return decodeTimeout
 	 */
-	private void generateImageHashes(Path folder, Predicate<Path> fileFilter, boolean recursive, List<Hash> hashes) {
-		List<Path> files;
-		try (@SuppressWarnings("resource")
-		Stream<Path> stream = recursive ? Files.walk(folder) : Files.list(folder)) {
-			files = stream.filter(Files::isRegularFile).filter(fileFilter).toList();
-		} catch (IOException e) {
-			logger.error("Could not list files: {}", folder, e);
-			return;
+	public long getDecodeTimeout() {
+		return decodeTimeout;
+	}
+
+	/**
+	 * Sets the timeout for reading the header and decoding a file. If it takes longer, it is aborted and the file is reported as timed out. If more than one
+	 * thread is used and it does not stop after twice the timeout, the thread is abandoned and replaced by a new thread.
+	 * 
+	 * @param decodeTimeout Timeout in milliseconds or 0 if there is no timeout
+	 */
+	public void setDecodeTimeout(long decodeTimeout) {
+		if (decodeTimeout < 0) {
+			throw new IllegalArgumentException("decodeTimeout must not be negative: " + decodeTimeout);
 		}
+		this.decodeTimeout = decodeTimeout;
+	}
 
-		progress.progressChanged(folder.toAbsolutePath() + " (" + files.size() + "x)");
-		progress.progressModeChanged(false);
-		progress.progressChanged(0, files.size(), 0);
+	/**
+	 * Returns the slowDecodeThreshold
+	 * 
+	 * @return slowDecodeThreshold
+	 */
+	public long getSlowDecodeThreshold() {
+		return slowDecodeThreshold;
+	}
 
-		for (Path file : files) {
-			if (stop) {
-				return;
-			}
+	/**
+	 * Sets the duration from which on decoding of a file is reported as slow
+	 * 
+	 * @param slowDecodeThreshold Duration in milliseconds or 0 if slow files should not be reported
+	 */
+	public void setSlowDecodeThreshold(long slowDecodeThreshold) {
+		if (slowDecodeThreshold < 0) {
+			throw new IllegalArgumentException("slowDecodeThreshold must not be negative: " + slowDecodeThreshold);
+		}
+		this.slowDecodeThreshold = slowDecodeThreshold;
+	}
 
-			String hash = ImageHashUtil.getImageHash(file);
-			if (!hash.isEmpty()) {
-				hashes.add(new Hash(file.toAbsolutePath().toString(), hash));
-			}
-			progress.progressIncreased();
+	/**
+	 * Returns the decodeReportFile
+	 * 
+	 * @return decodeReportFile or null
+	 */
+	public Path getDecodeReportFile() {
+		return decodeReportFile;
+	}
+
+	/**
+	 * Sets the report file for files, which could not be hashed, were too large, timed out or were slow to decode. The report is only written if there are
+	 * such files.
+	 * 
+	 * @param decodeReportFile Report File or null if no report should be written
+	 */
+	public void setDecodeReportFile(Path decodeReportFile) {
+		this.decodeReportFile = decodeReportFile;
+	}
+
+	/**
+	 * Returns the report of files, which could not be hashed or were slow to decode
+	 * 
+	 * @return Decode Report
+	 */
+	public DecodeReport getDecodeReport() {
+		return decodeReport;
+	}
+
+	/**
+	 * Returns the number of files, which got the hash of a byte-identical file
+	 * 
+	 * @return Number of identical files
+	 */
+	public int getIdenticalFileCount() {
+		return identicalFileCount;
+	}
+
+	/**
+	 * Returns the number of files, which were found more than once, e.g. in overlapping folders or as hard links, and only hashed once
+	 * 
+	 * @return Number of shared files
+	 */
+	public int getSharedFileCount() {
+		return sharedFileCount;
+	}
+
+	@Override
+	protected void startTask() {
+		if (hashCacheFile != null) {
+			previousHashCache = HashCache.read(hashCacheFile);
+			updatedHashCache = new HashCache();
+			logger.info("Hash Cache loaded: {} ({} entries)", hashCacheFile, previousHashCache.size());
+		}
+
+		if (journalFile != null) {
+			openJournal();
+		}
+
+		try {
+			generateHashes(imageHashLists);
+		} finally {
+			closeJournal();
+		}
+
+		if (!stop) {
+			boolean allListsWritten = true;
+			for (int i = 0; i < imageHashLists.size(); i++) {
+				// TODO Output Filename should be configurable in ImageHashList
+				String outputFile = "ImageHashes-" + i + "." + hashListFormat.getFileExtension();
+				if (compressHashLists) {
+					outputFile += "." + CompressedHashList.FILE_EXTENSION;
+				}
+				if (!ImageHashUtil.writeHashList(imageHashLists.get(i), outputFile, hashListFormat, compressHashLists)) {
+					allListsWritten = false;
+				}
+			}
+			if (journalFile != null && !allListsWritten) {
+				logger.error("Not all hash lists could be written, the journal is kept, so that hashing can be resumed: {}", journalFile);
+			} else if (journalFile != null) {
+				try {
+					Files.deleteIfExists(journalFile);
+				} catch (IOException e) {
+					logger.error("Could not delete journal: {}", journalFile, e);
+				}
+			}
+		}
+
+		if (hashCacheFile != null) {
+			writeHashCache();
+		}
+		if (decodeReportFile != null) {
+			writeDecodeReport();
+		}
+		logger.info("Hashing done. Reused hashes: {} ({} from journal), Calculated hashes: {}, Hashes of identical files: {}, Files found more than once: {}",
+				reusedHashCount, resumedHashCount, calculatedHashCount.get(), identicalFileCount, sharedFileCount);
+		progress.progressCompleted();
+	}
+
+	/**
+	 * Open the journal. If the task resumes an interrupted run, the journal is replayed first and new hashes are appended to it.
+	 */
+	private void openJournal() {
+		if (resume) {
+			journalHashCache = HashJournal.replay(journalFile);
+			logger.info("Journal replayed: {} ({} entries)", journalFile, journalHashCache.size());
+		}
+		try {
+			journal = new HashJournal(journalFile, resume);
+		} catch (IOException e) {
+			logger.error("Could not open journal, hashing can't be resumed: {}", journalFile, e);
+		}
+	}
+
+	/**
+	 * Close the journal
+	 */
+	private void closeJournal() {
+		if (journal == null) {
+			return;
+		}
+		try {
+			journal.close();
+		} catch (IOException e) {
+			logger.error("Could not close journal: {}", journalFile, e);
+		}
+		journal = null;
+	}
+
+	/**
+	 * Write report of files, which could not be hashed or were slow to decode. If there are no such files, a report of a previous run is deleted.
+	 */
+	private void writeDecodeReport() {
+		try {
+			if (decodeReport.size() > 0) {
+				decodeReport.write(decodeReportFile);
+				logger.info("Decode report written: {} (Failed: {}, Too large: {}, Out of memory: {}, Timed out: {}, Slow: {})", decodeReportFile, decodeReport
+						.count(Problem.FAILED), decodeReport.count(Problem.TOO_LARGE), decodeReport.count(Problem.OUT_OF_MEMORY), decodeReport.count(Problem.TIMEOUT),
+						decodeReport.count(Problem.SLOW));
+			} else {
+				Files.deleteIfExists(decodeReportFile);
+			}
+		} catch (IOException e) {
+			logger.error("Could not write decode report: {}", decodeReportFile, e);
+		}
+	}
+
+	/**
+	 * Write updated hash cache. Entries of files outside the hashed folders are kept. If hashing was stopped, all previous entries are kept, which were not
+	 * updated.
+	 */
+	private void writeHashCache() {
+		List<String> hashedFolders;
+		if (stop) {
+			hashedFolders = List.of();
+		} else {
+			hashedFolders = imageHashLists.stream().map(x -> Paths.get(x.getFolder()).toAbsolutePath().toString() + File.separator).toList();
+		}
+		updatedHashCache.putAllOutsideFolders(previousHashCache, hashedFolders);
+		try {
+			updatedHashCache.write(hashCacheFile);
+		} catch (IOException e) {
+			logger.error("Could not write hash cache: {}", hashCacheFile, e);
+		}
+	}
+
+	/**
+	 * Generate Image Hashes
+	 * 
+	 * @param imageHashList Image Hash List
+	 */
+	public void generateHashes(ImageHashList imageHashList) {
+		generateHashes(List.of(imageHashList));
+	}
+
+	/**
+	 * Generate Image Hashes for multiple Image Hash Lists
+	 * 
+	 * The folders of all lists are walked concurrently and the found files are hashed in one shared pipeline, while the walk is still running, so that hashing
+	 * does not have to wait until all files are listed. Only if content pre-hashing is enabled, the walk is completed first, because all files with the same
+	 * size are needed to find byte-identical files.
+	 * 
+	 * Files, which are found more than once, e.g. because the folder of one list is a subfolder of the folder of another list, are only hashed once, if the
+	 * lists use the same hash settings. Files are identified by their file key or, if the file system does not provide file keys, by their real path.
+	 * 
+	 * @param imageHashLists Image Hash Lists
+	 */
+	public void generateHashes(List<ImageHashList> imageHashLists) {
+		progress.progressModeChanged(false);
+
+		List<ImageHashList> walkedLists = new ArrayList<>();
+		List<HashSettings> settingsByRoot = new ArrayList<>();
+		List<List<FileOccurrence>> occurrencesByRoot;
+		try (ConcurrentFileWalker walker = new ConcurrentFileWalker()) {
+			for (ImageHashList imageHashList : imageHashLists) {
+				String rootPath = imageHashList.getFolder();
+				Path rootFolder = Paths.get(rootPath);
+				if (!Files.exists(rootFolder)) {
+					logger.error("Folder does not exist: {}", rootPath);
+					continue;
+				}
+
+				// TODO CASE_INSENSITIVE flag really necessary?, could also be configured in pattern
+				final Pattern filePattern = Pattern.compile(imageHashList.getFilenamePattern(), Pattern.CASE_INSENSITIVE);
+				Predicate<Path> fileFilter = x -> filePattern.matcher(x.getFileName().toString()).matches();
+
+				walker.addRoot(rootFolder, fileFilter, imageHashList.isRecursive());
+				walkedLists.add(imageHashList);
+				settingsByRoot.add(new HashSettings(imageHashList.getHashType(), imageHashList.getHashAlgorithm(), imageHashList.getHashMode()));
+			}
+
+			walker.start();
+			if (contentPreHash) {
+				occurrencesByRoot = hashFilesWithContentPreHash(walker, settingsByRoot);
+			} else {
+				occurrencesByRoot = hashFoundFiles(walker, settingsByRoot);
+			}
+		}
+
+		if (stop) {
+			return;
+		}
+
+		for (int i = 0; i < walkedLists.size(); i++) {
+			ImageHashList imageHashList = walkedLists.get(i);
+			HashSettings settings = settingsByRoot.get(i);
+			List<FileOccurrence> occurrences = occurrencesByRoot.get(i);
+			// Sort files, so that the hash list is always in the same order
+			occurrences.sort(Comparator.comparing(FileOccurrence::file));
+			for (FileOccurrence occurrence : occurrences) {
+				HashValue hash = occurrence.uniqueFile().getHash();
+				if (hash == null) {
+					continue;
+				}
+				String absoluteFile = occurrence.file().toAbsolutePath().toString();
+				if (updatedHashCache != null) {
+					updatedHashCache.put(absoluteFile, occurrence.attributes(), settings.hashType(), settings.hashAlgorithm(), settings.hashMode(), hash);
+				}
+				imageHashList.getHashes().add(imageHashList.getFolderTable().createHash(absoluteFile, hash));
+			}
+			logger.info("Hashes generated for {}: {}", Paths.get(imageHashList.getFolder()).toAbsolutePath(), imageHashList.getHashes().size());
+		}
+	}
+
+	/**
+	 * Hash the files in the order in which the walker finds them, while the walk is still running. The progress total grows with the found files.
+	 * 
+	 * @param walker Walker, which was started
+	 * @param settingsByRoot Hash Settings by index of the root folder
+	 * @return Found files by index of the root folder in no particular order
+	 */
+	private List<List<FileOccurrence>> hashFoundFiles(ConcurrentFileWalker walker, List<HashSettings> settingsByRoot) {
+		progress.progressChanged("Hashing while searching files...");
+		progress.progressChanged(0, 0, 0);
+
+		List<List<FileOccurrence>> occurrencesByRoot = createOccurrenceLists(settingsByRoot.size());
+		// These are only used by the thread, which takes the files from the walker
+		Map<FileIdentity, UniqueFile> uniqueFiles = new HashMap<>();
+		AtomicInteger skippedCount = new AtomicInteger();
+		Supplier<UniqueFile> files = () -> {
+			FoundFile foundFile;
+			while ((foundFile = walker.next()) != null) {
+				UniqueFile uniqueFile = addFoundFile(foundFile, settingsByRoot, uniqueFiles, occurrencesByRoot);
+				if (uniqueFile != null && !applyCachedHash(uniqueFile)) {
+					return uniqueFile;
+				}
+				skippedCount.incrementAndGet();
+			}
+			return null;
+		};
+
+		hashFiles(files, () -> walker.getFoundFileCount() - skippedCount.get());
+		return occurrencesByRoot;
+	}
+
+	/**
+	 * Hash the files after the walk is completed. Byte-identical files are only decoded once.
+	 * 
+	 * @param walker Walker, which was started
+	 * @param settingsByRoot Hash Settings by index of the root folder
+	 * @return Found files by index of the root folder in no particular order
+	 */
+	private List<List<FileOccurrence>> hashFilesWithContentPreHash(ConcurrentFileWalker walker, List<HashSettings> settingsByRoot) {
+		progress.progressChanged("Searching files...");
+		List<List<FileOccurrence>> occurrencesByRoot = createOccurrenceLists(settingsByRoot.size());
+		Map<FileIdentity, UniqueFile> uniqueFiles = new HashMap<>();
+		List<UniqueFile> filesToHash = new ArrayList<>();
+		FoundFile foundFile;
+		while (!stop && (foundFile = walker.next()) != null) {
+			UniqueFile uniqueFile = addFoundFile(foundFile, settingsByRoot, uniqueFiles, occurrencesByRoot);
+			if (uniqueFile != null) {
+				filesToHash.add(uniqueFile);
+			}
+		}
+		if (stop) {
+			return occurrencesByRoot;
+		}
+
+		filesToHash.removeIf(this::applyCachedHash);
+		// Files are sorted, so that the first file of identical files is always the same
+		filesToHash.sort(Comparator.comparing(UniqueFile::getFile));
+
+		progress.progressChanged("Searching for identical files...");
+		int[] identicalFileIndexes = findIdenticalFiles(filesToHash.stream().map(UniqueFile::getFile).toList());
+		if (stop) {
+			return occurrencesByRoot;
+		}
+
+		// Only files with the same hash settings can get the hash of an identical file
+		List<UniqueFile> filesToDecode = new ArrayList<>();
+		for (int i = 0; i < filesToHash.size(); i++) {
+			UniqueFile identicalFile = filesToHash.get(identicalFileIndexes[i]);
+			if (identicalFileIndexes[i] == i || !identicalFile.getSettings().equals(filesToHash.get(i).getSettings())) {
+				identicalFileIndexes[i] = i;
+				filesToDecode.add(filesToHash.get(i));
+			}
+		}
+		int identicalCount = filesToHash.size() - filesToDecode.size();
+
+		progress.progressChanged(filesToDecode.size() + "x, " + reusedHashCount + "x unchanged, " + identicalCount + "x identical");
+		progress.progressChanged(0, filesToDecode.size(), 0);
+
+		Iterator<UniqueFile> filesToDecodeIterator = filesToDecode.iterator();
+		hashFiles(() -> filesToDecodeIterator.hasNext() ? filesToDecodeIterator.next() : null, filesToDecode::size);
+
+		for (int i = 0; i < filesToHash.size(); i++) {
+			if (identicalFileIndexes[i] != i) {
+				setHash(filesToHash.get(i), filesToHash.get(identicalFileIndexes[i]).getHash());
+			}
+		}
+
+		identicalFileCount += identicalCount;
+		return occurrencesByRoot;
+	}
+
+	/**
+	 * Create empty lists for the found files of each root folder
+	 * 
+	 * @param rootCount Number of root folders
+	 * @return Lists
+	 */
+	private static List<List<FileOccurrence>> createOccurrenceLists(int rootCount) {
+		List<List<FileOccurrence>> occurrencesByRoot = new ArrayList<>(rootCount);
+		for (int i = 0; i < rootCount; i++) {
+			occurrencesByRoot.add(new ArrayList<>());
+		}
+		return occurrencesByRoot;
+	}
+
+	/**
+	 * Add a found file to the found files of its root folder
+	 * 
+	 * @param foundFile Found File
+	 * @param settingsByRoot Hash Settings by index of the root folder
+	 * @param uniqueFiles Unique Files, which were found before
+	 * @param occurrencesByRoot Found files by index of the root folder
+	 * @return Unique File or null if the file was found before with the same hash settings
+	 */
+	private UniqueFile addFoundFile(FoundFile foundFile, List<HashSettings> settingsByRoot, Map<FileIdentity, UniqueFile> uniqueFiles,
+			List<List<FileOccurrence>> occurrencesByRoot) {
+		HashSettings settings = settingsByRoot.get(foundFile.rootIndex());
+		FileIdentity identity = new FileIdentity(settings, getFileKey(foundFile));
+		UniqueFile uniqueFile = uniqueFiles.get(identity);
+		boolean found = uniqueFile != null;
+		if (found) {
+			sharedFileCount++;
+		} else {
+			uniqueFile = new UniqueFile(foundFile.file(), foundFile.attributes(), settings);
+			uniqueFiles.put(identity, uniqueFile);
+		}
+		occurrencesByRoot.get(foundFile.rootIndex()).add(new FileOccurrence(foundFile.file(), foundFile.attributes(), uniqueFile));
+		return found ? null : uniqueFile;
+	}
+
+	/**
+	 * Returns the key, which identifies a file, so that files, which are found under different paths, are only hashed once
+	 * 
+	 * @param foundFile Found File
+	 * @return File Key of the file system or the real path if the file system does not provide file keys
+	 */
+	private static Object getFileKey(FoundFile foundFile) {
+		Object fileKey = foundFile.attributes().fileKey();
+		if (fileKey != null) {
+			return fileKey;
+		}
+		try {
+			return foundFile.file().toRealPath();
+		} catch (IOException e) {
+			return foundFile.file().toAbsolutePath().normalize();
+		}
+	}
+
+	/**
+	 * Set the hash of a file from the hash cache of the previous run or from the journal of an interrupted run
+	 * 
+	 * @param uniqueFile Unique File
+	 * @return True if the hash was taken from the cache or the journal, false if the file is not cached or was modified
+	 */
+	private boolean applyCachedHash(UniqueFile uniqueFile) {
+		HashValue cachedHash = getCachedHash(previousHashCache, uniqueFile);
+		if (cachedHash == null) {
+			cachedHash = getCachedHash(journalHashCache, uniqueFile);
+			if (cachedHash != null) {
+				resumedHashCount++;
+			}
+		}
+		if (cachedHash == null) {
+			return false;
+		}
+		uniqueFile.setHash(cachedHash);
+		reusedHashCount++;
+		return true;
+	}
+
+	/**
+	 * Returns the hash of a file from a cache
+	 * 
+	 * @param hashCache Hash Cache or null
+	 * @param uniqueFile Unique File
+	 * @return Hash or null if the cache is null or the file is not cached or was modified
+	 */
+	private static HashValue getCachedHash(HashCache hashCache, UniqueFile uniqueFile) {
+		if (hashCache == null) {
+			return null;
+		}
+		HashSettings settings = uniqueFile.getSettings();
+		return hashCache.getHash(uniqueFile.getFile().toAbsolutePath().toString(), uniqueFile.getAttributes(), settings.hashType(), settings.hashAlgorithm(), settings
+				.hashMode());
+	}
+
+	/**
+	 * Set the calculated hash of a file and append it to the journal. Only files, for which a hash was calculated, are counted.
+	 * 
+	 * @param uniqueFile Unique File
+	 * @param hash Hash or null if the hash could not be calculated
+	 */
+	private void setCalculatedHash(UniqueFile uniqueFile, HashValue hash) {
+		if (hash != null) {
+			calculatedHashCount.incrementAndGet();
+		}
+		setHash(uniqueFile, hash);
+	}
+
+	/**
+	 * Set the hash of a file and append it to the journal
+	 * 
+	 * @param uniqueFile Unique File
+	 * @param hash Hash or null if the hash could not be calculated
+	 */
+	private void setHash(UniqueFile uniqueFile, HashValue hash) {
+		uniqueFile.setHash(hash);
+		HashJournal currentJournal = journal;
+		if (hash != null && currentJournal != null) {
+			HashSettings settings = uniqueFile.getSettings();
+			currentJournal.append(uniqueFile.getFile().toAbsolutePath().toString(), uniqueFile.getAttributes(), settings.hashType(), settings.hashAlgorithm(), settings
+					.hashMode(), hash);
+		}
+	}
+
+	/**
+	 * Find byte-identical files. Only files with the same size are compared by hashing their content.
+	 * 
+	 * @param files Files
+	 * @return Array containing for each file the index of the first file with identical content. For files without identical files this is the index of the
+	 *         file itself.
+	 */
+	private int[] findIdenticalFiles(List<Path> files) {
+		int[] identicalFileIndexes = new int[files.size()];
+		Map<Long, List<Integer>> indexesBySize = new HashMap<>();
+		for (int i = 0; i < files.size(); i++) {
+			identicalFileIndexes[i] = i;
+			try {
+				indexesBySize.computeIfAbsent(Files.size(files.get(i)), x -> new ArrayList<>()).add(i);
+			} catch (IOException e) {
+				logger.error("Could not read size of file: {}", files.get(i), e);
+			}
+		}
+
+		List<Integer> indexesToCompare = indexesBySize.values().stream().filter(x -> x.size() > 1).flatMap(List::stream).sorted().toList();
+
+		progress.progressChanged(0, indexesToCompare.size(), 0);
+
+		HashValue[] contentHashes = new HashValue[indexesToCompare.size()];
+		AtomicInteger nextIndex = new AtomicInteger();
+		AtomicInteger completedCount = new AtomicInteger();
+		Runnable worker = () -> {
+			FileContentHasher fileContentHasher = new FileContentHasher();
+			int i;
+			while (!stop && (i = nextIndex.getAndIncrement()) < contentHashes.length) {
+				Path file = files.get(indexesToCompare.get(i));
+				try {
+					contentHashes[i] = fileContentHasher.getContentHash(file);
+				} catch (IOException e) {
+					logger.error("Could not hash content of file: {}", file, e);
+				}
+				completedCount.incrementAndGet();
+			}
+		};
+		runThreads(Collections.nCopies(threadCount, worker), completedCount, () -> contentHashes.length);
+
+		// Files are in ascending order, so the first file of identical files is always used
+		Map<HashValue, Integer> firstIndexByContentHash = new HashMap<>();
+		for (int i = 0; i < contentHashes.length; i++) {
+			if (contentHashes[i] != null) {
+				int index = indexesToCompare.get(i);
+				identicalFileIndexes[index] = firstIndexByContentHash.computeIfAbsent(contentHashes[i], x -> index);
+			}
+		}
+		return identicalFileIndexes;
+	}
+
+	/**
+	 * Hash files. The hash of each file is set in the file.
+	 * 
+	 * The header of each image is read first and images with more pixels or a larger estimated decoded size than allowed are not decoded. Reading the header
+	 * and decoding are watched by a {@link DecodeWatchdog}, which aborts them, if they take longer than the timeout.
+	 * 
+	 * @param files Supplier for the files, which returns null after the last file. The supplier is only called by one thread at a time and may block.
+	 * @param fileCount Supplier for the number of files, which can grow while the files are supplied
+	 */
+	private void hashFiles(Supplier<UniqueFile> files, IntSupplier fileCount) {
+		try (DecodeWatchdog watchdog = new DecodeWatchdog(decodeTimeout)) {
+			if (threadCount == 1) {
+				Map<HashSettings, ImageHasher> imageHashers = new HashMap<>();
+				UniqueFile file;
+				for (int i = 0; !stop && (file = files.get()) != null; i++) {
+					ImageHasher imageHasher = imageHashers.computeIfAbsent(file.getSettings(), HashSettings::createImageHasher);
+					Path path = file.getFile();
+					// The task thread can't be replaced, so reading the header and decoding are never abandoned
+					if (checkHeader(file, imageHasher, watchdog, null) >= 0) {
+						decodeFile(file, imageHasher, watchdog, null, () -> imageHasher.getImageHash(path));
+					}
+					progress.progressChanged(0, fileCount.getAsInt(), i + 1);
+				}
+			} else {
+				new HashPipeline(files, watchdog).run(fileCount);
+			}
+		}
+	}
+
+	/**
+	 * Read the header of a file and check the size of the image, while reading is watched. Images, which are too large or whose header could not be read in
+	 * time, are added to the decode report.
+	 * 
+	 * @param uniqueFile Unique File
+	 * @param imageHasher Image Hasher, which reads the header
+	 * @param watchdog Watchdog
+	 * @param abandonHandler Handler, which is called if reading is abandoned, or null if reading should not be abandoned
+	 * @return Estimated memory in bytes needed to decode the image, 0 if the size could not be determined or -1 if the image must not be decoded
+	 */
+	private long checkHeader(UniqueFile uniqueFile, ImageHasher imageHasher, DecodeWatchdog watchdog, Consumer<Decode> abandonHandler) {
+		Path file = uniqueFile.getFile();
+		Consumer<Decode> reportingAbandonHandler = null;
+		if (abandonHandler != null) {
+			reportingAbandonHandler = decode -> {
+				decodeReport.add(file, Problem.TIMEOUT, decode.getDuration(), "Abandoned while reading header");
+				abandonHandler.accept(decode);
+			};
+		}
+
+		Decode decode = watchdog.start(file, imageHasher, reportingAbandonHandler);
+		ImageHeader header;
+		long duration;
+		try {
+			header = imageHasher.readHeader(file);
+		} finally {
+			duration = watchdog.finish(decode);
+		}
+
+		if (decode.isAbandoned()) {
+			return -1;
+		}
+		if (decode.isAborted()) {
+			decodeReport.add(file, Problem.TIMEOUT, duration, "Aborted while reading header");
+			return -1;
+		}
+		if (header == null) {
+			return 0;
+		}
+		if (header.pixelCount() > maxPixels) {
+			logger.error("Image has more than {} pixels and is not decoded: {} ({}x{})", maxPixels, file, header.width(), header.height());
+			decodeReport.add(file, Problem.TOO_LARGE, 0, header.width() + "x" + header.height());
+			return -1;
+		}
+		if (header.estimatedDecodedSize() > maxDecodedSize) {
+			logger.error("Image needs more than {} bytes to be decoded and is not decoded: {} ({} bytes)", maxDecodedSize, file, header.estimatedDecodedSize());
+			decodeReport.add(file, Problem.TOO_LARGE, 0, header.estimatedDecodedSize() + " bytes");
+			return -1;
+		}
+		return Math.max(header.estimatedDecodedSize(), 0);
+	}
+
+	/**
+	 * Decode a file and set the calculated hash, while decoding is watched. Files, which could not be hashed, ran out of memory, timed out or were slow to
+	 * decode, are added to the decode report. The result of a decode, which was aborted or abandoned, is ignored.
+	 * 
+	 * @param uniqueFile Unique File
+	 * @param imageHasher Image Hasher, which decodes the file
+	 * @param watchdog Watchdog
+	 * @param abandonHandler Handler, which is called if decoding is abandoned, or null if decoding should not be abandoned
+	 * @param decoder Decoder, which returns the hash or null if the hash could not be calculated
+	 */
+	private void decodeFile(UniqueFile uniqueFile, ImageHasher imageHasher, DecodeWatchdog watchdog, Consumer<Decode> abandonHandler, Supplier<HashValue> decoder) {
+		Path file = uniqueFile.getFile();
+		Consumer<Decode> reportingAbandonHandler = null;
+		if (abandonHandler != null) {
+			reportingAbandonHandler = decode -> {
+				decodeReport.add(file, Problem.TIMEOUT, decode.getDuration(), "Abandoned");
+				abandonHandler.accept(decode);
+			};
+		}
+
+		Decode decode = watchdog.start(file, imageHasher, reportingAbandonHandler);
+		HashValue hash = null;
+		boolean outOfMemory = false;
+		long duration;
+		try {
+			hash = decoder.get();
+		} catch (OutOfMemoryError e) {
+			// Corrupt images can make image readers allocate huge buffers, even if the size of the image is small
+			outOfMemory = true;
+			logger.error("Out of memory while decoding: {}", file, e);
+		} finally {
+			duration = watchdog.finish(decode);
+		}
+
+		if (decode.isAbandoned()) {
+			return;
+		}
+		if (decode.isAborted()) {
+			decodeReport.add(file, Problem.TIMEOUT, duration, "Aborted");
+			return;
+		}
+		if (outOfMemory) {
+			decodeReport.add(file, Problem.OUT_OF_MEMORY, duration, "");
+			return;
+		}
+		if (hash == null) {
+			if (!stop) {
+				decodeReport.add(file, Problem.FAILED, duration, "Could not decode image");
+			}
+		} else if (slowDecodeThreshold > 0 && duration >= slowDecodeThreshold) {
+			logger.warn("Decoding took {} ms: {}", duration, file);
+			decodeReport.add(file, Problem.SLOW, duration, "");
+		}
+		setCalculatedHash(uniqueFile, hash);
+	}
+
+	/**
+	 * Run each runnable in its own thread and wait until all are finished. While waiting, the progress is updated with the completed count. If the task is
+	 * stopped, the threads are interrupted.
+	 * 
+	 * @param runnables Runnables
+	 * @param completedCount Number of completed items, which is updated by the threads
+	 * @param totalCount Supplier for the total number of items, which can grow while the threads are running
+	 */
+	private void runThreads(List<Runnable> runnables, AtomicInteger completedCount, IntSupplier totalCount) {
+		TaskThreads threads = new TaskThreads();
+		for (Runnable runnable : runnables) {
+			threads.start(thread -> runnable.run());
+		}
+		threads.await(completedCount, totalCount);
+	}
+
+	/**
+	 * Pipeline, which hashes files in parallel.
+	 * 
+	 * The files are processed in a pipeline: A reader thread reads the header of the next file to check the size of the image and to estimate the memory
+	 * needed for decoding, waits until the memory budget admits the file, reads the whole file into memory and puts it into a bounded queue. The worker
+	 * threads take the files from the queue, decode them and calculate the hash. The memory is released after the hash is calculated. The reader thread and
+	 * every worker thread use their own {@link ImageHasher} for each hash settings.
+	 * 
+	 * If a thread is stuck in reading the header or decoding a file and is abandoned by the watchdog, the file is completed, its memory is released and a new
+	 * thread is started, so that a pathological file does not reduce the throughput.
+	 */
+	private final class HashPipeline {
+		/**
+		 * Supplier for the files, which returns null after the last file. The supplier is only called by the reader thread.
+		 */
+		private final Supplier<UniqueFile> files;
+
+		/**
+		 * Watchdog
+		 */
+		private final DecodeWatchdog watchdog;
+
+		/**
+		 * Memory Budget
+		 */
+		private final MemoryBudget memoryBudget = new MemoryBudget(memoryLimit);
+
+		/**
+		 * Queue of files, which were read into memory
+		 */
+		private final BlockingQueue<LoadedFile> queue = new ArrayBlockingQueue<>(threadCount * 2);
+
+		/**
+		 * Number of completed files
+		 */
+		private final AtomicInteger completedCount = new AtomicInteger();
+
+		/**
+		 * Threads
+		 */
+		private final TaskThreads threads = new TaskThreads();
+
+		/**
+		 * Constructor
+		 * 
+		 * @param files Supplier for the files, which returns null after the last file. The supplier may block.
+		 * @param watchdog Watchdog
+		 */
+		private HashPipeline(Supplier<UniqueFile> files, DecodeWatchdog watchdog) {
+			this.files = files;
+			this.watchdog = watchdog;
+		}
+
+		/**
+		 * Run the pipeline and wait until all files are hashed
+		 * 
+		 * @param fileCount Supplier for the number of files, which can grow while the files are supplied
+		 */
+		public void run(IntSupplier fileCount) {
+			threads.start(this::readFiles);
+			for (int i = 0; i < threadCount; i++) {
+				threads.start(this::hashLoadedFiles);
+			}
+			threads.await(completedCount, fileCount);
+		}
+
+		/**
+		 * Reader thread, which reads the files into memory, until all files are read or the thread is abandoned
+		 * 
+		 * @param thread This thread
+		 */
+		private void readFiles(TaskThread thread) {
+			Map<HashSettings, ImageHasher> imageHashers = new HashMap<>();
+			try {
+				UniqueFile uniqueFile;
+				while (!stop && (uniqueFile = files.get()) != null) {
+					Path file = uniqueFile.getFile();
+					ImageHasher imageHasher = imageHashers.computeIfAbsent(uniqueFile.getSettings(), HashSettings::createImageHasher);
+					Consumer<Decode> abandonHandler = decode -> {
+						completedCount.incrementAndGet();
+						// The new thread is started before this thread is abandoned, so that the threads are not finished in between
+						threads.start(this::readFiles);
+						thread.abandon();
+					};
+					long estimatedSize = checkHeader(uniqueFile, imageHasher, watchdog, abandonHandler);
+					if (thread.isAbandoned()) {
+						// The remaining files are read by the new thread
+						return;
+					}
+					if (estimatedSize < 0) {
+						completedCount.incrementAndGet();
+						continue;
+					}
+
+					try {
+						long reservedBytes = Files.size(file) + estimatedSize;
+						memoryBudget.acquire(reservedBytes);
+						byte[] fileContent;
+						try {
+							fileContent = Files.readAllBytes(file);
+						} catch (IOException | OutOfMemoryError e) {
+							memoryBudget.release(reservedBytes);
+							throw e;
+						}
+						queue.put(new LoadedFile(uniqueFile, fileContent, reservedBytes));
+					} catch (IOException | OutOfMemoryError e) {
+						logger.error("Could not read file: {}", file, e);
+						decodeReport.add(file, Problem.FAILED, 0, "Could not read file");
+						completedCount.incrementAndGet();
+					}
+				}
+				for (int i = 0; i < threadCount; i++) {
+					queue.put(LoadedFile.END_OF_FILES);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Worker thread, which takes loaded files from the queue and hashes them, until the end of the files is reached or the thread is abandoned
+		 * 
+		 * @param thread This thread
+		 */
+		private void hashLoadedFiles(TaskThread thread) {
+			Map<HashSettings, ImageHasher> imageHashers = new HashMap<>();
+			try {
+				while (!stop) {
+					LoadedFile loadedFile = queue.take();
+					if (loadedFile == LoadedFile.END_OF_FILES) {
+						break;
+					}
+					UniqueFile uniqueFile = loadedFile.uniqueFile();
+					ImageHasher imageHasher = imageHashers.computeIfAbsent(uniqueFile.getSettings(), HashSettings::createImageHasher);
+
+					// The file is completed only once, either by this thread or by the watchdog, if decoding is abandoned
+					AtomicBoolean fileCompleted = new AtomicBoolean();
+					Runnable completeFile = () -> {
+						if (fileCompleted.compareAndSet(false, true)) {
+							memoryBudget.release(loadedFile.reservedBytes());
+							completedCount.incrementAndGet();
+						}
+					};
+					Consumer<Decode> abandonHandler = decode -> {
+						completeFile.run();
+						// The new thread is started before this thread is abandoned, so that the threads are not finished in between
+						threads.start(this::hashLoadedFiles);
+						thread.abandon();
+					};
+
+					try {
+						decodeFile(uniqueFile, imageHasher, watchdog, abandonHandler, () -> imageHasher.getImageHash(uniqueFile.getFile(), loadedFile.content()));
+					} finally {
+						completeFile.run();
+					}
+					if (thread.isAbandoned()) {
+						// The end of the files marker is taken by the new thread
+						return;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Threads, which are waited for by the task thread. Threads can be started while waiting and a thread, which is stuck, can be abandoned, so that the task
+	 * thread does not wait for it anymore.
+	 */
+	private final class TaskThreads {
+		/**
+		 * Number of the last started thread
+		 */
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		/**
+		 * Executor
+		 */
+		private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+			Thread thread = new Thread(r);
+			thread.setName("Hash-Worker-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		/**
+		 * Phaser, on which the task thread and all running threads, which are not abandoned, are registered
+		 */
+		private final Phaser phaser = new Phaser(1);
+
+		/**
+		 * Start a thread
+		 * 
+		 * @param runnable Runnable, which gets the thread
+		 */
+		public void start(Consumer<TaskThread> runnable) {
+			TaskThread thread = new TaskThread(phaser);
+			phaser.register();
+			try {
+				executor.execute(() -> {
+					try {
+						runnable.accept(thread);
+					} finally {
+						thread.deregister();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// Task was stopped
+				thread.deregister();
+			}
+		}
+
+		/**
+		 * Wait until all threads are finished or abandoned. While waiting, the progress is updated with the completed count. If the task is stopped, the threads
+		 * are interrupted.
+		 * 
+		 * @param completedCount Number of completed items, which is updated by the threads
+		 * @param totalCount Supplier for the total number of items, which can grow while the threads are running
+		 */
+		public void await(AtomicInteger completedCount, IntSupplier totalCount) {
+			try {
+				int phase = phaser.arrive();
+				// Progress is only updated from this thread
+				while (true) {
+					try {
+						phaser.awaitAdvanceInterruptibly(phase, PROGRESS_UPDATE_INTERVAL, TimeUnit.MILLISECONDS);
+						break;
+					} catch (TimeoutException e) {
+						if (stop) {
+							// Wake up threads, which are waiting for the queue or the memory budget
+							executor.shutdownNow();
+						}
+						progress.progressChanged(0, totalCount.getAsInt(), completedCount.get());
+					}
+				}
+				progress.progressChanged(0, totalCount.getAsInt(), completedCount.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				stop = true;
+				logger.error("Interrupted while waiting for hashing threads", e);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Thread, which was started by {@link TaskThreads}
+	 */
+	private static final class TaskThread {
+		/**
+		 * Phaser, on which the thread is registered
+		 */
+		private final Phaser phaser;
+
+		/**
+		 * True if the thread is finished or abandoned
+		 */
+		private final AtomicBoolean deregistered = new AtomicBoolean();
+
+		/**
+		 * Constructor
+		 * 
+		 * @param phaser Phaser, on which the thread is registered
+		 */
+		private TaskThread(Phaser phaser) {
+			this.phaser = phaser;
+		}
+
+		/**
+		 * Abandon the thread, so that the task thread does not wait for it anymore. The thread should return as soon as possible.
+		 */
+		public void abandon() {
+			deregister();
+		}
+
+		/**
+		 * Returns if the thread was abandoned
+		 * 
+		 * @return True if the thread was abandoned, false otherwise
+		 */
+		public boolean isAbandoned() {
+			return deregistered.get();
+		}
+
+		/**
+		 * Deregister the thread from the phaser. This is only done once.
+		 */
+		private void deregister() {
+			if (deregistered.compareAndSet(false, true)) {
+				phaser.arriveAndDeregister();
+			}
+		}
+	}
+
+	/**
+	 * File, which was read into memory and is waiting to be hashed
+	 * 
+	 * @param uniqueFile File
+	 * @param content Content of the file
+	 * @param reservedBytes Bytes reserved in the memory budget for this file
+	 */
+	private record LoadedFile(UniqueFile uniqueFile, byte[] content, long reservedBytes) {
+		/**
+		 * Marker for the end of the files
+		 */
+		private static final LoadedFile END_OF_FILES = new LoadedFile(null, new byte[0], 0);
+	}
+
+	/**
+	 * Hash Settings of an Image Hash List
+	 * 
+	 * @param hashType Hash Type
+	 * @param hashAlgorithm Hash Algorithm
+	 * @param hashMode Hash Mode
+	 */
+	private record HashSettings(HashType hashType, HashAlgorithm hashAlgorithm, HashMode hashMode) {
+		/**
+		 * Create an Image Hasher for these settings
+		 * 
+		 * @return Image Hasher
+		 */
+		private ImageHasher createImageHasher() {
+			return new ImageHasher(hashType, hashAlgorithm, hashMode);
+		}
+	}
+
+	/**
+	 * Identity of a file for the hash settings, with which it is hashed
+	 * 
+	 * @param settings Hash Settings
+	 * @param fileKey File Key or real path of the file
+	 */
+	private record FileIdentity(HashSettings settings, Object fileKey) {
+	}
+
+	/**
+	 * File found in the folder of an Image Hash List
+	 * 
+	 * @param file File
+	 * @param attributes Attributes of the file
+	 * @param uniqueFile Unique File, which holds the hash. The same unique file is used for all paths of the file.
+	 */
+	private record FileOccurrence(Path file, BasicFileAttributes attributes, UniqueFile uniqueFile) {
+	}
+
+	/**
+	 * File, which is only hashed once, even if it was found more than once
+	 */
+	private static final class UniqueFile {
+		/**
+		 * File, under which the file was found first
+		 */
+		private final Path file;
+
+		/**
+		 * Attributes of the file
+		 */
+		private final BasicFileAttributes attributes;
+
+		/**
+		 * Hash Settings
+		 */
+		private final HashSettings settings;
+
+		/**
+		 * Hash or null if the file is not hashed yet or the hash could not be calculated
+		 */
+		private HashValue hash = null;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param file File
+		 * @param attributes Attributes of the file
+		 * @param settings Hash Settings
+		 */
+		private UniqueFile(Path file, BasicFileAttributes attributes, HashSettings settings) {
+			this.file = file;
+			this.attributes = attributes;
+			this.settings = settings;
+		}
+
+		/**
+		 * Returns the file
+		 * 
+		 * @return file
+		 */
+		public Path getFile() {
+			return file;
+		}
+
+		/**
+		 * Returns the attributes
+		 * 
+		 * @return attributes
+		 */
+		public BasicFileAttributes getAttributes() {
+			return attributes;
+		}
+
+		/**
+		 * Returns the settings
+		 * 
+		 * @return settings
+		 */
+		public HashSettings getSettings() {
+			return settings;
+		}
+
+		/**
+		 * Returns the hash
+		 * 
+		 * @return hash or null
+		 */
+		public HashValue getHash() {
+			return hash;
+		}
+
+		/**
+		 * Sets the hash
+		 * 
+		 * @param hash Hash
+		 */
+		public void setHash(HashValue hash) {
+			this.hash = hash;
 		}
 	}
 }
@@ -0,0 +1,88 @@
+package ch.supertomcat.imgcomp.hasher;
+
+/**
+ * Hash Type
+ */
+public enum HashType {
+	/**
+	 * Exact <BR>
+	 * Hash of the uncompressed image data, calculated with the hash algorithm and hash mode of the hash list. Only images with exactly the same image data
+	 * have the same hash. Hash lists without a hash type contain exact hashes.
+	 */
+	EXACT("exact", false),
+
+	/**
+	 * Average Hash <BR>
+	 * 64 bit perceptual hash. A bit is set if the brightness of the pixel of the image scaled down to 8x8 pixels is greater than the average brightness.
+	 */
+	AVERAGE("ahash", true),
+
+	/**
+	 * Difference Hash <BR>
+	 * 64 bit perceptual hash. A bit is set if the brightness of the pixel of the image scaled down to 9x8 pixels is less than the brightness of the pixel to
+	 * the right.
+	 */
+	DIFFERENCE("dhash", true),
+
+	/**
+	 * Perceptual Hash <BR>
+	 * 64 bit perceptual hash. A bit is set if the coefficient of the lowest 8x8 frequencies of the discrete cosine transform of the image scaled down to
+	 * 32x32 pixels is greater than the median of the coefficients.
+	 */
+	PERCEPTUAL("phash", true);
+
+	/**
+	 * Command Line Name
+	 */
+	private final String commandLineName;
+
+	/**
+	 * True if perceptual, false otherwise
+	 */
+	private final boolean perceptual;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param commandLineName Command Line Name
+	 * @param perceptual True if perceptual, false otherwise
+	 */
+	private HashType(String commandLineName, boolean perceptual) {
+		this.commandLineName = commandLineName;
+		this.perceptual = perceptual;
+	}
+
+	/**
+	 * Returns the commandLineName
+	 * 
+	 * @return commandLineName
+	 */
+	public String getCommandLineName() {
+		return commandLineName;
+	}
+
+	/**
+	 * Returns the perceptual
+	 * 
+	 * @return True if this is a perceptual hash, which is calculated from a scaled down grayscale image and is independent of hash algorithm and hash mode,
+	 *         false otherwise
+	 */
+	public boolean isPerceptual() {
+		return perceptual;
+	}
+
+	/**
+	 * Get Hash Type by Command Line Name
+	 * 
+	 * @param name Command Line Name
+	 * @return Hash Type or null
+	 */
+	public static HashType getByCommandLineName(String name) {
+		for (HashType hashType : HashType.values()) {
+			if (hashType.getCommandLineName().equals(name)) {
+				return hashType;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,235 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Binary hash value. The first 16 bytes are stored as two long values, so that 128 bit hashes like MD5 need no array. Longer hashes like SHA-256 store the
+ * remaining bytes in an additional array.
+ * 
+ * Hex Strings are only used for reading and writing text files.
+ */
+public final class HashValue implements Comparable<HashValue> {
+	/**
+	 * Hex Format
+	 */
+	private static final HexFormat HEX_FORMAT = HexFormat.of().withUpperCase();
+
+	/**
+	 * Empty Array
+	 */
+	private static final long[] NO_REMAINING_WORDS = new long[0];
+
+	/**
+	 * Length in bytes
+	 */
+	private final int length;
+
+	/**
+	 * Bytes 0 to 7 in big-endian order
+	 */
+	private final long high;
+
+	/**
+	 * Bytes 8 to 15 in big-endian order
+	 */
+	private final long low;
+
+	/**
+	 * Bytes 16 and following in big-endian order
+	 */
+	private final long[] remaining;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param length Length in bytes
+	 * @param high Bytes 0 to 7 in big-endian order
+	 * @param low Bytes 8 to 15 in big-endian order
+	 * @param remaining Bytes 16 and following in big-endian order
+	 */
+	private HashValue(int length, long high, long low, long[] remaining) {
+		this.length = length;
+		this.high = high;
+		this.low = low;
+		this.remaining = remaining;
+	}
+
+	/**
+	 * Create hash value from bytes
+	 * 
+	 * @param bytes Bytes
+	 * @return Hash Value
+	 * @throws IllegalArgumentException if bytes is empty
+	 */
+	public static HashValue fromBytes(byte[] bytes) {
+		return fromBytes(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Create hash value from a part of a byte array
+	 * 
+	 * @param bytes Bytes
+	 * @param offset Offset of the hash in the array
+	 * @param length Length of the hash in bytes
+	 * @return Hash Value
+	 * @throws IllegalArgumentException if length is 0
+	 */
+	public static HashValue fromBytes(byte[] bytes, int offset, int length) {
+		if (length == 0) {
+			throw new IllegalArgumentException("Hash is empty");
+		}
+		int end = offset + length;
+		long high = readWord(bytes, offset, end);
+		long low = readWord(bytes, offset + 8, end);
+		long[] remaining = NO_REMAINING_WORDS;
+		if (length > 16) {
+			remaining = new long[(length - 16 + 7) / 8];
+			for (int i = 0; i < remaining.length; i++) {
+				remaining[i] = readWord(bytes, offset + 16 + i * 8, end);
+			}
+		}
+		return new HashValue(length, high, low, remaining);
+	}
+
+	/**
+	 * Create 64 bit hash value
+	 * 
+	 * @param value Value
+	 * @return Hash Value
+	 */
+	public static HashValue fromLong(long value) {
+		return new HashValue(Long.BYTES, value, 0, NO_REMAINING_WORDS);
+	}
+
+	/**
+	 * Create hash value from a hex String
+	 * 
+	 * @param hex Hex String
+	 * @return Hash Value
+	 * @throws IllegalArgumentException if hex is empty or not a valid hex String
+	 */
+	public static HashValue fromHexString(String hex) {
+		return fromBytes(HEX_FORMAT.parseHex(hex));
+	}
+
+	/**
+	 * Read up to 8 bytes as big-endian long. Missing bytes are 0.
+	 * 
+	 * @param bytes Bytes
+	 * @param offset Offset
+	 * @param end End of the hash in the array (exclusive)
+	 * @return Value
+	 */
+	private static long readWord(byte[] bytes, int offset, int end) {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			int index = offset + i;
+			value = (value << 8) | (index < end ? bytes[index] & 0xFFL : 0);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the length in bytes
+	 * 
+	 * @return Length in bytes
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns bytes 0 to 7 in big-endian order
+	 * 
+	 * @return High
+	 */
+	public long getHigh() {
+		return high;
+	}
+
+	/**
+	 * Returns bytes 8 to 15 in big-endian order
+	 * 
+	 * @return Low
+	 */
+	public long getLow() {
+		return low;
+	}
+
+	/**
+	 * Returns the bytes
+	 * 
+	 * @return Bytes
+	 */
+	public byte[] toBytes() {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			long word;
+			if (i < 8) {
+				word = high;
+			} else if (i < 16) {
+				word = low;
+			} else {
+				word = remaining[(i - 16) / 8];
+			}
+			bytes[i] = (byte)(word >>> (56 - (i % 8) * 8));
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the uppercase hex String
+	 * 
+	 * @return Hex String
+	 */
+	public String toHexString() {
+		return HEX_FORMAT.formatHex(toBytes());
+	}
+
+	@Override
+	public int compareTo(HashValue other) {
+		int result = Long.compareUnsigned(high, other.high);
+		if (result != 0) {
+			return result;
+		}
+		result = Long.compareUnsigned(low, other.low);
+		if (result != 0) {
+			return result;
+		}
+		for (int i = 0; i < remaining.length && i < other.remaining.length; i++) {
+			result = Long.compareUnsigned(remaining[i], other.remaining[i]);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return Integer.compare(length, other.length);
+	}
+
+	@Override
+	public int hashCode() {
+		// Hashes are already evenly distributed, so no further mixing is needed
+		return Long.hashCode(high ^ low);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof HashValue other)) {
+			return false;
+		}
+		return high == other.high && low == other.low && length == other.length && Arrays.equals(remaining, other.remaining);
+	}
+
+	/**
+	 * Returns the uppercase hex String
+	 * 
+	 * @return Hex String
+	 */
+	@Override
+	public String toString() {
+		return toHexString();
+	}
+}
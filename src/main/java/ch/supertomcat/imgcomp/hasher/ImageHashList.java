@@ -27,6 +27,26 @@ public class ImageHashList {
 	 */
 	private boolean recursive = false;
 
+	/**
+	 * Hash Type
+	 */
+	private final HashType hashType;
+
+	/**
+	 * Hash Algorithm
+	 */
+	private final HashAlgorithm hashAlgorithm;
+
+	/**
+	 * Hash Mode
+	 */
+	private final HashMode hashMode;
+
+	/**
+	 * Dictionary of the folders of the hashes
+	 */
+	private final FolderTable folderTable = new FolderTable();
+
 	/**
 	 * Constructor
 	 * 
@@ -35,9 +55,26 @@ public class ImageHashList {
 	 * @param recursive True if recursive, false otherwise
 	 */
 	public ImageHashList(String folder, String filenamePattern, boolean recursive) {
+		this(folder, filenamePattern, recursive, HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param folder Folder
+	 * @param filenamePattern Filename Pattern
+	 * @param recursive True if recursive, false otherwise
+	 * @param hashType Hash Type
+	 * @param hashAlgorithm Hash Algorithm
+	 * @param hashMode Hash Mode
+	 */
+	public ImageHashList(String folder, String filenamePattern, boolean recursive, HashType hashType, HashAlgorithm hashAlgorithm, HashMode hashMode) {
 		this.folder = folder;
 		this.filenamePattern = filenamePattern;
 		this.recursive = recursive;
+		this.hashType = hashType;
+		this.hashAlgorithm = hashAlgorithm;
+		this.hashMode = hashMode;
 	}
 
 	/**
@@ -49,10 +86,28 @@ public class ImageHashList {
 	 * @param recursive True if recursive, false otherwise
 	 */
 	public ImageHashList(List<Hash> hashes, String folder, String filenamePattern, boolean recursive) {
+		this(hashes, folder, filenamePattern, recursive, HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param hashes Hashes
+	 * @param folder Folder
+	 * @param filenamePattern Filename Pattern
+	 * @param recursive True if recursive, false otherwise
+	 * @param hashType Hash Type
+	 * @param hashAlgorithm Hash Algorithm
+	 * @param hashMode Hash Mode
+	 */
+	public ImageHashList(List<Hash> hashes, String folder, String filenamePattern, boolean recursive, HashType hashType, HashAlgorithm hashAlgorithm, HashMode hashMode) {
 		this.hashes = hashes;
 		this.folder = folder;
 		this.filenamePattern = filenamePattern;
 		this.recursive = recursive;
+		this.hashType = hashType;
+		this.hashAlgorithm = hashAlgorithm;
+		this.hashMode = hashMode;
 	}
 
 	/**
@@ -73,6 +128,15 @@ public class ImageHashList {
 		return hashes;
 	}
 
+	/**
+	 * Returns the folderTable. Hashes, which are added to this list, should be created by the folder table, so that they share the folder Strings.
+	 * 
+	 * @return folderTable
+	 */
+	public FolderTable getFolderTable() {
+		return folderTable;
+	}
+
 	/**
 	 * Returns the filenamePattern
 	 * 
@@ -90,4 +154,44 @@ public class ImageHashList {
 	public boolean isRecursive() {
 		return recursive;
 	}
+
+	/**
+	 * Returns the hashType
+	 * 
+	 * @return hashType
+	 */
+	public HashType getHashType() {
+		return hashType;
+	}
+
+	/**
+	 * Returns the hashAlgorithm
+	 * 
+	 * @return hashAlgorithm
+	 */
+	public HashAlgorithm getHashAlgorithm() {
+		return hashAlgorithm;
+	}
+
+	/**
+	 * Returns the hashMode
+	 * 
+	 * @return hashMode
+	 */
+	public HashMode getHashMode() {
+		return hashMode;
+	}
+
+	/**
+	 * Check if the hashes of this list can be compared with the hashes of the other list
+	 * 
+	 * @param other Other Image Hash List
+	 * @return True if both lists were created with the same hash type and for exact hashes also with the same hash algorithm and hash mode, false otherwise
+	 */
+	public boolean isCompatible(ImageHashList other) {
+		if (hashType != other.hashType) {
+			return false;
+		}
+		return hashType.isPerceptual() || (hashAlgorithm == other.hashAlgorithm && hashMode == other.hashMode);
+	}
 }
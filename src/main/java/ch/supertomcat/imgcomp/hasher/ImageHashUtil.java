@@ -1,33 +1,26 @@
 package ch.supertomcat.imgcomp.hasher;
 
 import java.awt.image.BufferedImage;
-import java.awt.image.DataBuffer;
-import java.awt.image.DataBufferByte;
-import java.awt.image.DataBufferDouble;
-import java.awt.image.DataBufferFloat;
-import java.awt.image.DataBufferInt;
-import java.awt.image.DataBufferShort;
-import java.awt.image.DataBufferUShort;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.function.Function;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
-
-import javax.imageio.ImageIO;
+import java.util.zip.CRC32;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,17 +39,91 @@ public final class ImageHashUtil {
 	 */
 	private static final Pattern LINE_SPLIT_PATTERN = Pattern.compile("\t");
 
-	private static MessageDigest hashAlgorithm;
+	/**
+	 * Prefix of optional header lines, which follow the folder, filename pattern and recursive lines. Hash lists without these lines contain exact hashes
+	 * created with MD5 in compatible mode.
+	 */
+	static final String HEADER_OPTION_PREFIX = "#";
+
+	/**
+	 * Header Option for the hash algorithm
+	 */
+	private static final String HEADER_OPTION_ALGORITHM = "algorithm";
+
+	/**
+	 * Header Option for the hash mode
+	 */
+	private static final String HEADER_OPTION_HASH_MODE = "hashMode";
+
+	/**
+	 * Header Option for the hash type
+	 */
+	private static final String HEADER_OPTION_HASH_TYPE = "hashType";
+
+	/**
+	 * Header Option, which tells that the hash list ends with the trailer options for the count and the checksum of the hash lines. Hash lists without this
+	 * option are not validated.
+	 */
+	static final String HEADER_OPTION_TRAILER = "trailer";
+
+	/**
+	 * Trailer Option for the count of hash lines
+	 */
+	static final String TRAILER_OPTION_COUNT = "count";
+
+	/**
+	 * Trailer Option for the CRC32 checksum of the hash lines including the line breaks
+	 */
+	static final String TRAILER_OPTION_CHECKSUM = "crc32";
+
+	/**
+	 * Size of the write buffer for hash lists in bytes
+	 */
+	private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * Buffer size for reading hash lists
+	 */
+	private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * Width and height of the scaled down image for the average hash
+	 */
+	private static final int AVERAGE_HASH_SIZE = 8;
+
+	/**
+	 * Height of the scaled down image for the difference hash. The width is one pixel more.
+	 */
+	private static final int DIFFERENCE_HASH_SIZE = 8;
+
+	/**
+	 * Width and height of the scaled down image for the perceptual hash
+	 */
+	private static final int PERCEPTUAL_HASH_IMAGE_SIZE = 32;
+
+	/**
+	 * Number of the lowest frequencies in each direction, which are used for the perceptual hash
+	 */
+	private static final int PERCEPTUAL_HASH_SIZE = 8;
+
+	/**
+	 * Cosine values for the discrete cosine transform of the perceptual hash. Index is [frequency][pixel].
+	 */
+	private static final double[][] PERCEPTUAL_HASH_COSINES = new double[PERCEPTUAL_HASH_SIZE][PERCEPTUAL_HASH_IMAGE_SIZE];
 
 	static {
-		// Hash-Algorithmus Instanz
-		try {
-			hashAlgorithm = MessageDigest.getInstance("MD5");
-		} catch (NoSuchAlgorithmException e1) {
-			logger.error(e1.getMessage(), e1);
+		for (int u = 0; u < PERCEPTUAL_HASH_SIZE; u++) {
+			for (int x = 0; x < PERCEPTUAL_HASH_IMAGE_SIZE; x++) {
+				PERCEPTUAL_HASH_COSINES[u][x] = Math.cos((2 * x + 1) * u * Math.PI / (2 * PERCEPTUAL_HASH_IMAGE_SIZE));
+			}
 		}
 	}
 
+	/**
+	 * Image Hasher for each thread
+	 */
+	private static final ThreadLocal<ImageHasher> IMAGE_HASHER = ThreadLocal.withInitial(ImageHasher::new);
+
 	/**
 	 * Constructor
 	 */
@@ -67,124 +134,285 @@ public final class ImageHashUtil {
 	 * Calculates the hash of the uncompressed image data
 	 * 
 	 * @param f
+	 * @return Hash or null if the hash could not be calculated
+	 */
+	public static HashValue getImageHash(Path f) {
+		return IMAGE_HASHER.get().getImageHash(f);
+	}
+
+	/**
+	 * Calculates a 64 bit perceptual hash of the image. The image should already be small, for example by subsampling it while decoding, because every pixel
+	 * is read.
+	 * 
+	 * @param img Image
+	 * @param hashType Hash Type
 	 * @return Hash
+	 * @throws IllegalArgumentException if hashType is not a perceptual hash type
 	 */
-	public static synchronized String getImageHash(Path f) {
-		try {
-			BufferedImage img = ImageIO.read(f.toFile());
-			if (img == null) {
-				logger.error("{} is not an Image", f.toAbsolutePath());
-				return "";
-			} else {
-				// Calculate hash of raw image data, without any file headers
-				byte[] data = null;
-
-				DataBuffer dataBuffer = img.getData().getDataBuffer();
-				if (dataBuffer instanceof DataBufferByte dataBufferByte) {
-					data = dataBufferByte.getData();
-				} else if (dataBuffer instanceof DataBufferDouble dataBufferDouble) {
-					double[] doubleData = dataBufferDouble.getData();
-					Function<ByteBuffer, Void> putValuesFunction = buffer -> {
-						for (double value : doubleData) {
-							buffer.putDouble(value);
-						}
-						return null;
-					};
-					data = converToByteArray(doubleData.length, 8, putValuesFunction);
-				} else if (dataBuffer instanceof DataBufferFloat dataBufferFloat) {
-					float[] floatData = dataBufferFloat.getData();
-					Function<ByteBuffer, Void> putValuesFunction = buffer -> {
-						for (float value : floatData) {
-							buffer.putFloat(value);
-						}
-						return null;
-					};
-					data = converToByteArray(floatData.length, 4, putValuesFunction);
-				} else if (dataBuffer instanceof DataBufferInt dataBufferInt) {
-					int[] intData = dataBufferInt.getData();
-					Function<ByteBuffer, Void> putValuesFunction = buffer -> {
-						for (int value : intData) {
-							buffer.putInt(value);
-						}
-						return null;
-					};
-					data = converToByteArray(intData.length, 4, putValuesFunction);
-				} else if (dataBuffer instanceof DataBufferShort dataBufferShort) {
-					short[] shortData = dataBufferShort.getData();
-					Function<ByteBuffer, Void> putValuesFunction = buffer -> {
-						for (short value : shortData) {
-							buffer.putShort(value);
-						}
-						return null;
-					};
-					data = converToByteArray(shortData.length, 2, putValuesFunction);
-				} else if (dataBuffer instanceof DataBufferUShort dataBufferUShort) {
-					short[] shortData = dataBufferUShort.getData();
-					Function<ByteBuffer, Void> putValuesFunction = buffer -> {
-						for (short value : shortData) {
-							buffer.putShort(value);
-						}
-						return null;
-					};
-					data = converToByteArray(shortData.length, 2, putValuesFunction);
-				}
+	public static HashValue getPerceptualHash(BufferedImage img, HashType hashType) {
+		switch (hashType) {
+			case AVERAGE:
+				return getAverageHash(img);
+			case DIFFERENCE:
+				return getDifferenceHash(img);
+			case PERCEPTUAL:
+				return getPerceptualHash(img);
+			case EXACT:
+			default:
+				throw new IllegalArgumentException("Hash type is not perceptual: " + hashType);
+		}
+	}
 
-				if (data == null) {
-					return "";
-				}
+	/**
+	 * Calculates the average hash
+	 * 
+	 * @param img Image
+	 * @return Hash
+	 */
+	private static HashValue getAverageHash(BufferedImage img) {
+		double[] pixels = scaleToGrayscale(img, AVERAGE_HASH_SIZE, AVERAGE_HASH_SIZE);
+		double average = 0;
+		for (double pixel : pixels) {
+			average += pixel;
+		}
+		average /= pixels.length;
+
+		long hash = 0;
+		for (double pixel : pixels) {
+			hash = (hash << 1) | (pixel > average ? 1 : 0);
+		}
+		return HashValue.fromLong(hash);
+	}
+
+	/**
+	 * Calculates the difference hash
+	 * 
+	 * @param img Image
+	 * @return Hash
+	 */
+	private static HashValue getDifferenceHash(BufferedImage img) {
+		int width = DIFFERENCE_HASH_SIZE + 1;
+		double[] pixels = scaleToGrayscale(img, width, DIFFERENCE_HASH_SIZE);
+		long hash = 0;
+		for (int y = 0; y < DIFFERENCE_HASH_SIZE; y++) {
+			for (int x = 0; x < DIFFERENCE_HASH_SIZE; x++) {
+				hash = (hash << 1) | (pixels[y * width + x] < pixels[y * width + x + 1] ? 1 : 0);
+			}
+		}
+		return HashValue.fromLong(hash);
+	}
 
-				hashAlgorithm.update(data, 0, data.length);
-				byte[] digest = hashAlgorithm.digest();
+	/**
+	 * Calculates the perceptual hash
+	 * 
+	 * @param img Image
+	 * @return Hash
+	 */
+	private static HashValue getPerceptualHash(BufferedImage img) {
+		double[] pixels = scaleToGrayscale(img, PERCEPTUAL_HASH_IMAGE_SIZE, PERCEPTUAL_HASH_IMAGE_SIZE);
 
-				StringBuilder sb = new StringBuilder();
-				for (byte b : digest) {
-					sb.append(toHexString(b));
+		// Discrete cosine transform of the rows and then of the columns, but only for the lowest frequencies
+		double[] rowCoefficients = new double[PERCEPTUAL_HASH_IMAGE_SIZE * PERCEPTUAL_HASH_SIZE];
+		for (int y = 0; y < PERCEPTUAL_HASH_IMAGE_SIZE; y++) {
+			for (int u = 0; u < PERCEPTUAL_HASH_SIZE; u++) {
+				double sum = 0;
+				for (int x = 0; x < PERCEPTUAL_HASH_IMAGE_SIZE; x++) {
+					sum += pixels[y * PERCEPTUAL_HASH_IMAGE_SIZE + x] * PERCEPTUAL_HASH_COSINES[u][x];
+				}
+				rowCoefficients[y * PERCEPTUAL_HASH_SIZE + u] = sum;
+			}
+		}
+		double[] coefficients = new double[PERCEPTUAL_HASH_SIZE * PERCEPTUAL_HASH_SIZE];
+		for (int v = 0; v < PERCEPTUAL_HASH_SIZE; v++) {
+			for (int u = 0; u < PERCEPTUAL_HASH_SIZE; u++) {
+				double sum = 0;
+				for (int y = 0; y < PERCEPTUAL_HASH_IMAGE_SIZE; y++) {
+					sum += rowCoefficients[y * PERCEPTUAL_HASH_SIZE + u] * PERCEPTUAL_HASH_COSINES[v][y];
 				}
-				return sb.toString();
+				coefficients[v * PERCEPTUAL_HASH_SIZE + u] = sum;
 			}
-		} catch (Exception e) {
-			logger.error("Could not generate hash for file: {}", f, e);
-			return "";
 		}
+
+		// The first coefficient is the average brightness, which would distort the median
+		double[] sortedCoefficients = Arrays.copyOfRange(coefficients, 1, coefficients.length);
+		Arrays.sort(sortedCoefficients);
+		double median = sortedCoefficients[sortedCoefficients.length / 2];
+
+		long hash = 0;
+		for (double coefficient : coefficients) {
+			hash = (hash << 1) | (coefficient > median ? 1 : 0);
+		}
+		return HashValue.fromLong(hash);
 	}
 
 	/**
-	 * Convert int, float and so no arrays to byte array
+	 * Scale the image down to a grayscale image. Every pixel of the target image is the average brightness of the pixels of the image it covers.
 	 * 
-	 * @param <T> Type
-	 * @param arrayLength Length of the array
-	 * @param valueByteSize Size of bytes of a single value
-	 * @param putValuesFunction Function to put values into ByteBuffer
-	 * @return Byte Array
+	 * @param img Image
+	 * @param width Width of the target image
+	 * @param height Height of the target image
+	 * @return Brightness of the pixels of the target image, row by row
 	 */
-	private static <T> byte[] converToByteArray(int arrayLength, int valueByteSize, Function<ByteBuffer, Void> putValuesFunction) {
-		ByteBuffer buffer = ByteBuffer.allocate(valueByteSize * arrayLength);
-		buffer.order(ByteOrder.BIG_ENDIAN);
-		putValuesFunction.apply(buffer);
-		return buffer.array();
+	private static double[] scaleToGrayscale(BufferedImage img, int width, int height) {
+		int imgWidth = img.getWidth();
+		int imgHeight = img.getHeight();
+		double[] sums = new double[width * height];
+		int[] counts = new int[width * height];
+		int[] row = new int[imgWidth];
+		for (int y = 0; y < imgHeight; y++) {
+			img.getRGB(0, y, imgWidth, 1, row, 0, imgWidth);
+			int targetRowOffset = (int)((long)y * height / imgHeight) * width;
+			for (int x = 0; x < imgWidth; x++) {
+				int target = targetRowOffset + (int)((long)x * width / imgWidth);
+				sums[target] += getBrightness(row[x]);
+				counts[target]++;
+			}
+		}
+
+		for (int i = 0; i < sums.length; i++) {
+			if (counts[i] > 0) {
+				sums[i] /= counts[i];
+			} else {
+				// Image is smaller than the target image, so use the pixel, which covers this pixel
+				int x = i % width;
+				int y = i / width;
+				sums[i] = getBrightness(img.getRGB(x * imgWidth / width, y * imgHeight / height));
+			}
+		}
+		return sums;
 	}
 
-	private static String toHexString(byte b) {
-		int value = (b & 0x7F) + (b < 0 ? 128 : 0);
-		String retval = (value < 16 ? "0" : "");
-		retval += Integer.toHexString(value).toUpperCase();
-		return retval;
+	/**
+	 * Returns the brightness of the pixel
+	 * 
+	 * @param rgb RGB value of the pixel
+	 * @return Brightness (0 - 255)
+	 */
+	private static double getBrightness(int rgb) {
+		return 0.299 * ((rgb >> 16) & 0xFF) + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF);
 	}
 
 	/**
-	 * Read Hash List from File
-	 * TODO Maybe throw exception
+	 * Read Hash List from File. The format is detected automatically. Uncompressed text hash lists are mapped into memory and parsed in parallel, the blocks
+	 * of compressed hash lists are decompressed in parallel.
 	 * 
 	 * @param inputFile Input File
 	 * @return Hashlist
+	 * @throws IllegalArgumentException if the hash list could not be read or is invalid
 	 */
 	public static ImageHashList readHashList(String inputFile) {
+		Path file = Paths.get(inputFile);
+		try {
+			if (CompressedHashList.isCompressedHashList(file) || BinaryHashList.isBinaryHashList(file)) {
+				List<Hash> hashes = new ArrayList<>();
+				ImageHashList imageHashList = readHashList(inputFile, hashes::add, false);
+				imageHashList.getHashes().addAll(hashes);
+				return imageHashList;
+			}
+			return MappedTextHashListReader.read(file);
+		} catch (IOException e) {
+			logger.error(e.getMessage(), e);
+			throw new IllegalArgumentException("Could not read Hash List: '" + inputFile + "'", e);
+		}
+	}
+
+	/**
+	 * Read multiple Hash Lists from Files concurrently. Text hash lists are additionally parsed in parallel chunks.
+	 * 
+	 * @param inputFiles Input Files
+	 * @return Hashlists in the order of the input files
+	 */
+	public static List<ImageHashList> readHashLists(List<String> inputFiles) {
+		return inputFiles.parallelStream().map(ImageHashUtil::readHashList).toList();
+	}
+
+	/**
+	 * Read Hash List from File without keeping the hashes in memory
+	 * 
+	 * @param inputFile Input File
+	 * @param hashConsumer Consumer, which gets each hash in the order of the file
+	 * @return Hashlist without hashes
+	 */
+	public static ImageHashList readHashList(String inputFile, Consumer<Hash> hashConsumer) {
+		return readHashList(inputFile, hashConsumer, false);
+	}
+
+	/**
+	 * Read only the header of a Hash List from File
+	 * 
+	 * @param inputFile Input File
+	 * @return Hashlist without hashes
+	 */
+	public static ImageHashList readHashListHeader(String inputFile) {
+		return readHashList(inputFile, x -> {
+		}, true);
+	}
+
+	/**
+	 * Read Hash List from File
+	 * 
+	 * @param inputFile Input File
+	 * @param hashConsumer Consumer, which gets each hash in the order of the file
+	 * @param headerOnly True if reading should stop after the header, false otherwise
+	 * @return Hashlist without hashes
+	 */
+	private static ImageHashList readHashList(String inputFile, Consumer<Hash> hashConsumer, boolean headerOnly) {
+		try (InputStream in = openHashList(Paths.get(inputFile))) {
+			if (BinaryHashList.isBinaryHashList(in)) {
+				return BinaryHashList.read(in, inputFile, hashConsumer, headerOnly);
+			}
+			return readTextHashList(in, inputFile, hashConsumer, headerOnly);
+		} catch (IOException e) {
+			logger.error(e.getMessage(), e);
+			throw new IllegalArgumentException("Could not read Hash List: '" + inputFile + "'", e);
+		}
+	}
+
+	/**
+	 * Open a Hash List for reading. If the hash list is compressed, the returned stream decompresses it.
+	 * 
+	 * @param file File
+	 * @return Buffered InputStream, which supports mark and reset
+	 * @throws IOException
+	 */
+	private static InputStream openHashList(Path file) throws IOException {
+		InputStream in = new BufferedInputStream(Files.newInputStream(file), READ_BUFFER_SIZE);
+		try {
+			if (CompressedHashList.isCompressedHashList(in)) {
+				return new BufferedInputStream(new BlockInflaterInputStream(in), READ_BUFFER_SIZE);
+			}
+			return in;
+		} catch (IOException | RuntimeException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Read Hash List in text format. The header ends at the first hash line, so that the hashes can be created by the folder table of the hash list.
+	 * 
+	 * @param in Input
+	 * @param inputFile Input File for error messages
+	 * @param hashConsumer Consumer, which gets each hash in the order of the file
+	 * @param headerOnly True if reading should stop after the header, false otherwise
+	 * @return Hashlist without hashes
+	 * @throws IOException
+	 */
+	private static ImageHashList readTextHashList(InputStream in, String inputFile, Consumer<Hash> hashConsumer, boolean headerOnly) throws IOException {
 		String folder = null;
 		String filenamePattern = null;
 		boolean recursive = false;
-		List<Hash> hashes = new ArrayList<>();
+		HashAlgorithm hashAlgorithm = HashAlgorithm.MD5;
+		HashMode hashMode = HashMode.COMPATIBLE;
+		HashType hashType = HashType.EXACT;
+		boolean trailerExpected = false;
+		long expectedCount = -1;
+		String expectedChecksum = null;
+		long count = 0;
+		CRC32 checksum = new CRC32();
+		ImageHashList imageHashList = null;
 
-		try (FileInputStream in = new FileInputStream(inputFile); BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
 			String line = null;
 			int lineNumber = 1;
 			while ((line = br.readLine()) != null) {
@@ -200,6 +428,56 @@ public final class ImageHashUtil {
 					recursive = Boolean.parseBoolean(line);
 					lineNumber++;
 					continue;
+				} else if (line.startsWith(HEADER_OPTION_PREFIX)) {
+					if (imageHashList != null) {
+						String[] option = line.substring(HEADER_OPTION_PREFIX.length()).split("=", 2);
+						if (option.length == 2 && option[0].equals(TRAILER_OPTION_COUNT)) {
+							expectedCount = Long.parseLong(option[1]);
+						} else if (option.length == 2 && option[0].equals(TRAILER_OPTION_CHECKSUM)) {
+							expectedChecksum = option[1];
+						}
+						lineNumber++;
+						continue;
+					}
+					String[] option = line.substring(HEADER_OPTION_PREFIX.length()).split("=", 2);
+					if (option.length == 2 && option[0].equals(HEADER_OPTION_ALGORITHM)) {
+						hashAlgorithm = HashAlgorithm.getByCommandLineName(option[1]);
+						if (hashAlgorithm == null) {
+							throw new IllegalArgumentException("Unsupported hash algorithm in '" + inputFile + "': " + option[1]);
+						}
+					} else if (option.length == 2 && option[0].equals(HEADER_OPTION_HASH_MODE)) {
+						hashMode = HashMode.getByCommandLineName(option[1]);
+						if (hashMode == null) {
+							throw new IllegalArgumentException("Unsupported hash mode in '" + inputFile + "': " + option[1]);
+						}
+					} else if (option.length == 2 && option[0].equals(HEADER_OPTION_HASH_TYPE)) {
+						hashType = HashType.getByCommandLineName(option[1]);
+						if (hashType == null) {
+							throw new IllegalArgumentException("Unsupported hash type in '" + inputFile + "': " + option[1]);
+						}
+					} else if (option.length == 2 && option[0].equals(HEADER_OPTION_TRAILER)) {
+						trailerExpected = Boolean.parseBoolean(option[1]);
+					} else if (option.length == 2 && option[0].equals(TRAILER_OPTION_COUNT)) {
+						expectedCount = Long.parseLong(option[1]);
+					} else if (option.length == 2 && option[0].equals(TRAILER_OPTION_CHECKSUM)) {
+						expectedChecksum = option[1];
+					}
+					lineNumber++;
+					continue;
+				}
+
+				if (headerOnly) {
+					break;
+				}
+
+				if (imageHashList == null) {
+					imageHashList = createTextHashListHeader(inputFile, folder, filenamePattern, recursive, hashType, hashAlgorithm, hashMode);
+				}
+
+				if (trailerExpected) {
+					count++;
+					checksum.update(line.getBytes(StandardCharsets.UTF_8));
+					checksum.update('\n');
 				}
 
 				String parts[] = LINE_SPLIT_PATTERN.split(line);
@@ -207,40 +485,199 @@ public final class ImageHashUtil {
 					logger.error("Incorrect Line in '{}': {} -> {}", inputFile, lineNumber, line);
 					continue;
 				}
-				hashes.add(new Hash(parts[1], parts[0]));
+				HashValue hash;
+				try {
+					hash = HashValue.fromHexString(parts[0]);
+				} catch (IllegalArgumentException e) {
+					logger.error("Incorrect Hash in '{}': {} -> {}", inputFile, lineNumber, line);
+					continue;
+				}
+				hashConsumer.accept(imageHashList.getFolderTable().createHash(parts[1], hash));
 				lineNumber++;
 			}
-		} catch (FileNotFoundException e) {
-			logger.error(e.getMessage(), e);
-		} catch (IOException e) {
-			logger.error(e.getMessage(), e);
 		}
 
+		if (imageHashList == null) {
+			imageHashList = createTextHashListHeader(inputFile, folder, filenamePattern, recursive, hashType, hashAlgorithm, hashMode);
+		}
+		if (trailerExpected && !headerOnly) {
+			if (expectedCount < 0 || expectedChecksum == null) {
+				throw new IllegalArgumentException("Hash List is incomplete, trailer is missing: '" + inputFile + "'");
+			}
+			if (expectedCount != count) {
+				throw new IllegalArgumentException("Hash List is incomplete, expected " + expectedCount + " hashes, but found " + count + ": '" + inputFile + "'");
+			}
+			String actualChecksum = String.format("%08X", checksum.getValue());
+			if (!actualChecksum.equalsIgnoreCase(expectedChecksum)) {
+				throw new IllegalArgumentException("Hash List is corrupt, expected checksum " + expectedChecksum + ", but was " + actualChecksum + ": '" + inputFile + "'");
+			}
+		}
+		return imageHashList;
+	}
+
+	/**
+	 * Create the Hash List for the header of a text hash list
+	 * 
+	 * @param inputFile Input File for error messages
+	 * @param folder Folder
+	 * @param filenamePattern Filename Pattern
+	 * @param recursive True if recursive, false otherwise
+	 * @param hashType Hash Type
+	 * @param hashAlgorithm Hash Algorithm
+	 * @param hashMode Hash Mode
+	 * @return Hashlist without hashes
+	 */
+	private static ImageHashList createTextHashListHeader(String inputFile, String folder, String filenamePattern, boolean recursive, HashType hashType,
+			HashAlgorithm hashAlgorithm, HashMode hashMode) {
 		if (folder == null || filenamePattern == null) {
 			throw new IllegalArgumentException("Missing folder or filenamePattern in '" + inputFile + "'");
 		}
-		return new ImageHashList(hashes, folder, filenamePattern, recursive);
+		return new ImageHashList(new ArrayList<>(), folder, filenamePattern, recursive, hashType, hashAlgorithm, hashMode);
+	}
+
+	/**
+	 * Write Hash List to File in text format
+	 * 
+	 * @param imageHashList Image Hash List
+	 * @param outputFile Output File
+	 * @return True if the hash list was written, false otherwise
+	 */
+	public static boolean writeHashList(ImageHashList imageHashList, String outputFile) {
+		return writeHashList(imageHashList, outputFile, HashListFormat.TEXT);
+	}
+
+	/**
+	 * Write Hash List to File
+	 * 
+	 * The hash list is written to a temporary file in the same folder, which is synced to disk and then moved to the output file, so that the output file is
+	 * either the previous or the complete new hash list.
+	 * 
+	 * @param imageHashList Image Hash List
+	 * @param outputFile Output File
+	 * @param format Format
+	 * @return True if the hash list was written, false otherwise
+	 */
+	public static boolean writeHashList(ImageHashList imageHashList, String outputFile, HashListFormat format) {
+		return writeHashList(imageHashList, outputFile, format, false);
 	}
 
 	/**
 	 * Write Hash List to File
-	 * TODO Maybe throw exception
+	 * 
+	 * The hash list is written to a temporary file in the same folder, which is synced to disk and then moved to the output file, so that the output file is
+	 * either the previous or the complete new hash list.
 	 * 
 	 * @param imageHashList Image Hash List
 	 * @param outputFile Output File
+	 * @param format Format
+	 * @param compressed True if the hash list should be compressed in blocks, which are compressed in parallel, false otherwise
+	 * @return True if the hash list was written, false otherwise
 	 */
-	public static void writeHashList(ImageHashList imageHashList, String outputFile) {
-		try (FileOutputStream out = new FileOutputStream(outputFile); BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
-			bw.write(imageHashList.getFolder() + "\n");
-			bw.write(imageHashList.getFilenamePattern() + "\n");
-			bw.write(imageHashList.isRecursive() + "\n");
-			bw.flush();
-			for (Hash hash : imageHashList.getHashes()) {
-				bw.write(hash.getHash() + "\t" + hash.getFile() + "\n");
-				bw.flush();
+	public static boolean writeHashList(ImageHashList imageHashList, String outputFile, HashListFormat format, boolean compressed) {
+		Path file = Paths.get(outputFile).toAbsolutePath();
+		Path temporaryFile = null;
+		try {
+			temporaryFile = Files.createTempFile(file.getParent(), file.getFileName().toString() + ".", ".tmp");
+			try (FileOutputStream out = new FileOutputStream(temporaryFile.toFile())) {
+				BlockDeflaterOutputStream deflaterOut = compressed ? new BlockDeflaterOutputStream(out) : null;
+				OutputStream target = compressed ? deflaterOut : out;
+				if (format == HashListFormat.BINARY) {
+					BinaryHashList.write(imageHashList, target);
+				} else {
+					writeTextHashList(imageHashList, target);
+				}
+				if (deflaterOut != null) {
+					deflaterOut.finish();
+				}
+				out.getFD().sync();
+			}
+			try {
+				Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
 			}
+			return true;
 		} catch (IOException e) {
 			logger.error(e.getMessage(), e);
+			if (temporaryFile != null) {
+				try {
+					Files.deleteIfExists(temporaryFile);
+				} catch (IOException e1) {
+					logger.error("Could not delete temporary file: {}", temporaryFile, e1);
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Convert a Hash List to another format. The format of the input file is detected automatically.
+	 * 
+	 * @param inputFile Input File
+	 * @param outputFile Output File
+	 * @param format Format of the output file
+	 */
+	public static void convertHashList(String inputFile, String outputFile, HashListFormat format) {
+		convertHashList(inputFile, outputFile, format, false);
+	}
+
+	/**
+	 * Convert a Hash List to another format. The format of the input file is detected automatically.
+	 * 
+	 * @param inputFile Input File
+	 * @param outputFile Output File
+	 * @param format Format of the output file
+	 * @param compressed True if the output file should be compressed, false otherwise
+	 */
+	public static void convertHashList(String inputFile, String outputFile, HashListFormat format, boolean compressed) {
+		ImageHashList imageHashList = readHashList(inputFile);
+		if (!writeHashList(imageHashList, outputFile, format, compressed)) {
+			logger.error("Could not convert Hash List '{}' to '{}'", inputFile, outputFile);
+			return;
+		}
+		logger.info("Converted Hash List '{}' to '{}' ({}{}, {} hashes)", inputFile, outputFile, format.getCommandLineName(), compressed ? ", compressed" : "", imageHashList
+				.getHashes().size());
+	}
+
+	/**
+	 * Write Hash List in text format. The hash lines are followed by trailer options with the count and a checksum of the hash lines, which are validated
+	 * when the hash list is read.
+	 * 
+	 * @param imageHashList Image Hash List
+	 * @param out OutputStream
+	 * @throws IOException
+	 */
+	private static void writeTextHashList(ImageHashList imageHashList, OutputStream out) throws IOException {
+		BufferedOutputStream bos = new BufferedOutputStream(out, WRITE_BUFFER_SIZE);
+		writeLine(bos, imageHashList.getFolder(), null);
+		writeLine(bos, imageHashList.getFilenamePattern(), null);
+		writeLine(bos, String.valueOf(imageHashList.isRecursive()), null);
+		writeLine(bos, HEADER_OPTION_PREFIX + HEADER_OPTION_HASH_TYPE + "=" + imageHashList.getHashType().getCommandLineName(), null);
+		writeLine(bos, HEADER_OPTION_PREFIX + HEADER_OPTION_ALGORITHM + "=" + imageHashList.getHashAlgorithm().getCommandLineName(), null);
+		writeLine(bos, HEADER_OPTION_PREFIX + HEADER_OPTION_HASH_MODE + "=" + imageHashList.getHashMode().getCommandLineName(), null);
+		writeLine(bos, HEADER_OPTION_PREFIX + HEADER_OPTION_TRAILER + "=true", null);
+		CRC32 checksum = new CRC32();
+		for (Hash hash : imageHashList.getHashes()) {
+			writeLine(bos, hash.getHash().toHexString() + "\t" + hash.getFile(), checksum);
+		}
+		writeLine(bos, HEADER_OPTION_PREFIX + TRAILER_OPTION_COUNT + "=" + imageHashList.getHashes().size(), null);
+		writeLine(bos, HEADER_OPTION_PREFIX + TRAILER_OPTION_CHECKSUM + "=" + String.format("%08X", checksum.getValue()), null);
+		bos.flush();
+	}
+
+	/**
+	 * Write a line
+	 * 
+	 * @param out OutputStream
+	 * @param line Line without line break
+	 * @param checksum Checksum, which is updated with the line including the line break, or null
+	 * @throws IOException
+	 */
+	private static void writeLine(OutputStream out, String line, CRC32 checksum) throws IOException {
+		byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+		if (checksum != null) {
+			checksum.update(bytes);
 		}
+		out.write(bytes);
 	}
 }
@@ -0,0 +1,605 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Calculates hashes of the uncompressed image data. For perceptual hash types the image is decoded with subsampling, so that only a small image has to be
+ * decoded, even for huge images.
+ * 
+ * An instance holds the digest and the image readers it has used, so that they can be reused for the next image. Instances are not thread-safe,
+ * every hashing thread has to use its own instance.
+ */
+public class ImageHasher {
+	/**
+	 * Logger for this class
+	 */
+	private static Logger logger = LoggerFactory.getLogger(ImageHasher.class);
+
+	/**
+	 * Bits per pixel, which are assumed if the image type could not be determined
+	 */
+	private static final int DEFAULT_BITS_PER_PIXEL = 32;
+
+	/**
+	 * Size of the buffer in bytes, which is used to convert image data to big-endian bytes
+	 */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * Minimum width and height of images decoded with subsampling for perceptual hashes. This is larger than the scaled down images of the perceptual hashes,
+	 * so that every pixel of them is still the average of multiple pixels.
+	 */
+	private static final int SUBSAMPLED_IMAGE_SIZE = 128;
+
+	/**
+	 * Hash Type
+	 */
+	private final HashType hashType;
+
+	/**
+	 * Hash Mode
+	 */
+	private final HashMode hashMode;
+
+	/**
+	 * Digest
+	 */
+	private final Digest digest;
+
+	/**
+	 * Buffer for converting image data to big-endian bytes
+	 */
+	private final ByteBuffer chunkBuffer = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.BIG_ENDIAN);
+
+	/**
+	 * Short view of chunkBuffer
+	 */
+	private final ShortBuffer shortChunkBuffer = chunkBuffer.asShortBuffer();
+
+	/**
+	 * Int view of chunkBuffer
+	 */
+	private final IntBuffer intChunkBuffer = chunkBuffer.asIntBuffer();
+
+	/**
+	 * Float view of chunkBuffer
+	 */
+	private final FloatBuffer floatChunkBuffer = chunkBuffer.asFloatBuffer();
+
+	/**
+	 * Double view of chunkBuffer
+	 */
+	private final DoubleBuffer doubleChunkBuffer = chunkBuffer.asDoubleBuffer();
+
+	/**
+	 * Image Reader Service Providers in the order ImageIO would use them
+	 */
+	private final List<ImageReaderSpi> imageReaderSpis = new ArrayList<>();
+
+	/**
+	 * Image Readers, which were already created by this hasher
+	 */
+	private final Map<ImageReaderSpi, ImageReader> imageReaders = new HashMap<>();
+
+	/**
+	 * Image Reader, which is currently decoding an image, or null
+	 */
+	private volatile ImageReader activeReader = null;
+
+	/**
+	 * True if decoding of the current image should be aborted
+	 */
+	private volatile boolean abortRequested = false;
+
+	/**
+	 * Constructor
+	 */
+	public ImageHasher() {
+		this(HashAlgorithm.MD5, HashMode.COMPATIBLE);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param hashAlgorithm Hash Algorithm
+	 * @param hashMode Hash Mode
+	 */
+	public ImageHasher(HashAlgorithm hashAlgorithm, HashMode hashMode) {
+		this(HashType.EXACT, hashAlgorithm, hashMode);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param hashType Hash Type
+	 * @param hashAlgorithm Hash Algorithm (Only used for exact hashes)
+	 * @param hashMode Hash Mode (Only used for exact hashes)
+	 */
+	public ImageHasher(HashType hashType, HashAlgorithm hashAlgorithm, HashMode hashMode) {
+		this.hashType = hashType;
+		this.hashMode = hashMode;
+		this.digest = hashAlgorithm.createDigest();
+
+		Iterator<ImageReaderSpi> it = IIORegistry.getDefaultInstance().getServiceProviders(ImageReaderSpi.class, true);
+		while (it.hasNext()) {
+			imageReaderSpis.add(it.next());
+		}
+	}
+
+	/**
+	 * Calculates the hash of the uncompressed image data
+	 * 
+	 * @param f File
+	 * @return Hash or null if the hash could not be calculated
+	 */
+	public HashValue getImageHash(Path f) {
+		try (ImageInputStream in = ImageIO.createImageInputStream(f.toFile())) {
+			return getImageHash(f, in);
+		} catch (IOException e) {
+			logger.error("Could not generate hash for file: {}", f, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Calculates the hash of the uncompressed image data
+	 * 
+	 * @param f File
+	 * @param fileContent Content of the file, which was already read into memory
+	 * @return Hash or null if the hash could not be calculated
+	 */
+	public HashValue getImageHash(Path f, byte[] fileContent) {
+		try (ImageInputStream in = new MemoryCacheImageInputStream(new ByteArrayInputStream(fileContent))) {
+			return getImageHash(f, in);
+		} catch (IOException e) {
+			logger.error("Could not generate hash for file: {}", f, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Estimates the memory needed to decode and hash the image. Only the header of the image is read for this.
+	 * 
+	 * @param f File
+	 * @return Estimated memory in bytes or -1 if the size could not be determined
+	 */
+	public long estimateDecodedSize(Path f) {
+		ImageHeader header = readHeader(f);
+		return header != null ? header.estimatedDecodedSize() : -1;
+	}
+
+	/**
+	 * Reads the size of the image and estimates the memory needed to decode and hash the image. Only the header of the image is read for this, so this can
+	 * be used to reject images, which are too large, before decoding them.
+	 * 
+	 * @param f File
+	 * @return Image Header or null if the size could not be determined
+	 */
+	public ImageHeader readHeader(Path f) {
+		try (ImageInputStream in = ImageIO.createImageInputStream(f.toFile())) {
+			if (in == null) {
+				return null;
+			}
+
+			ImageReader reader = getImageReader(in);
+			if (reader == null) {
+				return null;
+			}
+
+			reader.setInput(in, true, true);
+			try {
+				ImageHeader header = read(reader, () -> readHeader(reader));
+				checkAborted();
+				return header;
+			} finally {
+				reader.reset();
+			}
+		} catch (Exception e) {
+			logger.error("Could not read image size of file: {}", f, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the size of the image from the image reader and estimates the memory needed to decode and hash the image
+	 * 
+	 * @param reader Image Reader, which has the input set
+	 * @return Image Header
+	 * @throws IOException
+	 */
+	private ImageHeader readHeader(ImageReader reader) throws IOException {
+		long imageWidth = reader.getWidth(0);
+		long imageHeight = reader.getHeight(0);
+		long width = imageWidth;
+		long height = imageHeight;
+		if (hashType.isPerceptual()) {
+			width = getSubsampledSize(width);
+			height = getSubsampledSize(height);
+		}
+
+		ImageTypeSpecifier imageType = reader.getRawImageType(0);
+		if (imageType == null) {
+			Iterator<ImageTypeSpecifier> imageTypes = reader.getImageTypes(0);
+			imageType = imageTypes.hasNext() ? imageTypes.next() : null;
+		}
+
+		int bitsPerPixel = DEFAULT_BITS_PER_PIXEL;
+		if (imageType != null) {
+			SampleModel sampleModel = imageType.getSampleModel();
+			bitsPerPixel = sampleModel.getNumDataElements() * DataBuffer.getDataTypeSize(sampleModel.getDataType());
+		}
+
+		// The image itself and for exact hashes in compatible mode the copy of the raster returned by getData()
+		boolean rasterCopy = !hashType.isPerceptual() && hashMode == HashMode.COMPATIBLE;
+		return new ImageHeader(imageWidth, imageHeight, ((width * bitsPerPixel + 7) / 8) * height * (rasterCopy ? 2 : 1));
+	}
+
+	/**
+	 * Abort decoding of the current image. The image reader is asked to stop decoding and the hash of the current image is not calculated. Can be called
+	 * from another thread. Image readers, which don't check for abort requests, decode the image to the end. The abort request stays active until
+	 * {@link #clearAbort()} is called.
+	 */
+	public void abort() {
+		abortRequested = true;
+		ImageReader reader = activeReader;
+		if (reader != null) {
+			reader.abort();
+		}
+	}
+
+	/**
+	 * Clear an abort request, before the next image is decoded
+	 */
+	public void clearAbort() {
+		abortRequested = false;
+	}
+
+	/**
+	 * Calculates the hash of the uncompressed image data
+	 * 
+	 * @param f File
+	 * @param in Input
+	 * @return Hash or null if the hash could not be calculated
+	 */
+	private HashValue getImageHash(Path f, ImageInputStream in) {
+		if (hashType.isPerceptual()) {
+			return getPerceptualHash(f, in);
+		}
+
+		try {
+			DataBuffer dataBuffer = readImageData(in);
+			if (dataBuffer == null) {
+				logger.error("{} is not an Image", f.toAbsolutePath());
+				return null;
+			} else {
+				// Calculate hash of raw image data, without any file headers
+				if (!updateDigest(dataBuffer)) {
+					return null;
+				}
+
+				return HashValue.fromBytes(digest.digest());
+			}
+		} catch (Exception e) {
+			digest.reset();
+			logger.error("Could not generate hash for file: {}", f, e);
+			return null;
+		} catch (OutOfMemoryError e) {
+			// The hasher can still be used for the next image
+			digest.reset();
+			throw e;
+		}
+	}
+
+	/**
+	 * Calculates the perceptual hash of the image
+	 * 
+	 * @param f File
+	 * @param in Input
+	 * @return Hash or null if the hash could not be calculated
+	 */
+	private HashValue getPerceptualHash(Path f, ImageInputStream in) {
+		try {
+			BufferedImage img = readSubsampledImage(in);
+			if (img == null) {
+				logger.error("{} is not an Image", f.toAbsolutePath());
+				return null;
+			}
+			return ImageHashUtil.getPerceptualHash(img, hashType);
+		} catch (Exception e) {
+			logger.error("Could not generate hash for file: {}", f, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Read the image with subsampling, so that the decoded image is at least {@link #SUBSAMPLED_IMAGE_SIZE} pixels wide and high, but not much larger.
+	 * Readers, which support subsampling, only decode the needed pixels.
+	 * 
+	 * @param in Input or null
+	 * @return Image or null if no image reader was found
+	 * @throws IOException
+	 */
+	private BufferedImage readSubsampledImage(ImageInputStream in) throws IOException {
+		if (in == null) {
+			return null;
+		}
+
+		ImageReader reader = getImageReader(in);
+		if (reader == null) {
+			return null;
+		}
+
+		ImageReadParam param = reader.getDefaultReadParam();
+		reader.setInput(in, true, true);
+		try {
+			int width = reader.getWidth(0);
+			int height = reader.getHeight(0);
+			param.setSourceSubsampling(getSubsamplingPeriod(width), getSubsamplingPeriod(height), 0, 0);
+			BufferedImage img = read(reader, () -> reader.read(0, param));
+			checkAborted();
+			return img;
+		} finally {
+			reader.reset();
+		}
+	}
+
+	/**
+	 * Returns the subsampling period for perceptual hashes
+	 * 
+	 * @param size Width or height of the image
+	 * @return Subsampling Period
+	 */
+	private static int getSubsamplingPeriod(long size) {
+		return (int)Math.max(1, size / SUBSAMPLED_IMAGE_SIZE);
+	}
+
+	/**
+	 * Returns the width or height of the image decoded with subsampling for perceptual hashes
+	 * 
+	 * @param size Width or height of the image
+	 * @return Width or height of the subsampled image
+	 */
+	private static long getSubsampledSize(long size) {
+		int period = getSubsamplingPeriod(size);
+		return (size + period - 1) / period;
+	}
+
+	/**
+	 * Read image data. In compatible mode the image is read like {@link ImageIO#read(ImageInputStream)} and the data of a copy of the raster is returned. In
+	 * raw mode the raster is read directly if the image reader supports it, otherwise the data of the raster of the image is returned without copying it.
+	 * 
+	 * The image readers are reused.
+	 * 
+	 * @param in Input or null
+	 * @return Image Data or null if no image reader was found
+	 * @throws IOException
+	 */
+	private DataBuffer readImageData(ImageInputStream in) throws IOException {
+		if (in == null) {
+			return null;
+		}
+
+		ImageReader reader = getImageReader(in);
+		if (reader == null) {
+			return null;
+		}
+
+		ImageReadParam param = reader.getDefaultReadParam();
+		reader.setInput(in, true, true);
+		try {
+			if (hashMode == HashMode.RAW && reader.canReadRaster()) {
+				Raster raster = read(reader, () -> reader.readRaster(0, param));
+				checkAborted();
+				return raster.getDataBuffer();
+			}
+
+			BufferedImage img = read(reader, () -> reader.read(0, param));
+			checkAborted();
+			if (img == null) {
+				return null;
+			} else if (hashMode == HashMode.RAW) {
+				return img.getRaster().getDataBuffer();
+			} else {
+				return img.getData().getDataBuffer();
+			}
+		} finally {
+			reader.reset();
+		}
+	}
+
+	/**
+	 * Decode with the image reader, which can be aborted while decoding
+	 * 
+	 * @param <T> Type of the decoded data
+	 * @param reader Image Reader
+	 * @param decoder Decoder
+	 * @return Decoded data
+	 * @throws IOException
+	 */
+	private <T> T read(ImageReader reader, ImageDecoder<T> decoder) throws IOException {
+		activeReader = reader;
+		try {
+			if (abortRequested) {
+				// Abort was requested before the reader was active
+				reader.abort();
+			}
+			return decoder.decode();
+		} finally {
+			activeReader = null;
+		}
+	}
+
+	/**
+	 * Throws an exception if decoding was aborted, because the decoded data could be incomplete
+	 * 
+	 * @throws IOException
+	 */
+	private void checkAborted() throws IOException {
+		if (abortRequested) {
+			throw new IOException("Decoding was aborted");
+		}
+	}
+
+	/**
+	 * Returns the image reader for the input
+	 * 
+	 * @param in Input
+	 * @return Image Reader or null if no image reader was found
+	 * @throws IOException
+	 */
+	private ImageReader getImageReader(ImageInputStream in) throws IOException {
+		for (ImageReaderSpi spi : imageReaderSpis) {
+			boolean canDecode;
+			in.mark();
+			try {
+				canDecode = spi.canDecodeInput(in);
+			} catch (IOException e) {
+				canDecode = false;
+			} finally {
+				in.reset();
+			}
+
+			if (canDecode) {
+				ImageReader reader = imageReaders.get(spi);
+				if (reader == null) {
+					reader = spi.createReaderInstance();
+					imageReaders.put(spi, reader);
+				}
+				return reader;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Update the digest with the data of the data buffer. Values, which are larger than a byte, are converted to big-endian bytes in chunks, so no copy
+	 * of the whole data is needed.
+	 * 
+	 * Only the first bank is used, which was always the case. Otherwise the hashes of images with multiple banks would change.
+	 * 
+	 * @param dataBuffer Data Buffer
+	 * @return True if the data type is supported, false otherwise
+	 */
+	private boolean updateDigest(DataBuffer dataBuffer) {
+		byte[] chunk = chunkBuffer.array();
+		if (dataBuffer instanceof DataBufferByte dataBufferByte) {
+			byte[] data = dataBufferByte.getData();
+			digest.update(data, 0, data.length);
+		} else if (dataBuffer instanceof DataBufferDouble dataBufferDouble) {
+			double[] data = dataBufferDouble.getData();
+			for (int offset = 0; offset < data.length; offset += doubleChunkBuffer.capacity()) {
+				int length = Math.min(doubleChunkBuffer.capacity(), data.length - offset);
+				doubleChunkBuffer.clear();
+				doubleChunkBuffer.put(data, offset, length);
+				digest.update(chunk, 0, length * Double.BYTES);
+			}
+		} else if (dataBuffer instanceof DataBufferFloat dataBufferFloat) {
+			float[] data = dataBufferFloat.getData();
+			for (int offset = 0; offset < data.length; offset += floatChunkBuffer.capacity()) {
+				int length = Math.min(floatChunkBuffer.capacity(), data.length - offset);
+				floatChunkBuffer.clear();
+				floatChunkBuffer.put(data, offset, length);
+				digest.update(chunk, 0, length * Float.BYTES);
+			}
+		} else if (dataBuffer instanceof DataBufferInt dataBufferInt) {
+			int[] data = dataBufferInt.getData();
+			for (int offset = 0; offset < data.length; offset += intChunkBuffer.capacity()) {
+				int length = Math.min(intChunkBuffer.capacity(), data.length - offset);
+				intChunkBuffer.clear();
+				intChunkBuffer.put(data, offset, length);
+				digest.update(chunk, 0, length * Integer.BYTES);
+			}
+		} else if (dataBuffer instanceof DataBufferShort dataBufferShort) {
+			updateDigest(dataBufferShort.getData());
+		} else if (dataBuffer instanceof DataBufferUShort dataBufferUShort) {
+			updateDigest(dataBufferUShort.getData());
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Update the digest with big-endian bytes of short values
+	 * 
+	 * @param data Data
+	 */
+	private void updateDigest(short[] data) {
+		byte[] chunk = chunkBuffer.array();
+		for (int offset = 0; offset < data.length; offset += shortChunkBuffer.capacity()) {
+			int length = Math.min(shortChunkBuffer.capacity(), data.length - offset);
+			shortChunkBuffer.clear();
+			shortChunkBuffer.put(data, offset, length);
+			digest.update(chunk, 0, length * Short.BYTES);
+		}
+	}
+
+	/**
+	 * Decoder, which decodes with an image reader
+	 * 
+	 * @param <T> Type of the decoded data
+	 */
+	@FunctionalInterface
+	private interface ImageDecoder<T> {
+		/**
+		 * Decode
+		 * 
+		 * @return Decoded data
+		 * @throws IOException
+		 */
+		T decode() throws IOException;
+	}
+
+	/**
+	 * Header of an image
+	 * 
+	 * @param width Width of the image
+	 * @param height Height of the image
+	 * @param estimatedDecodedSize Estimated memory in bytes, which is needed to decode and hash the image
+	 */
+	public record ImageHeader(long width, long height, long estimatedDecodedSize) {
+		/**
+		 * Returns the number of pixels
+		 * 
+		 * @return Number of pixels
+		 */
+		public long pixelCount() {
+			return width * height;
+		}
+	}
+}
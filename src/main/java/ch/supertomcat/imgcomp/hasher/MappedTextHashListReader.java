@@ -0,0 +1,441 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reader for text hash lists, which maps the file into memory and parses the hash lines in parallel. The hash lines are split into chunks at line breaks,
+ * which are parsed by tasks of the common {@link java.util.concurrent.ForkJoinPool}. The hashes of the chunks are joined in the order of the file, so the
+ * result is the same as reading the file line by line.
+ */
+final class MappedTextHashListReader {
+	/**
+	 * Logger for this class
+	 */
+	private static Logger logger = LoggerFactory.getLogger(MappedTextHashListReader.class);
+
+	/**
+	 * Target size of the chunks in bytes
+	 */
+	private static final long CHUNK_SIZE = 16L * 1024 * 1024;
+
+	/**
+	 * Maximum size of mapped regions for the checksum in bytes
+	 */
+	private static final long MAX_MAPPED_SIZE = 1024L * 1024 * 1024;
+
+	/**
+	 * Number of lines at the end of hash lists with trailer
+	 */
+	private static final int TRAILER_LINE_COUNT = 2;
+
+	/**
+	 * Constructor
+	 */
+	private MappedTextHashListReader() {
+	}
+
+	/**
+	 * Read Hash List
+	 * 
+	 * @param file File
+	 * @return Hashlist
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the header is invalid or the count or checksum in the trailer don't match
+	 */
+	public static ImageHashList read(Path file) throws IOException {
+		return read(file, CHUNK_SIZE);
+	}
+
+	/**
+	 * Read Hash List
+	 * 
+	 * @param file File
+	 * @param chunkSize Target size of the chunks in bytes
+	 * @return Hashlist
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the header is invalid or the count or checksum in the trailer don't match
+	 */
+	static ImageHashList read(Path file, long chunkSize) throws IOException {
+		ImageHashList header = ImageHashUtil.readHashListHeader(file.toString());
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+
+			// Header lines are the first three lines and the following option lines
+			long position = 0;
+			int lineNumber = 1;
+			boolean trailerExpected = false;
+			while (position < size) {
+				long lineEnd = findLineEnd(channel, position, size);
+				if (lineNumber > 3) {
+					String line = readLine(channel, position, lineEnd);
+					if (!line.startsWith(ImageHashUtil.HEADER_OPTION_PREFIX) || isTrailerLine(line)) {
+						break;
+					}
+					if (line.equals(ImageHashUtil.HEADER_OPTION_PREFIX + ImageHashUtil.HEADER_OPTION_TRAILER + "=true")) {
+						trailerExpected = true;
+					}
+				}
+				position = Math.min(lineEnd + 1, size);
+				lineNumber++;
+			}
+			long hashesStart = position;
+			long hashesEnd = size;
+
+			long expectedCount = -1;
+			String expectedChecksum = null;
+			if (trailerExpected) {
+				for (int i = 0; i < TRAILER_LINE_COUNT && hashesEnd > hashesStart; i++) {
+					long lineStart = findLineStart(channel, hashesStart, hashesEnd - 1);
+					String[] option = readLine(channel, lineStart, hashesEnd - 1).split("=", 2);
+					if (option.length == 2 && option[0].equals(ImageHashUtil.HEADER_OPTION_PREFIX + ImageHashUtil.TRAILER_OPTION_COUNT)) {
+						expectedCount = Long.parseLong(option[1]);
+					} else if (option.length == 2 && option[0].equals(ImageHashUtil.HEADER_OPTION_PREFIX + ImageHashUtil.TRAILER_OPTION_CHECKSUM)) {
+						expectedChecksum = option[1];
+					}
+					hashesEnd = lineStart;
+				}
+				if (expectedCount < 0 || expectedChecksum == null) {
+					throw new IllegalArgumentException("Hash List is incomplete, trailer is missing: '" + file + "'");
+				}
+			}
+
+			ImageHashList imageHashList = new ImageHashList(new ArrayList<>(), header.getFolder(), header.getFilenamePattern(), header.isRecursive(),
+					header.getHashType(), header.getHashAlgorithm(), header.getHashMode());
+			List<ChunkTask> tasks = new ArrayList<>();
+			long chunkStart = hashesStart;
+			while (chunkStart < hashesEnd) {
+				long chunkEnd = chunkStart + chunkSize >= hashesEnd ? hashesEnd : Math.min(findLineEnd(channel, chunkStart + chunkSize, hashesEnd) + 1, hashesEnd);
+				tasks.add(new ChunkTask(file, channel, imageHashList.getFolderTable(), chunkStart, chunkEnd));
+				chunkStart = chunkEnd;
+			}
+			ChecksumTask checksumTask = trailerExpected ? new ChecksumTask(channel, hashesStart, hashesEnd) : null;
+			List<Hash> hashes = imageHashList.getHashes();
+			long count = 0;
+			long actualChecksumValue = 0;
+			try {
+				if (checksumTask != null) {
+					checksumTask.fork();
+				}
+				ForkJoinTask.invokeAll(tasks);
+				for (ChunkTask task : tasks) {
+					Chunk chunk = task.join();
+					hashes.addAll(chunk.hashes());
+					count += chunk.lineCount();
+				}
+				if (checksumTask != null) {
+					actualChecksumValue = checksumTask.join();
+				}
+			} catch (UncheckedIOException e) {
+				throw new IOException("Could not read Hash List: '" + file + "'", e);
+			}
+
+			if (checksumTask != null) {
+				if (expectedCount != count) {
+					throw new IllegalArgumentException("Hash List is incomplete, expected " + expectedCount + " hashes, but found " + count + ": '" + file + "'");
+				}
+				String actualChecksum = String.format("%08X", actualChecksumValue);
+				if (!actualChecksum.equalsIgnoreCase(expectedChecksum)) {
+					throw new IllegalArgumentException("Hash List is corrupt, expected checksum " + expectedChecksum + ", but was " + actualChecksum + ": '" + file + "'");
+				}
+			}
+
+			return imageHashList;
+		}
+	}
+
+	/**
+	 * Checks if a line is a trailer option
+	 * 
+	 * @param line Line
+	 * @return True if the line is a trailer option, false otherwise
+	 */
+	private static boolean isTrailerLine(String line) {
+		return line.startsWith(ImageHashUtil.HEADER_OPTION_PREFIX + ImageHashUtil.TRAILER_OPTION_COUNT + "=")
+				|| line.startsWith(ImageHashUtil.HEADER_OPTION_PREFIX + ImageHashUtil.TRAILER_OPTION_CHECKSUM + "=");
+	}
+
+	/**
+	 * Find the line break at or after a position
+	 * 
+	 * @param channel Channel
+	 * @param position Position
+	 * @param end End of the searched area
+	 * @return Position of the line break or end if there is none
+	 * @throws IOException
+	 */
+	private static long findLineEnd(FileChannel channel, long position, long end) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		while (position < end) {
+			buffer.clear();
+			buffer.limit((int)Math.min(buffer.capacity(), end - position));
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i;
+				}
+			}
+			position += read;
+		}
+		return end;
+	}
+
+	/**
+	 * Find the start of the line, which ends at a position
+	 * 
+	 * @param channel Channel
+	 * @param start Start of the searched area
+	 * @param lineEnd Position of the line break
+	 * @return Start of the line
+	 * @throws IOException
+	 */
+	private static long findLineStart(FileChannel channel, long start, long lineEnd) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(1);
+		for (long position = lineEnd - 1; position >= start; position--) {
+			buffer.clear();
+			channel.read(buffer, position);
+			if (buffer.get(0) == '\n') {
+				return position + 1;
+			}
+		}
+		return start;
+	}
+
+	/**
+	 * Read a line without line break
+	 * 
+	 * @param channel Channel
+	 * @param start Start of the line
+	 * @param end End of the line (exclusive)
+	 * @return Line
+	 * @throws IOException
+	 */
+	private static String readLine(FileChannel channel, long start, long end) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int)(end - start));
+		while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) >= 0) {
+			// Read until the buffer is full
+		}
+		int length = buffer.position();
+		if (length > 0 && buffer.get(length - 1) == '\r') {
+			length--;
+		}
+		return new String(buffer.array(), 0, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Parse the hash lines of a chunk
+	 * 
+	 * @param file File
+	 * @param buffer Mapped chunk
+	 * @param folderTable Folder Table of the hash list
+	 * @return Chunk
+	 */
+	private static Chunk parseChunk(Path file, MappedByteBuffer buffer, FolderTable folderTable) {
+		List<Hash> hashes = new ArrayList<>();
+		long lineCount = 0;
+		byte[] line = new byte[256];
+		while (buffer.hasRemaining()) {
+			int length = 0;
+			while (buffer.hasRemaining()) {
+				byte b = buffer.get();
+				if (b == '\n') {
+					break;
+				}
+				if (length == line.length) {
+					line = Arrays.copyOf(line, line.length * 2);
+				}
+				line[length] = b;
+				length++;
+			}
+			if (length > 0 && line[length - 1] == '\r') {
+				length--;
+			}
+			if (length > 0 && line[0] == ImageHashUtil.HEADER_OPTION_PREFIX.charAt(0)) {
+				// Options are only read from the header
+				continue;
+			}
+			lineCount++;
+
+			Hash hash = parseHashLine(line, length, folderTable);
+			if (hash == null) {
+				logger.error("Incorrect Line in '{}': {}", file, new String(line, 0, length, StandardCharsets.UTF_8));
+				continue;
+			}
+			hashes.add(hash);
+		}
+		return new Chunk(hashes, lineCount);
+	}
+
+	/**
+	 * Parse a hash line consisting of the hex hash and the file separated by a tab
+	 * 
+	 * @param line Line
+	 * @param length Length of the line
+	 * @param folderTable Folder Table of the hash list
+	 * @return Hash or null if the line is invalid
+	 */
+	private static Hash parseHashLine(byte[] line, int length, FolderTable folderTable) {
+		// Trailing tabs are ignored like trailing empty parts when splitting the line
+		while (length > 0 && line[length - 1] == '\t') {
+			length--;
+		}
+		int tabIndex = -1;
+		for (int i = 0; i < length; i++) {
+			if (line[i] == '\t') {
+				if (tabIndex >= 0) {
+					return null;
+				}
+				tabIndex = i;
+			}
+		}
+		if (tabIndex <= 0 || tabIndex % 2 != 0) {
+			return null;
+		}
+
+		byte[] hashBytes = new byte[tabIndex / 2];
+		for (int i = 0; i < hashBytes.length; i++) {
+			int high = Character.digit(line[i * 2], 16);
+			int low = Character.digit(line[i * 2 + 1], 16);
+			if (high < 0 || low < 0) {
+				return null;
+			}
+			hashBytes[i] = (byte)((high << 4) | low);
+		}
+		String path = new String(line, tabIndex + 1, length - tabIndex - 1, StandardCharsets.UTF_8);
+		return folderTable.createHash(path, HashValue.fromBytes(hashBytes));
+	}
+
+	/**
+	 * Parsed chunk
+	 * 
+	 * @param hashes Hashes
+	 * @param lineCount Count of hash lines including incorrect lines
+	 */
+	private record Chunk(List<Hash> hashes, long lineCount) {
+	}
+
+	/**
+	 * Task, which parses a chunk
+	 */
+	private static class ChunkTask extends RecursiveTask<Chunk> {
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * File
+		 */
+		private final transient Path file;
+
+		/**
+		 * Channel
+		 */
+		private final transient FileChannel channel;
+
+		/**
+		 * Folder Table of the hash list
+		 */
+		private final transient FolderTable folderTable;
+
+		/**
+		 * Start of the chunk
+		 */
+		private final long start;
+
+		/**
+		 * End of the chunk (exclusive)
+		 */
+		private final long end;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param file File
+		 * @param channel Channel
+		 * @param folderTable Folder Table of the hash list
+		 * @param start Start of the chunk
+		 * @param end End of the chunk (exclusive)
+		 */
+		public ChunkTask(Path file, FileChannel channel, FolderTable folderTable, long start, long end) {
+			this.file = file;
+			this.channel = channel;
+			this.folderTable = folderTable;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected Chunk compute() {
+			try {
+				return parseChunk(file, channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), folderTable);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Task, which calculates the CRC32 checksum of an area of the file
+	 */
+	private static class ChecksumTask extends RecursiveTask<Long> {
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Channel
+		 */
+		private final transient FileChannel channel;
+
+		/**
+		 * Start of the area
+		 */
+		private final long start;
+
+		/**
+		 * End of the area (exclusive)
+		 */
+		private final long end;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param channel Channel
+		 * @param start Start of the area
+		 * @param end End of the area (exclusive)
+		 */
+		public ChecksumTask(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected Long compute() {
+			CRC32 checksum = new CRC32();
+			try {
+				for (long position = start; position < end; position += MAX_MAPPED_SIZE) {
+					checksum.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_MAPPED_SIZE, end - position)));
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return checksum.getValue();
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package ch.supertomcat.imgcomp.hasher;
+
+/**
+ * Memory Budget, which limits the amount of memory used by images which are loaded or decoded at the same time
+ */
+public class MemoryBudget {
+	/**
+	 * Limit in bytes
+	 */
+	private final long limit;
+
+	/**
+	 * Currently reserved bytes
+	 */
+	private long reserved = 0;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param limit Limit in bytes
+	 */
+	public MemoryBudget(long limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("limit must be at least 1: " + limit);
+		}
+		this.limit = limit;
+	}
+
+	/**
+	 * Reserve memory. Blocks until enough memory is available. A request, which is larger than the limit, is admitted as soon as nothing else is reserved, so
+	 * that it does not wait forever.
+	 * 
+	 * @param bytes Bytes
+	 * @throws InterruptedException
+	 */
+	public synchronized void acquire(long bytes) throws InterruptedException {
+		while (reserved > 0 && reserved + bytes > limit) {
+			wait();
+		}
+		reserved += bytes;
+	}
+
+	/**
+	 * Release memory, which was reserved by {@link #acquire(long)}
+	 * 
+	 * @param bytes Bytes
+	 */
+	public synchronized void release(long bytes) {
+		reserved -= bytes;
+		notifyAll();
+	}
+
+	/**
+	 * Returns the limit
+	 * 
+	 * @return limit
+	 */
+	public long getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Returns the currently reserved bytes
+	 * 
+	 * @return Reserved bytes
+	 */
+	public synchronized long getReserved() {
+		return reserved;
+	}
+}
@@ -0,0 +1,42 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Digest using a {@link MessageDigest}
+ */
+public class MessageDigestDigest implements Digest {
+	/**
+	 * Message Digest
+	 */
+	private final MessageDigest messageDigest;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param algorithm Algorithm Name
+	 */
+	public MessageDigestDigest(String algorithm) {
+		try {
+			this.messageDigest = MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(algorithm + " is not available", e);
+		}
+	}
+
+	@Override
+	public void update(byte[] data, int offset, int length) {
+		messageDigest.update(data, offset, length);
+	}
+
+	@Override
+	public byte[] digest() {
+		return messageDigest.digest();
+	}
+
+	@Override
+	public void reset() {
+		messageDigest.reset();
+	}
+}
@@ -0,0 +1,180 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Digest using the 128 bit variant of MurmurHash3 for x64 with seed 0. This is not a cryptographic hash, but it is much faster than MD5 and good enough to
+ * find duplicates.
+ * 
+ * The hash is returned as the two 64 bit values in little-endian byte order, which is the same as other common implementations.
+ */
+public class Murmur3Digest implements Digest {
+	/**
+	 * Size of a block in bytes
+	 */
+	private static final int BLOCK_SIZE = 16;
+
+	/**
+	 * C1
+	 */
+	private static final long C1 = 0x87c37b91114253d5L;
+
+	/**
+	 * C2
+	 */
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	/**
+	 * VarHandle to read little-endian long values from a byte array
+	 */
+	private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * Bytes of an incomplete block from the previous update
+	 */
+	private final byte[] pendingBlock = new byte[BLOCK_SIZE];
+
+	/**
+	 * Number of bytes in pendingBlock
+	 */
+	private int pendingLength = 0;
+
+	/**
+	 * Total length of the data
+	 */
+	private long totalLength = 0;
+
+	/**
+	 * H1
+	 */
+	private long h1 = 0;
+
+	/**
+	 * H2
+	 */
+	private long h2 = 0;
+
+	/**
+	 * Constructor
+	 */
+	public Murmur3Digest() {
+	}
+
+	@Override
+	public void update(byte[] data, int offset, int length) {
+		totalLength += length;
+		int end = offset + length;
+
+		if (pendingLength > 0) {
+			int count = Math.min(BLOCK_SIZE - pendingLength, length);
+			System.arraycopy(data, offset, pendingBlock, pendingLength, count);
+			pendingLength += count;
+			offset += count;
+			if (pendingLength < BLOCK_SIZE) {
+				return;
+			}
+			processBlock((long)LONG_LE.get(pendingBlock, 0), (long)LONG_LE.get(pendingBlock, 8));
+			pendingLength = 0;
+		}
+
+		for (; offset + BLOCK_SIZE <= end; offset += BLOCK_SIZE) {
+			processBlock((long)LONG_LE.get(data, offset), (long)LONG_LE.get(data, offset + 8));
+		}
+
+		pendingLength = end - offset;
+		System.arraycopy(data, offset, pendingBlock, 0, pendingLength);
+	}
+
+	@Override
+	public byte[] digest() {
+		long k1 = 0;
+		long k2 = 0;
+		for (int i = pendingLength - 1; i >= 8; i--) {
+			k2 = (k2 << 8) | (pendingBlock[i] & 0xFFL);
+		}
+		for (int i = Math.min(pendingLength, 8) - 1; i >= 0; i--) {
+			k1 = (k1 << 8) | (pendingBlock[i] & 0xFFL);
+		}
+		if (pendingLength > 8) {
+			k2 *= C2;
+			k2 = Long.rotateLeft(k2, 33);
+			k2 *= C1;
+			h2 ^= k2;
+		}
+		if (pendingLength > 0) {
+			k1 *= C1;
+			k1 = Long.rotateLeft(k1, 31);
+			k1 *= C2;
+			h1 ^= k1;
+		}
+
+		h1 ^= totalLength;
+		h2 ^= totalLength;
+
+		h1 += h2;
+		h2 += h1;
+
+		h1 = fmix64(h1);
+		h2 = fmix64(h2);
+
+		h1 += h2;
+		h2 += h1;
+
+		byte[] result = new byte[BLOCK_SIZE];
+		LONG_LE.set(result, 0, h1);
+		LONG_LE.set(result, 8, h2);
+		reset();
+		return result;
+	}
+
+	@Override
+	public void reset() {
+		pendingLength = 0;
+		totalLength = 0;
+		h1 = 0;
+		h2 = 0;
+	}
+
+	/**
+	 * Process a block
+	 * 
+	 * @param k1 First 8 bytes of the block
+	 * @param k2 Last 8 bytes of the block
+	 */
+	private void processBlock(long k1, long k2) {
+		k1 *= C1;
+		k1 = Long.rotateLeft(k1, 31);
+		k1 *= C2;
+		h1 ^= k1;
+
+		h1 = Long.rotateLeft(h1, 27);
+		h1 += h2;
+		h1 = h1 * 5 + 0x52dce729;
+
+		k2 *= C2;
+		k2 = Long.rotateLeft(k2, 33);
+		k2 *= C1;
+		h2 ^= k2;
+
+		h2 = Long.rotateLeft(h2, 31);
+		h2 += h1;
+		h2 = h2 * 5 + 0x38495ab5;
+	}
+
+	/**
+	 * Final mix of a 64 bit value
+	 * 
+	 * @param k Value
+	 * @return Mixed Value
+	 */
+	private static long fmix64(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+}
@@ -14,7 +14,7 @@ public abstract class ImgCompTaskBase implements ImgCompTask {
 	/**
 	 * Stop Flag
 	 */
-	protected boolean stop = false;
+	protected volatile boolean stop = false;
 
 	/**
 	 * Progress or null
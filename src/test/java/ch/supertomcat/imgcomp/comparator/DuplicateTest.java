@@ -0,0 +1,71 @@
+package ch.supertomcat.imgcomp.comparator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ch.supertomcat.imgcomp.hasher.Hash;
+import ch.supertomcat.imgcomp.hasher.HashValue;
+
+@SuppressWarnings("javadoc")
+public class DuplicateTest {
+	private static final HashValue HASH = HashValue.fromHexString("00112233445566778899AABBCCDDEEFF");
+
+	@Test
+	public void testFilesAndDistances() {
+		List<Hash> hashes = List.of(new Hash("/a/", "x.jpg", HASH), new Hash("/b/", "y.jpg", HASH), new Hash("/a/", "z.jpg", HASH));
+		Duplicate duplicate = new Duplicate(HASH, hashes, 0);
+		duplicate.addFile(1, 3);
+		duplicate.addFile(2);
+
+		assertEquals(List.of("/a/x.jpg", "/b/y.jpg", "/a/z.jpg"), duplicate.getFiles());
+		assertEquals(List.of(0, 3, 0), duplicate.getDistances());
+		assertEquals(List.of("/a/", "/b/"), duplicate.getFolders());
+		assertEquals(2, duplicate.getFolderCount());
+	}
+
+	@Test
+	public void testSameFileInMultipleHashListsIsAddedOnce() {
+		// The folder of the second hash list is a subfolder of the folder of the first hash list
+		List<Hash> hashes = List.of(new Hash("/a/sub/", "y.jpg", HASH), new Hash("/a/sub/", "z.jpg", HASH), new Hash("/a/sub/", "y.jpg", HASH), new Hash("/a/sub/",
+				"z.jpg", HASH));
+		Duplicate duplicate = new Duplicate(HASH, hashes, 0);
+		for (int i = 1; i < hashes.size(); i++) {
+			duplicate.addFile(i);
+		}
+		assertEquals(List.of("/a/sub/y.jpg", "/a/sub/z.jpg"), duplicate.getFiles());
+	}
+
+	@Test
+	public void testSameFileIsAddedOnceInLargeDuplicate() {
+		List<Hash> hashes = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			hashes.add(new Hash("/a/", "file-" + i + ".jpg", HASH));
+		}
+		for (int i = 0; i < 20; i++) {
+			hashes.add(new Hash("/a/", "file-" + i + ".jpg", HASH));
+		}
+		Duplicate duplicate = new Duplicate(HASH, hashes, 0);
+		for (int i = 1; i < hashes.size(); i++) {
+			duplicate.addFile(i);
+		}
+		assertEquals(20, duplicate.getFiles().size());
+		for (int i = 0; i < 20; i++) {
+			assertEquals("/a/file-" + i + ".jpg", duplicate.getFiles().get(i));
+		}
+	}
+
+	@Test
+	public void testEqualsFolderDuplicate() {
+		List<Hash> hashes = List.of(new Hash("/a/", "x.jpg", HASH), new Hash("/b/", "y.jpg", HASH), new Hash("/a/", "z.jpg", HASH));
+		Duplicate duplicate = new Duplicate(HASH, hashes, 0);
+		duplicate.addFile(1);
+		Duplicate other = new Duplicate(HASH, hashes, 2);
+
+		assertTrue(duplicate.equalsFolderDuplicate(other));
+		assertFalse(other.equalsFolderDuplicate(duplicate));
+	}
+}
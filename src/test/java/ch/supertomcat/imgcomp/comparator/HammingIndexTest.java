@@ -0,0 +1,72 @@
+package ch.supertomcat.imgcomp.comparator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("javadoc")
+public class HammingIndexTest {
+	@Test
+	public void testRecallIsEqualToBruteForce() {
+		long[] hashes = createHashes(3000, 0);
+		for (int maxDistance : new int[] { 0, 1, 3, 6, 8, 10, 12, 20, HammingIndex.MAX_DISTANCE }) {
+			HammingIndex hammingIndex = new HammingIndex(hashes, maxDistance);
+			for (int i = 0; i < hashes.length; i++) {
+				assertArrayEquals(findWithinDistance(hashes, i, maxDistance), hammingIndex.findWithinDistance(i), "maxDistance " + maxDistance + ", index " + i);
+			}
+		}
+	}
+
+	@Test
+	public void testRecallWithManyHashes() {
+		// Enough hashes for substrings longer than the minimum
+		long[] hashes = createHashes(70000, 1);
+		for (int maxDistance : new int[] { 4, 10 }) {
+			HammingIndex hammingIndex = new HammingIndex(hashes, maxDistance);
+			for (int i = 0; i < hashes.length; i += 97) {
+				assertArrayEquals(findWithinDistance(hashes, i, maxDistance), hammingIndex.findWithinDistance(i), "maxDistance " + maxDistance + ", index " + i);
+			}
+		}
+	}
+
+	@Test
+	public void testEqualHashesAndSingleHash() {
+		long[] hashes = { 42, 42, 42 };
+		assertArrayEquals(new int[] { 0, 1, 2 }, new HammingIndex(hashes, 0).findWithinDistance(1));
+		assertArrayEquals(new int[] { 0 }, new HammingIndex(new long[] { -1 }, 5).findWithinDistance(0));
+	}
+
+	@Test
+	public void testInvalidDistance() {
+		assertThrows(IllegalArgumentException.class, () -> new HammingIndex(new long[0], -1));
+		assertThrows(IllegalArgumentException.class, () -> new HammingIndex(new long[0], HammingIndex.MAX_DISTANCE + 1));
+	}
+
+	/**
+	 * Random hashes, of which a third are near-duplicates of earlier hashes
+	 */
+	private static long[] createHashes(int count, long seed) {
+		Random random = new Random(seed);
+		long[] hashes = new long[count];
+		for (int i = 0; i < count; i++) {
+			if (i > 0 && random.nextInt(3) == 0) {
+				long hash = hashes[random.nextInt(i)];
+				int flippedBits = random.nextInt(12);
+				for (int b = 0; b < flippedBits; b++) {
+					hash ^= 1L << random.nextInt(Long.SIZE);
+				}
+				hashes[i] = hash;
+			} else {
+				hashes[i] = random.nextLong();
+			}
+		}
+		return hashes;
+	}
+
+	private static int[] findWithinDistance(long[] hashes, int index, int maxDistance) {
+		return IntStream.range(0, hashes.length).filter(x -> HammingIndex.getDistance(hashes[index], hashes[x]) <= maxDistance).toArray();
+	}
+}
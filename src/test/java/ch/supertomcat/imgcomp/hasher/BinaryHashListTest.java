@@ -0,0 +1,104 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import static ch.supertomcat.imgcomp.hasher.TextHashListTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("javadoc")
+public class BinaryHashListTest {
+	@TempDir
+	public Path tempDir;
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		for (int count : new int[] { 0, 1, 1000 }) {
+			ImageHashList imageHashList = createHashList(count);
+			Path file = tempDir.resolve("hashes-" + count + ".bin");
+			assertTrue(ImageHashUtil.writeHashList(imageHashList, file.toString(), HashListFormat.BINARY));
+			assertTrue(BinaryHashList.isBinaryHashList(file));
+
+			assertHashListEquals(imageHashList, ImageHashUtil.readHashList(file.toString()));
+			assertHashListEquals(imageHashList, readStreaming(file));
+			ImageHashList header = ImageHashUtil.readHashListHeader(file.toString());
+			assertEquals(imageHashList.getFolder(), header.getFolder());
+			assertEquals(imageHashList.getHashAlgorithm(), header.getHashAlgorithm());
+		}
+	}
+
+	@Test
+	public void testFoldersAndFilenamesAreKept() throws IOException {
+		ImageHashList imageHashList = createHashList(20);
+		Path file = tempDir.resolve("hashes.bin");
+		assertTrue(ImageHashUtil.writeHashList(imageHashList, file.toString(), HashListFormat.BINARY));
+
+		ImageHashList actual = ImageHashUtil.readHashList(file.toString());
+		for (int i = 0; i < imageHashList.getHashes().size(); i++) {
+			Hash expectedHash = imageHashList.getHashes().get(i);
+			Hash actualHash = actual.getHashes().get(i);
+			// Paths, which are not folder and filename, are stored as full path
+			if (expectedHash.getFile().equals(expectedHash.getFolder() + expectedHash.getFilename())) {
+				assertEquals(expectedHash.getFolder(), actualHash.getFolder());
+				assertEquals(expectedHash.getFilename(), actualHash.getFilename());
+			}
+		}
+	}
+
+	@Test
+	public void testTextHashListIsNotBinary() throws IOException {
+		Path file = tempDir.resolve("hashes.txt");
+		assertTrue(ImageHashUtil.writeHashList(createHashList(10), file.toString()));
+		assertFalse(BinaryHashList.isBinaryHashList(file));
+	}
+
+	@Test
+	public void testCorruptChecksum() throws IOException {
+		Path file = tempDir.resolve("hashes.bin");
+		assertTrue(ImageHashUtil.writeHashList(createHashList(100), file.toString(), HashListFormat.BINARY));
+		byte[] bytes = Files.readAllBytes(file);
+		bytes[bytes.length - 1] ^= 1;
+		Files.write(file, bytes);
+
+		assertThrows(IllegalArgumentException.class, () -> ImageHashUtil.readHashList(file.toString()));
+	}
+
+	@Test
+	public void testTruncatedHashList() throws IOException {
+		Path file = tempDir.resolve("hashes.bin");
+		assertTrue(ImageHashUtil.writeHashList(createHashList(100), file.toString(), HashListFormat.BINARY));
+		byte[] bytes = Files.readAllBytes(file);
+
+		for (int length = 8; length < bytes.length; length += 37) {
+			Files.write(file, Arrays.copyOf(bytes, length));
+			assertThrows(IllegalArgumentException.class, () -> ImageHashUtil.readHashList(file.toString()), "length " + length);
+		}
+	}
+
+	@Test
+	public void testCorruptBytesOnlyThrowIllegalArgumentException() throws IOException {
+		Path file = tempDir.resolve("hashes.bin");
+		assertTrue(ImageHashUtil.writeHashList(createHashList(50), file.toString(), HashListFormat.BINARY));
+		byte[] bytes = Files.readAllBytes(file);
+
+		Random random = new Random(0);
+		for (int i = 0; i < 500; i++) {
+			byte[] corruptBytes = bytes.clone();
+			// Corrupt a byte after the magic bytes, so that the file is still detected as binary hash list
+			int index = 8 + random.nextInt(bytes.length - 8);
+			byte value = (byte)random.nextInt(256);
+			if (corruptBytes[index] == value) {
+				continue;
+			}
+			corruptBytes[index] = value;
+			Files.write(file, corruptBytes);
+			assertThrows(IllegalArgumentException.class, () -> ImageHashUtil.readHashList(file.toString()), "index " + index + ", value " + value);
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import static ch.supertomcat.imgcomp.hasher.TextHashListTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("javadoc")
+public class CompressedHashListTest {
+	/**
+	 * Number of hashes, which is large enough for hash lists of several blocks in both formats
+	 */
+	private static final int MULTIPLE_BLOCKS_HASH_COUNT = 200000;
+
+	@TempDir
+	public Path tempDir;
+
+	@Test
+	public void testRoundTripOfMultipleBlocks() throws IOException {
+		ImageHashList imageHashList = createHashList(MULTIPLE_BLOCKS_HASH_COUNT);
+		for (HashListFormat format : HashListFormat.values()) {
+			Path uncompressedFile = tempDir.resolve("hashes-" + format);
+			Path file = tempDir.resolve("hashes-" + format + ".deflate");
+			assertTrue(ImageHashUtil.writeHashList(imageHashList, uncompressedFile.toString(), format));
+			assertTrue(ImageHashUtil.writeHashList(imageHashList, file.toString(), format, true));
+			assertTrue(Files.size(uncompressedFile) > CompressedHashList.BLOCK_SIZE, format.toString());
+			assertTrue(CompressedHashList.isCompressedHashList(file));
+			assertFalse(CompressedHashList.isCompressedHashList(uncompressedFile));
+
+			assertHashListEquals(imageHashList, ImageHashUtil.readHashList(file.toString()));
+			assertHashListEquals(imageHashList, readStreaming(file));
+		}
+	}
+
+	@Test
+	public void testRoundTripOfEmptyHashList() throws IOException {
+		ImageHashList imageHashList = createHashList(0);
+		for (HashListFormat format : HashListFormat.values()) {
+			Path file = tempDir.resolve("hashes-" + format + ".deflate");
+			assertTrue(ImageHashUtil.writeHashList(imageHashList, file.toString(), format, true));
+			assertHashListEquals(imageHashList, ImageHashUtil.readHashList(file.toString()));
+		}
+	}
+
+	@Test
+	public void testCorruptBlock() throws IOException {
+		Path file = tempDir.resolve("hashes.deflate");
+		assertTrue(ImageHashUtil.writeHashList(createHashList(1000), file.toString(), HashListFormat.TEXT, true));
+		byte[] bytes = Files.readAllBytes(file);
+		bytes[bytes.length / 2] ^= 0x10;
+		Files.write(file, bytes);
+
+		assertThrows(IllegalArgumentException.class, () -> ImageHashUtil.readHashList(file.toString()));
+		assertThrows(IllegalArgumentException.class, () -> readStreaming(file));
+	}
+
+	@Test
+	public void testTruncatedHashList() throws IOException {
+		Path file = tempDir.resolve("hashes.deflate");
+		assertTrue(ImageHashUtil.writeHashList(createHashList(MULTIPLE_BLOCKS_HASH_COUNT), file.toString(), HashListFormat.TEXT, true));
+		byte[] bytes = Files.readAllBytes(file);
+
+		// Truncated in the first block, in a later block and before the end marker
+		for (int length : new int[] { CompressedHashList.MAGIC.length + 6, bytes.length / 2, bytes.length - 4 }) {
+			Files.write(file, Arrays.copyOf(bytes, length));
+			assertThrows(IllegalArgumentException.class, () -> ImageHashUtil.readHashList(file.toString()), "length " + length);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("javadoc")
+public class HashCacheTest {
+	private static final HashValue HASH_1 = HashValue.fromHexString("00112233445566778899AABBCCDDEEFF");
+
+	private static final HashValue HASH_2 = HashValue.fromHexString("FFEEDDCCBBAA99887766554433221100");
+
+	@TempDir
+	public Path tempDir;
+
+	@Test
+	public void testCachedHashIsOnlyReturnedForUnchangedFile() throws IOException {
+		Path file = createFile("a.jpg", "content");
+		BasicFileAttributes attributes = readAttributes(file);
+		HashCache hashCache = new HashCache();
+		hashCache.put(file.toString(), attributes, HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE, HASH_1);
+
+		assertEquals(HASH_1, hashCache.getHash(file.toString(), attributes, HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+		assertNull(hashCache.getHash(file.toString(), attributes, HashType.DIFFERENCE, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+		assertNull(hashCache.getHash(file.toString(), attributes, HashType.EXACT, HashAlgorithm.SHA_256, HashMode.COMPATIBLE));
+		assertNull(hashCache.getHash(file.toString(), attributes, HashType.EXACT, HashAlgorithm.MD5, HashMode.RAW));
+		assertNull(hashCache.getHash(tempDir.resolve("b.jpg").toString(), attributes, HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+
+		Files.write(file, "changed content".getBytes(StandardCharsets.UTF_8));
+		assertNull(hashCache.getHash(file.toString(), readAttributes(file), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+
+		Files.write(file, "content".getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(file, FileTime.fromMillis(attributes.lastModifiedTime().toMillis() + 2000));
+		assertNull(hashCache.getHash(file.toString(), readAttributes(file), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+	}
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		Path file1 = createFile("a.jpg", "a");
+		Path file2 = createFile("b.jpg", "b");
+		HashCache hashCache = new HashCache();
+		hashCache.put(file1.toString(), readAttributes(file1), HashType.EXACT, HashAlgorithm.MURMUR3_128, HashMode.RAW, HASH_1);
+		hashCache.put(file2.toString(), readAttributes(file2), HashType.PERCEPTUAL, HashAlgorithm.MD5, HashMode.COMPATIBLE, HASH_2);
+		Path cacheFile = tempDir.resolve("cache.txt");
+		hashCache.write(cacheFile);
+
+		HashCache readCache = HashCache.read(cacheFile);
+		assertEquals(2, readCache.size());
+		assertEquals(HASH_1, readCache.getHash(file1.toString(), readAttributes(file1), HashType.EXACT, HashAlgorithm.MURMUR3_128, HashMode.RAW));
+		assertEquals(HASH_2, readCache.getHash(file2.toString(), readAttributes(file2), HashType.PERCEPTUAL, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+	}
+
+	@Test
+	public void testReadMissingCache() {
+		assertEquals(0, HashCache.read(tempDir.resolve("missing.txt")).size());
+	}
+
+	@Test
+	public void testReadLegacyAndIncorrectLines() throws IOException {
+		Path file = createFile("a.jpg", "a");
+		BasicFileAttributes attributes = readAttributes(file);
+		Path cacheFile = tempDir.resolve("cache.txt");
+		String fileKey = attributes.fileKey() != null ? attributes.fileKey().toString() : "";
+		String legacyLine = HASH_1.toHexString() + "\tmd5\tcompatible\t" + attributes.size() + "\t" + attributes.lastModifiedTime().toMillis() + "\t" + fileKey + "\t"
+				+ file;
+		List<String> lines = List.of(legacyLine, "incorrect line", "XYZ\texact\tmd5\tcompatible\t1\t1\t\t/x.jpg", HASH_2.toHexString()
+				+ "\texact\tunknown\tcompatible\t1\t1\t\t/y.jpg");
+		Files.write(cacheFile, lines, StandardCharsets.UTF_8);
+
+		HashCache hashCache = HashCache.read(cacheFile);
+		assertEquals(1, hashCache.size());
+		assertEquals(HASH_1, hashCache.getHash(file.toString(), attributes, HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+	}
+
+	@Test
+	public void testPutAllOutsideFolders() throws IOException {
+		Path file1 = createFile("a.jpg", "a");
+		Path file2 = createFile("b.jpg", "b");
+		HashCache previousCache = new HashCache();
+		previousCache.put("/hashed/a.jpg", readAttributes(file1), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE, HASH_1);
+		previousCache.put("/other/b.jpg", readAttributes(file2), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE, HASH_2);
+
+		HashCache hashCache = new HashCache();
+		hashCache.putAllOutsideFolders(previousCache, List.of("/hashed/"));
+		assertEquals(1, hashCache.size());
+		assertNull(hashCache.getHash("/hashed/a.jpg", readAttributes(file1), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+		assertEquals(HASH_2, hashCache.getHash("/other/b.jpg", readAttributes(file2), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+	}
+
+	private Path createFile(String filename, String content) throws IOException {
+		Path file = tempDir.resolve(filename);
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private static BasicFileAttributes readAttributes(Path file) throws IOException {
+		return Files.readAttributes(file, BasicFileAttributes.class);
+	}
+}
@@ -0,0 +1,122 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("javadoc")
+public class HashJournalTest {
+	private static final HashValue HASH_1 = HashValue.fromHexString("00112233445566778899AABBCCDDEEFF");
+
+	private static final HashValue HASH_2 = HashValue.fromHexString("FFEEDDCCBBAA99887766554433221100");
+
+	@TempDir
+	public Path tempDir;
+
+	@Test
+	public void testReplay() throws IOException {
+		Path file1 = createFile("a.jpg", "a");
+		Path file2 = createFile("b.jpg", "b");
+		Path journalFile = tempDir.resolve("journal.txt");
+		try (HashJournal journal = new HashJournal(journalFile, false)) {
+			journal.append(file1.toString(), readAttributes(file1), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE, HASH_1);
+		}
+		// Appending to the journal of an interrupted run
+		try (HashJournal journal = new HashJournal(journalFile, true)) {
+			journal.append(file2.toString(), readAttributes(file2), HashType.AVERAGE, HashAlgorithm.MD5, HashMode.COMPATIBLE, HASH_2);
+		}
+
+		HashCache hashCache = HashJournal.replay(journalFile);
+		assertEquals(2, hashCache.size());
+		assertEquals(HASH_1, hashCache.getHash(file1.toString(), readAttributes(file1), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+		assertEquals(HASH_2, hashCache.getHash(file2.toString(), readAttributes(file2), HashType.AVERAGE, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+
+		// A new journal replaces the old one
+		try (HashJournal journal = new HashJournal(journalFile, false)) {
+			journal.append(file2.toString(), readAttributes(file2), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE, HASH_1);
+		}
+		hashCache = HashJournal.replay(journalFile);
+		assertEquals(1, hashCache.size());
+		assertEquals(HASH_1, hashCache.getHash(file2.toString(), readAttributes(file2), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+	}
+
+	@Test
+	public void testReplayWithIncompleteLastLine() throws IOException {
+		Path file1 = createFile("a.jpg", "a");
+		Path file2 = createFile("b.jpg", "b");
+		Path journalFile = tempDir.resolve("journal.txt");
+		try (HashJournal journal = new HashJournal(journalFile, false)) {
+			journal.append(file1.toString(), readAttributes(file1), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE, HASH_1);
+		}
+		// Interrupted while the line of the second file was written
+		String line = HashCache.formatLine(file2.toString(), readAttributes(file2), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE, HASH_2);
+		Files.write(journalFile, line.substring(0, line.length() / 2).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		HashCache hashCache = HashJournal.replay(journalFile);
+		assertEquals(1, hashCache.size());
+		assertEquals(HASH_1, hashCache.getHash(file1.toString(), readAttributes(file1), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+		assertNull(hashCache.getHash(file2.toString(), readAttributes(file2), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+	}
+
+	@Test
+	public void testResumeAfterIncompleteLastLine() throws IOException {
+		Path file1 = createFile("a.jpg", "a");
+		Path file2 = createFile("b.jpg", "b");
+		Path file3 = createFile("c.jpg", "c");
+		Path journalFile = tempDir.resolve("journal.txt");
+		try (HashJournal journal = new HashJournal(journalFile, false)) {
+			journal.append(file1.toString(), readAttributes(file1), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE, HASH_1);
+		}
+		// Interrupted in the path column of the second file
+		String line = HashCache.formatLine(file2.toString(), readAttributes(file2), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE, HASH_2);
+		Files.write(journalFile, line.substring(0, line.length() - 4).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+		assertEquals(1, HashJournal.replay(journalFile).size());
+
+		try (HashJournal journal = new HashJournal(journalFile, true)) {
+			journal.append(file3.toString(), readAttributes(file3), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE, HASH_2);
+		}
+		HashCache hashCache = HashJournal.replay(journalFile);
+		assertEquals(2, hashCache.size());
+		assertEquals(HASH_1, hashCache.getHash(file1.toString(), readAttributes(file1), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+		assertEquals(HASH_2, hashCache.getHash(file3.toString(), readAttributes(file3), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+		assertNull(hashCache.getHash(file2.toString(), readAttributes(file2), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+	}
+
+	@Test
+	public void testResumeAfterIncompleteFirstLine() throws IOException {
+		Path file1 = createFile("a.jpg", "a");
+		Path journalFile = tempDir.resolve("journal.txt");
+		Files.write(journalFile, "0011".getBytes(StandardCharsets.UTF_8));
+		assertEquals(0, HashJournal.replay(journalFile).size());
+
+		try (HashJournal journal = new HashJournal(journalFile, true)) {
+			journal.append(file1.toString(), readAttributes(file1), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE, HASH_1);
+		}
+		HashCache hashCache = HashJournal.replay(journalFile);
+		assertEquals(1, hashCache.size());
+		assertEquals(HASH_1, hashCache.getHash(file1.toString(), readAttributes(file1), HashType.EXACT, HashAlgorithm.MD5, HashMode.COMPATIBLE));
+	}
+
+	@Test
+	public void testReplayMissingJournal() {
+		assertEquals(0, HashJournal.replay(tempDir.resolve("missing.txt")).size());
+	}
+
+	private Path createFile(String filename, String content) throws IOException {
+		Path file = tempDir.resolve(filename);
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private static BasicFileAttributes readAttributes(Path file) throws IOException {
+		return Files.readAttributes(file, BasicFileAttributes.class);
+	}
+}
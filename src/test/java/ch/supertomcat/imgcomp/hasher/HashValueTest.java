@@ -0,0 +1,80 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("javadoc")
+public class HashValueTest {
+	@Test
+	public void testOrderingIsUnsignedByteOrder() {
+		Random random = new Random(0);
+		List<byte[]> byteArrays = new ArrayList<>();
+		for (int length : new int[] { 1, 7, 8, 9, 16, 20, 32 }) {
+			for (int i = 0; i < 50; i++) {
+				byte[] bytes = new byte[length];
+				random.nextBytes(bytes);
+				byteArrays.add(bytes);
+			}
+		}
+		// Values, which differ only in the sign bit of a byte
+		byteArrays.add(new byte[] { (byte)0x7F, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+		byteArrays.add(new byte[] { (byte)0x80, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+
+		for (byte[] a : byteArrays) {
+			for (byte[] b : byteArrays) {
+				int expected = Integer.signum(Arrays.compareUnsigned(a, b));
+				int actual = Integer.signum(HashValue.fromBytes(a).compareTo(HashValue.fromBytes(b)));
+				assertEquals(expected, actual, HexFormat.of().formatHex(a) + " <> " + HexFormat.of().formatHex(b));
+			}
+		}
+	}
+
+	@Test
+	public void testLongerHashIsGreaterThanItsPrefix() {
+		HashValue shortHash = HashValue.fromHexString("0102030405060708");
+		HashValue longHash = HashValue.fromHexString("010203040506070800");
+		assertTrue(shortHash.compareTo(longHash) < 0);
+		assertTrue(longHash.compareTo(shortHash) > 0);
+		assertNotEquals(shortHash, longHash);
+	}
+
+	@Test
+	public void testEqualsAndHashCode() {
+		HashValue a = HashValue.fromHexString("00112233445566778899AABBCCDDEEFF0011223344556677");
+		HashValue b = HashValue.fromBytes(HexFormat.of().parseHex("00112233445566778899aabbccddeeff0011223344556677"));
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+		assertEquals(0, a.compareTo(b));
+		assertNotEquals(a, HashValue.fromHexString("00112233445566778899AABBCCDDEEFF0011223344556678"));
+	}
+
+	@Test
+	public void testBytesAndHexStringRoundTrip() {
+		Random random = new Random(1);
+		for (int length = 1; length <= 40; length++) {
+			byte[] bytes = new byte[length];
+			random.nextBytes(bytes);
+			HashValue hash = HashValue.fromBytes(bytes);
+			assertEquals(length, hash.getLength());
+			assertArrayEquals(bytes, hash.toBytes());
+			assertEquals(HexFormat.of().withUpperCase().formatHex(bytes), hash.toHexString());
+			assertEquals(hash, HashValue.fromHexString(hash.toHexString()));
+		}
+	}
+
+	@Test
+	public void testFromBytesWithOffset() {
+		byte[] bytes = HexFormat.of().parseHex("FFFF0102030405060708090A0B0C0D0E0F10FFFF");
+		HashValue hash = HashValue.fromBytes(bytes, 2, 16);
+		assertEquals("0102030405060708090A0B0C0D0E0F10", hash.toHexString());
+		assertEquals(0x0102030405060708L, hash.getHigh());
+		assertEquals(0x090A0B0C0D0E0F10L, hash.getLow());
+	}
+}
@@ -0,0 +1,62 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import static ch.supertomcat.imgcomp.hasher.TextHashListTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("javadoc")
+public class MappedTextHashListReaderTest {
+	@TempDir
+	public Path tempDir;
+
+	@Test
+	public void testChunkBoundaries() throws IOException {
+		ImageHashList imageHashList = createHashList(200);
+		Path file = tempDir.resolve("hashes.txt");
+		assertTrue(ImageHashUtil.writeHashList(imageHashList, file.toString()));
+		long size = Files.size(file);
+
+		// Chunk sizes smaller than a line, around the length of a line and larger than the file
+		for (long chunkSize : new long[] { 1, 2, 3, 17, 32, 33, 50, 51, 52, 53, 54, 55, 64, 100, 101, 1000, 4096, size - 1, size, size + 1 }) {
+			assertHashListEquals(imageHashList, MappedTextHashListReader.read(file, chunkSize));
+		}
+		assertHashListEquals(imageHashList, MappedTextHashListReader.read(file));
+		assertHashListEquals(imageHashList, readStreaming(file));
+	}
+
+	@Test
+	public void testEmptyHashList() throws IOException {
+		ImageHashList imageHashList = createHashList(0);
+		Path file = tempDir.resolve("hashes.txt");
+		assertTrue(ImageHashUtil.writeHashList(imageHashList, file.toString()));
+
+		for (long chunkSize : new long[] { 1, 10, 1000 }) {
+			assertHashListEquals(imageHashList, MappedTextHashListReader.read(file, chunkSize));
+		}
+	}
+
+	@Test
+	public void testCorruptHashListWithSmallChunks() throws IOException {
+		Path file = tempDir.resolve("hashes.txt");
+		assertTrue(ImageHashUtil.writeHashList(createHashList(100), file.toString()));
+		byte[] bytes = Files.readAllBytes(file);
+		// Replace a hex digit of a hash in the middle of the file
+		int index = bytes.length / 2;
+		while (bytes[index - 1] != '\n') {
+			index++;
+		}
+		bytes[index] = (byte)(bytes[index] == '0' ? '1' : '0');
+		Files.write(file, bytes);
+
+		for (long chunkSize : new long[] { 1, 50, 1000 }) {
+			IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> MappedTextHashListReader.read(file, chunkSize));
+			assertTrue(e.getMessage().contains("Hash List is corrupt"), e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("javadoc")
+public class Murmur3DigestTest {
+	@Test
+	public void testReferenceVectors() {
+		// MurmurHash3_x64_128 with seed 0, as bytes of h1 and h2 in little-endian order
+		assertDigest("00000000000000000000000000000000", "");
+		assertDigest("67f8103e694299624753ebba820bdb92", "hell");
+		assertDigest("029bbd41b3a7d8cb191dae486a901e5b", "hello");
+		assertDigest("6c1b07bc7bbc4be347939ac4a93c437a", "The quick brown fox jumps over the lazy dog");
+	}
+
+	@Test
+	public void testSplitUpdatesAreEqualToOneUpdate() {
+		byte[] data = new byte[100];
+		new Random(0).nextBytes(data);
+		Murmur3Digest digest = new Murmur3Digest();
+		for (int length = 0; length <= data.length; length++) {
+			digest.update(data, 0, length);
+			byte[] expected = digest.digest();
+			for (int split1 = 0; split1 <= length; split1++) {
+				for (int split2 = split1; split2 <= length; split2 += 7) {
+					digest.update(data, 0, split1);
+					digest.update(data, split1, split2 - split1);
+					digest.update(data, split2, length - split2);
+					assertArrayEquals(expected, digest.digest());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDigestResets() {
+		byte[] data = "hello".getBytes(StandardCharsets.UTF_8);
+		Murmur3Digest digest = new Murmur3Digest();
+		digest.update(data, 0, data.length);
+		byte[] first = digest.digest();
+		digest.update(data, 0, data.length);
+		assertArrayEquals(first, digest.digest());
+
+		digest.update(data, 0, data.length);
+		digest.reset();
+		assertArrayEquals(new byte[16], digest.digest());
+	}
+
+	private static void assertDigest(String expectedHex, String input) {
+		byte[] data = input.getBytes(StandardCharsets.UTF_8);
+		Murmur3Digest digest = new Murmur3Digest();
+		digest.update(data, 0, data.length);
+		assertEquals(expectedHex, HexFormat.of().formatHex(digest.digest()), input);
+	}
+}
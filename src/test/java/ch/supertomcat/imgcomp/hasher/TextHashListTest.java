@@ -0,0 +1,159 @@
+package ch.supertomcat.imgcomp.hasher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("javadoc")
+public class TextHashListTest {
+	@TempDir
+	public Path tempDir;
+
+	@Test
+	public void testTrailerIsWritten() throws IOException {
+		ImageHashList imageHashList = createHashList(10);
+		Path file = tempDir.resolve("hashes.txt");
+		assertTrue(ImageHashUtil.writeHashList(imageHashList, file.toString()));
+
+		List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+		assertEquals("#trailer=true", lines.get(6));
+		CRC32 checksum = new CRC32();
+		for (String line : lines.subList(7, 17)) {
+			checksum.update((line + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals("#count=10", lines.get(17));
+		assertEquals(String.format("#crc32=%08X", checksum.getValue()), lines.get(18));
+		assertEquals(19, lines.size());
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		ImageHashList imageHashList = createHashList(1000);
+		Path file = tempDir.resolve("hashes.txt");
+		assertTrue(ImageHashUtil.writeHashList(imageHashList, file.toString()));
+
+		assertHashListEquals(imageHashList, ImageHashUtil.readHashList(file.toString()));
+		assertHashListEquals(imageHashList, readStreaming(file));
+	}
+
+	@Test
+	public void testEmptyHashList() throws IOException {
+		ImageHashList imageHashList = createHashList(0);
+		Path file = tempDir.resolve("hashes.txt");
+		assertTrue(ImageHashUtil.writeHashList(imageHashList, file.toString()));
+
+		assertHashListEquals(imageHashList, ImageHashUtil.readHashList(file.toString()));
+		assertHashListEquals(imageHashList, readStreaming(file));
+	}
+
+	@Test
+	public void testMissingHashLine() throws IOException {
+		Path file = writeAndModify(lines -> lines.remove(12));
+		assertInvalid(file, "expected 10 hashes, but found 9");
+	}
+
+	@Test
+	public void testModifiedHashLine() throws IOException {
+		Path file = writeAndModify(lines -> lines.set(12, "00" + lines.get(12).substring(2)));
+		assertInvalid(file, "Hash List is corrupt");
+	}
+
+	@Test
+	public void testMissingTrailer() throws IOException {
+		Path file = writeAndModify(lines -> {
+			lines.remove(lines.size() - 1);
+			lines.remove(lines.size() - 1);
+		});
+		assertInvalid(file, "trailer is missing");
+	}
+
+	@Test
+	public void testTruncatedHashList() throws IOException {
+		Path file = writeAndModify(lines -> lines.subList(10, lines.size()).clear());
+		assertInvalid(file, "trailer is missing");
+	}
+
+	@Test
+	public void testHashListWithoutTrailer() throws IOException {
+		// Hash lists, which were written before the trailer was added
+		ImageHashList imageHashList = createHashList(10);
+		Path file = writeAndModify(lines -> {
+			lines.remove(6);
+			lines.remove(lines.size() - 1);
+			lines.remove(lines.size() - 1);
+		});
+
+		assertHashListEquals(imageHashList, ImageHashUtil.readHashList(file.toString()));
+		assertHashListEquals(imageHashList, readStreaming(file));
+	}
+
+	private Path writeAndModify(Consumer<List<String>> modifier) throws IOException {
+		Path file = tempDir.resolve("hashes.txt");
+		assertTrue(ImageHashUtil.writeHashList(createHashList(10), file.toString()));
+		List<String> lines = new ArrayList<>(Files.readAllLines(file, StandardCharsets.UTF_8));
+		modifier.accept(lines);
+		Files.write(file, lines, StandardCharsets.UTF_8);
+		return file;
+	}
+
+	private static void assertInvalid(Path file, String expectedMessage) {
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ImageHashUtil.readHashList(file.toString()));
+		assertTrue(e.getMessage().contains(expectedMessage), e.getMessage());
+		e = assertThrows(IllegalArgumentException.class, () -> readStreaming(file));
+		assertTrue(e.getMessage().contains(expectedMessage), e.getMessage());
+	}
+
+	static ImageHashList readStreaming(Path file) {
+		List<Hash> hashes = new ArrayList<>();
+		ImageHashList imageHashList = ImageHashUtil.readHashList(file.toString(), hashes::add);
+		imageHashList.getHashes().addAll(hashes);
+		return imageHashList;
+	}
+
+	/**
+	 * Creates a hash list with files in several folders and one file, which is not in the folder of the hash list
+	 */
+	static ImageHashList createHashList(int count) {
+		Random random = new Random(count);
+		List<Hash> hashes = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			byte[] hash = new byte[16];
+			random.nextBytes(hash);
+			String folder = "/images/folder" + (i / 7) + "/";
+			String filename = "image-" + i + (i % 3 == 0 ? "-\u00E4\u00F6\u00FC" : "") + ".jpg";
+			if (i == count / 2) {
+				hashes.add(new Hash("/other/" + filename, folder, filename, HashValue.fromBytes(hash)));
+			} else {
+				hashes.add(new Hash(folder + filename, folder, filename, HashValue.fromBytes(hash)));
+			}
+		}
+		return new ImageHashList(hashes, "/images/", "*.jpg", true, HashType.EXACT, HashAlgorithm.MURMUR3_128, HashMode.RAW);
+	}
+
+	static void assertHashListEquals(ImageHashList expected, ImageHashList actual) {
+		assertEquals(expected.getFolder(), actual.getFolder());
+		assertEquals(expected.getFilenamePattern(), actual.getFilenamePattern());
+		assertEquals(expected.isRecursive(), actual.isRecursive());
+		assertEquals(expected.getHashType(), actual.getHashType());
+		assertEquals(expected.getHashAlgorithm(), actual.getHashAlgorithm());
+		assertEquals(expected.getHashMode(), actual.getHashMode());
+		assertEquals(expected.getHashes().size(), actual.getHashes().size());
+		for (int i = 0; i < expected.getHashes().size(); i++) {
+			Hash expectedHash = expected.getHashes().get(i);
+			Hash actualHash = actual.getHashes().get(i);
+			assertEquals(expectedHash.getFile(), actualHash.getFile());
+			assertEquals(expectedHash.getHash(), actualHash.getHash());
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package ch.supertomcat.imgcomp.manualtest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.supertomcat.imgcomp.hasher.FolderTable;
+import ch.supertomcat.imgcomp.hasher.Hash;
+import ch.supertomcat.imgcomp.hasher.HashValue;
+import ch.supertomcat.supertomcatutils.io.FileUtil;
+
+@SuppressWarnings("javadoc")
+public class HashMemoryManualTest {
+	private static final int HASH_COUNT = 1000000;
+
+	private static final int FILES_PER_FOLDER = 200;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@Test
+	public void testHashMemory() {
+		List<String> files = new ArrayList<>(HASH_COUNT);
+		List<HashValue> hashValues = new ArrayList<>(HASH_COUNT);
+		Random random = new Random(0);
+		for (int i = 0; i < HASH_COUNT; i++) {
+			files.add("F:\\Images\\Collection\\Folder" + (i / FILES_PER_FOLDER) + "\\Image" + i + ".jpg");
+			byte[] bytes = new byte[16];
+			random.nextBytes(bytes);
+			hashValues.add(HashValue.fromBytes(bytes));
+		}
+
+		// Separate Strings for file, folder and filename like before the folder table
+		long before = getUsedMemory();
+		List<Object[]> separateHashes = new ArrayList<>(HASH_COUNT);
+		for (int i = 0; i < HASH_COUNT; i++) {
+			String file = new String(files.get(i));
+			separateHashes.add(new Object[] { file, FileUtil.getDirectory(file), FileUtil.getFilename(file), hashValues.get(i) });
+		}
+		long separateMemory = getUsedMemory() - before;
+
+		before = getUsedMemory();
+		FolderTable folderTable = new FolderTable();
+		List<Hash> hashes = new ArrayList<>(HASH_COUNT);
+		for (int i = 0; i < HASH_COUNT; i++) {
+			hashes.add(folderTable.createHash(new String(files.get(i)), hashValues.get(i)));
+		}
+		long sharedMemory = getUsedMemory() - before;
+
+		logger.info("Hashes: {}, Folders: {}", HASH_COUNT, folderTable.size());
+		logger.info("Separate Strings: {} MB ({} bytes per hash)", separateMemory / 1024 / 1024, separateMemory / HASH_COUNT);
+		logger.info("Folder Table: {} MB ({} bytes per hash)", sharedMemory / 1024 / 1024, sharedMemory / HASH_COUNT);
+		assertEquals(files.get(HASH_COUNT - 1), hashes.get(HASH_COUNT - 1).getFile());
+		assertEquals(HASH_COUNT, separateHashes.size());
+		assertTrue(sharedMemory < separateMemory);
+	}
+
+	private static long getUsedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}